@@ -0,0 +1,12 @@
+package com.conveyal.datatools.common.status;
+
+/**
+ * Thrown by {@link MonitorableJob.Status#checkCancelled()} once cancellation of a job has been requested, so that the
+ * job unwinds (closing any resources via try-with-resources/finally blocks) at the next safe point rather than running
+ * to completion. {@link MonitorableJob#run()} catches it and marks the job as cancelled.
+ */
+public class JobCancelledException extends RuntimeException {
+    public JobCancelledException(String jobName) {
+        super(String.format("Job `%s` was cancelled.", jobName));
+    }
+}
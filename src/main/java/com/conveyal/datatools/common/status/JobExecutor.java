@@ -0,0 +1,239 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.common.status.MonitorableJob.JobPriority;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link MonitorableJob}s (and plain {@link Runnable}s) on a fixed number of threads. Unlike a plain fixed thread
+ * pool, queued jobs are started in order of their {@link JobPriority} (interactive jobs ahead of scheduled jobs, which
+ * are ahead of bulk jobs), the number of jobs of a given {@link JobType} running at once can be capped (e.g., to limit
+ * the number of feeds being loaded into Postgres at the same time), and the number of queued bulk jobs is bounded.
+ *
+ * Once the bulk queue is full, submitting another bulk job blocks the submitting thread until there is room, so that a
+ * bulk operation (e.g., revalidating all feed versions) cannot fill up memory with queued jobs. Jobs submitted from one
+ * of this executor's own threads are always accepted to avoid deadlocking the pool.
+ *
+ * Sub-jobs are run by their parent job on the parent's thread (see {@link MonitorableJob#run()}), so only the type of
+ * the top-level job counts toward the per-type limits.
+ */
+public class JobExecutor implements Executor {
+    private static final Logger LOG = LoggerFactory.getLogger(JobExecutor.class);
+
+    private final String name;
+    private final int threads;
+    private final int bulkQueueCapacity;
+    private final Map<JobType, Integer> maxConcurrentJobsByType;
+    private final ExecutorService workers;
+    private final ThreadGroup threadGroup;
+
+    // All fields below are guarded by synchronizing on this executor.
+    private final Map<JobPriority, Deque<QueuedTask>> queues = new EnumMap<>(JobPriority.class);
+    private final Map<JobType, Integer> runningJobsByType = new EnumMap<>(JobType.class);
+    private final Map<JobPriority, WaitTimes> waitTimesByPriority = new EnumMap<>(JobPriority.class);
+    private int runningTasks = 0;
+
+    /**
+     * @param name                      name used for the executor's threads and in status summaries
+     * @param threads                   number of jobs that can run at once
+     * @param bulkQueueCapacity         number of bulk jobs that can be queued before submitting more blocks
+     * @param maxConcurrentJobsByType   maximum number of jobs of each type that can run at once (types not in the map
+     *                                  are only limited by the number of threads)
+     */
+    public JobExecutor(String name, int threads, int bulkQueueCapacity, Map<JobType, Integer> maxConcurrentJobsByType) {
+        this.name = name;
+        this.threads = threads;
+        this.bulkQueueCapacity = bulkQueueCapacity;
+        this.maxConcurrentJobsByType = maxConcurrentJobsByType;
+        this.threadGroup = new ThreadGroup(name);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable ->
+            new Thread(threadGroup, runnable, String.format("%s-%d", name, threadCount.incrementAndGet()));
+        // Tasks are only handed to the workers when a thread is free, so the workers' own queue is never used.
+        this.workers = Executors.newFixedThreadPool(threads, threadFactory);
+        for (JobPriority priority : JobPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            waitTimesByPriority.put(priority, new WaitTimes());
+        }
+    }
+
+    /**
+     * Queue the task to be run once a thread is free and no higher priority tasks are waiting. Tasks that are not
+     * {@link MonitorableJob}s are treated as interactive.
+     */
+    @Override
+    public void execute(Runnable task) {
+        QueuedTask queuedTask = new QueuedTask(task);
+        synchronized (this) {
+            if (queuedTask.priority == JobPriority.BULK && !isWorkerThread()) {
+                while (queues.get(JobPriority.BULK).size() >= bulkQueueCapacity) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting to queue bulk job", e);
+                    }
+                }
+            }
+            queues.get(queuedTask.priority).addLast(queuedTask);
+            startQueuedTasks();
+        }
+    }
+
+    private boolean isWorkerThread() {
+        return Thread.currentThread().getThreadGroup() == threadGroup;
+    }
+
+    /**
+     * Start as many queued tasks as there are free threads, taking tasks in order of priority and skipping over any
+     * whose job type is at its concurrency limit.
+     */
+    private synchronized void startQueuedTasks() {
+        for (JobPriority priority : JobPriority.values()) {
+            Iterator<QueuedTask> iterator = queues.get(priority).iterator();
+            while (runningTasks < threads && iterator.hasNext()) {
+                QueuedTask queuedTask = iterator.next();
+                if (isAtTypeLimit(queuedTask.type)) continue;
+                iterator.remove();
+                start(queuedTask);
+            }
+        }
+        // Wake any threads waiting for room in the bulk queue.
+        notifyAll();
+    }
+
+    private boolean isAtTypeLimit(JobType type) {
+        if (type == null || !maxConcurrentJobsByType.containsKey(type)) return false;
+        return runningJobsByType.getOrDefault(type, 0) >= maxConcurrentJobsByType.get(type);
+    }
+
+    private synchronized void start(QueuedTask queuedTask) {
+        runningTasks++;
+        if (queuedTask.type != null) runningJobsByType.merge(queuedTask.type, 1, Integer::sum);
+        waitTimesByPriority.get(queuedTask.priority).record(System.currentTimeMillis() - queuedTask.queuedTime);
+        workers.execute(() -> {
+            try {
+                queuedTask.task.run();
+            } catch (Throwable t) {
+                LOG.error("Uncaught error in {} task", name, t);
+            } finally {
+                finish(queuedTask);
+            }
+        });
+    }
+
+    private synchronized void finish(QueuedTask queuedTask) {
+        runningTasks--;
+        if (queuedTask.type != null) runningJobsByType.merge(queuedTask.type, -1, Integer::sum);
+        startQueuedTasks();
+    }
+
+    /**
+     * Remove the task from the queue if it has not yet started.
+     *
+     * @return true if the task was queued (and so will now never be run by this executor)
+     */
+    public synchronized boolean remove(Runnable task) {
+        for (Deque<QueuedTask> queue : queues.values()) {
+            if (queue.removeIf(queuedTask -> queuedTask.task == task)) {
+                // Wake any threads waiting for room in the bulk queue.
+                notifyAll();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Current queue depths, running jobs and wait times for the status API.
+     */
+    public synchronized Summary summarize() {
+        Summary summary = new Summary();
+        summary.name = name;
+        summary.threads = threads;
+        summary.runningJobs = runningTasks;
+        summary.runningJobsByType = new EnumMap<>(JobType.class);
+        runningJobsByType.forEach((type, count) -> {
+            if (count > 0) summary.runningJobsByType.put(type, count);
+        });
+        summary.maxConcurrentJobsByType = maxConcurrentJobsByType;
+        summary.queues = new EnumMap<>(JobPriority.class);
+        long now = System.currentTimeMillis();
+        for (JobPriority priority : JobPriority.values()) {
+            Deque<QueuedTask> queue = queues.get(priority);
+            WaitTimes waitTimes = waitTimesByPriority.get(priority);
+            QueueSummary queueSummary = new QueueSummary();
+            queueSummary.queuedJobs = queue.size();
+            queueSummary.oldestQueuedMillis = queue.isEmpty() ? 0 : now - queue.peekFirst().queuedTime;
+            queueSummary.startedJobs = waitTimes.count;
+            queueSummary.averageWaitMillis = waitTimes.count > 0 ? waitTimes.totalMillis / waitTimes.count : 0;
+            queueSummary.maxWaitMillis = waitTimes.maxMillis;
+            summary.queues.put(priority, queueSummary);
+        }
+        return summary;
+    }
+
+    /** A task waiting to run along with the values needed to schedule it. */
+    private static class QueuedTask {
+        final Runnable task;
+        final JobPriority priority;
+        final JobType type;
+        final long queuedTime = System.currentTimeMillis();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+            if (task instanceof MonitorableJob) {
+                MonitorableJob job = (MonitorableJob) task;
+                this.priority = job.priority;
+                this.type = job.type;
+            } else {
+                this.priority = JobPriority.INTERACTIVE;
+                this.type = null;
+            }
+        }
+    }
+
+    /** Running totals of how long tasks of a given priority waited in the queue before starting. */
+    private static class WaitTimes {
+        long count;
+        long totalMillis;
+        long maxMillis;
+
+        void record(long waitMillis) {
+            count++;
+            totalMillis += waitMillis;
+            maxMillis = Math.max(maxMillis, waitMillis);
+        }
+    }
+
+    /** Snapshot of an executor's state, returned by the status API. */
+    public static class Summary {
+        public String name;
+        public int threads;
+        public int runningJobs;
+        public Map<JobType, Integer> runningJobsByType;
+        public Map<JobType, Integer> maxConcurrentJobsByType;
+        public Map<JobPriority, QueueSummary> queues;
+    }
+
+    /** Snapshot of the queue for a single priority. */
+    public static class QueueSummary {
+        public int queuedJobs;
+        public long oldestQueuedMillis;
+        public long startedJobs;
+        public long averageWaitMillis;
+        public long maxWaitMillis;
+    }
+}
@@ -0,0 +1,225 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of {@link MonitorableJob}s so that they can be looked up in constant time by job ID, owner, job type or
+ * (for running jobs) feed source ID.
+ *
+ * Jobs are registered when they are constructed and stay in the registry until their owner has seen them finish (see
+ * {@link #removeFinishedJobsForOwner(String)}) or until they are evicted. Finished jobs are evicted once they have been
+ * finished for longer than the retention period or once more than the history capacity of finished jobs are being
+ * retained, so that jobs nobody polls for (e.g., those owned by the system user) do not accumulate indefinitely.
+ */
+public class JobRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(JobRegistry.class);
+
+    private final long retentionMillis;
+    private final int historyCapacity;
+
+    private final Map<String, MonitorableJob> jobsById = new ConcurrentHashMap<>();
+    private final Map<String, Set<MonitorableJob>> jobsByOwner = new ConcurrentHashMap<>();
+    private final Map<JobType, Set<MonitorableJob>> jobsByType = new ConcurrentHashMap<>();
+    private final Map<String, Set<MonitorableJob>> activeJobsByFeedSourceId = new ConcurrentHashMap<>();
+    private final Set<MonitorableJob> activeJobs = Sets.newConcurrentHashSet();
+    /** Feed source IDs of the running jobs, recorded when they start so that they can be removed from the index. */
+    private final Map<String, String> feedSourceIdsByActiveJobId = new ConcurrentHashMap<>();
+    /** Finished jobs in the order they finished, used for eviction. */
+    private final Queue<FinishedJob> finishedJobs = new ConcurrentLinkedQueue<>();
+    /** IDs of the jobs in {@link #finishedJobs} (so that each job is only queued once) and the number of them. */
+    private final Set<String> finishedJobIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger finishedJobCount = new AtomicInteger();
+    private final Set<JobStatusListener> listeners = new CopyOnWriteArraySet<>();
+
+    public JobRegistry(long retentionMinutes, int historyCapacity) {
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        this.historyCapacity = historyCapacity;
+    }
+
+    /**
+     * Add a newly created job to the registry.
+     */
+    public void register(MonitorableJob job) {
+        jobsById.put(job.jobId, job);
+        addToIndex(jobsByOwner, job.retrieveUserId(), job);
+        addToIndex(jobsByType, job.type, job);
+        evictFinishedJobs();
+    }
+
+    /**
+     * Record that a job has started running. Jobs that act on a feed source are indexed by feed source ID while they
+     * run.
+     */
+    public void markStarted(MonitorableJob job) {
+        activeJobs.add(job);
+        String feedSourceId = getFeedSourceId(job);
+        if (feedSourceId != null) {
+            feedSourceIdsByActiveJobId.put(job.jobId, feedSourceId);
+            addToIndex(activeJobsByFeedSourceId, feedSourceId, job);
+        }
+        statusChanged(job);
+    }
+
+    /**
+     * Record that a job has stopped running (or was cancelled before it ran) so that it can later be evicted.
+     */
+    public void markFinished(MonitorableJob job) {
+        activeJobs.remove(job);
+        String feedSourceId = feedSourceIdsByActiveJobId.remove(job.jobId);
+        if (feedSourceId != null) removeFromIndex(activeJobsByFeedSourceId, feedSourceId, job);
+        if (jobsById.containsKey(job.jobId) && finishedJobIds.add(job.jobId)) {
+            finishedJobs.add(new FinishedJob(job));
+            finishedJobCount.incrementAndGet();
+        }
+        evictFinishedJobs();
+        statusChanged(job);
+    }
+
+    /**
+     * Subscribe to changes to the status of any registered job (including jobs starting and finishing). Listeners are
+     * called on the thread making the change, which is usually the job's own thread, so they must return quickly.
+     */
+    public void subscribe(JobStatusListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(JobStatusListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Notify listeners that the job's status has changed. */
+    public void statusChanged(MonitorableJob job) {
+        for (JobStatusListener listener : listeners) {
+            try {
+                listener.jobStatusChanged(job);
+            } catch (RuntimeException e) {
+                LOG.warn("Error notifying listener of status change for job {}", job.jobId, e);
+            }
+        }
+    }
+
+    /**
+     * Remove the job from all indexes.
+     */
+    public void remove(MonitorableJob job) {
+        jobsById.remove(job.jobId);
+        removeFromIndex(jobsByOwner, job.retrieveUserId(), job);
+        removeFromIndex(jobsByType, job.type, job);
+    }
+
+    public MonitorableJob getJob(String jobId) {
+        return jobId != null ? jobsById.get(jobId) : null;
+    }
+
+    /** Get a copy of the set of all registered jobs. */
+    public Set<MonitorableJob> getAllJobs() {
+        return new HashSet<>(jobsById.values());
+    }
+
+    /** Get a copy of the set of registered jobs for the owner. */
+    public Set<MonitorableJob> getJobsForOwner(String userId) {
+        return copyOf(jobsByOwner.get(userId));
+    }
+
+    /** Get a copy of the set of registered jobs of the given type. */
+    public Set<MonitorableJob> getJobsOfType(JobType type) {
+        return copyOf(jobsByType.get(type));
+    }
+
+    /** Get a copy of the set of currently running jobs. */
+    public Set<MonitorableJob> getActiveJobs() {
+        return new HashSet<>(activeJobs);
+    }
+
+    /** Get a copy of the set of currently running jobs that act on the feed source. */
+    public Set<MonitorableJob> getActiveJobsForFeedSource(String feedSourceId) {
+        return copyOf(activeJobsByFeedSourceId.get(feedSourceId));
+    }
+
+    /**
+     * Remove any completed or errored jobs for the owner. This is called once the owner has been sent the final state of
+     * their jobs, which will not be updated any longer.
+     */
+    public void removeFinishedJobsForOwner(String userId) {
+        Set<MonitorableJob> ownerJobs = jobsByOwner.get(userId);
+        if (ownerJobs == null) return;
+        for (MonitorableJob job : ownerJobs) {
+            if (job.status.completed || job.status.error) remove(job);
+        }
+    }
+
+    /**
+     * Evict finished jobs that have been retained for longer than the retention period or beyond the history capacity.
+     * Jobs already removed (e.g., after being polled) are simply dropped from the queue.
+     */
+    private void evictFinishedJobs() {
+        long evictBefore = System.currentTimeMillis() - retentionMillis;
+        int evicted = 0;
+        FinishedJob oldest;
+        while ((oldest = finishedJobs.peek()) != null) {
+            if (oldest.finishedTime >= evictBefore && finishedJobCount.get() <= historyCapacity) break;
+            if (finishedJobs.remove(oldest)) {
+                finishedJobCount.decrementAndGet();
+                finishedJobIds.remove(oldest.job.jobId);
+                remove(oldest.job);
+                evicted++;
+            }
+        }
+        if (evicted > 0) LOG.debug("Evicted {} finished jobs", evicted);
+    }
+
+    private static String getFeedSourceId(MonitorableJob job) {
+        if (!(job instanceof FeedSourceJob)) return null;
+        try {
+            return ((FeedSourceJob) job).getFeedSourceId();
+        } catch (RuntimeException e) {
+            // Some jobs derive the feed source ID from other fields that may not be set (e.g., a missing feed source).
+            return null;
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, Set<MonitorableJob>> index, K key, MonitorableJob job) {
+        if (key == null) return;
+        index.compute(key, (k, jobs) -> {
+            if (jobs == null) jobs = Sets.newConcurrentHashSet();
+            jobs.add(job);
+            return jobs;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<MonitorableJob>> index, K key, MonitorableJob job) {
+        if (key == null) return;
+        // Remove the set for the key once it is empty so that the index does not grow with every owner/feed source.
+        index.computeIfPresent(key, (k, jobs) -> {
+            jobs.remove(job);
+            return jobs.isEmpty() ? null : jobs;
+        });
+    }
+
+    private static Set<MonitorableJob> copyOf(Set<MonitorableJob> jobs) {
+        return jobs != null ? new HashSet<>(jobs) : Collections.emptySet();
+    }
+
+    private static class FinishedJob {
+        final MonitorableJob job;
+        final long finishedTime = System.currentTimeMillis();
+
+        FinishedJob(MonitorableJob job) {
+            this.job = job;
+        }
+    }
+}
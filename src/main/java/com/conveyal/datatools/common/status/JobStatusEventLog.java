@@ -0,0 +1,175 @@
+package com.conveyal.datatools.common.status;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Numbered log of recent job status changes, used to push job status to clients (see the job status stream in
+ * {@link com.conveyal.datatools.manager.controllers.api.StatusController}) instead of having them poll for all of their
+ * jobs.
+ *
+ * Jobs may update their status many times a second, so changes are coalesced: the listener only records which jobs have
+ * changed and a single publisher thread serializes each changed job once per publish interval and appends it to the
+ * log. Clients wait for events newer than the last event they have seen, which also allows a client that reconnects to
+ * resume from its last event ID as long as that event is still retained.
+ */
+public class JobStatusEventLog implements JobStatusListener {
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusEventLog.class);
+
+    private final int capacity;
+    private final int maxStreams;
+    private final Function<MonitorableJob, String> serializer;
+    private final Map<String, MonitorableJob> changedJobs = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+
+    // The fields below are guarded by synchronizing on this log.
+    private final Deque<Event> events = new ArrayDeque<>();
+    private long nextEventId = 1;
+
+    /**
+     * @param capacity              number of events retained for clients to resume from
+     * @param maxStreams            number of streams that can be open at once (each holds a request thread)
+     * @param publishIntervalMillis how often changed jobs are published
+     * @param serializer            converts a job to the JSON sent to clients
+     */
+    public JobStatusEventLog(
+        int capacity,
+        int maxStreams,
+        long publishIntervalMillis,
+        Function<MonitorableJob, String> serializer
+    ) {
+        this.capacity = capacity;
+        this.maxStreams = maxStreams;
+        this.serializer = serializer;
+        ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-status-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::publishChangedJobs, publishIntervalMillis, publishIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void jobStatusChanged(MonitorableJob job) {
+        // Only record the change here (on the job's thread). Repeated changes to the same job are published once.
+        changedJobs.put(job.jobId, job);
+    }
+
+    /**
+     * Serialize each job that has changed since the last publish and append it to the log.
+     */
+    void publishChangedJobs() {
+        if (changedJobs.isEmpty()) return;
+        List<Event> newEvents = new ArrayList<>();
+        Iterator<MonitorableJob> iterator = changedJobs.values().iterator();
+        while (iterator.hasNext()) {
+            MonitorableJob job = iterator.next();
+            // Remove before serializing so that a change made during serialization is published next time.
+            iterator.remove();
+            try {
+                newEvents.add(new Event(job.retrieveUserId(), job.jobId, serializer.apply(job)));
+            } catch (RuntimeException e) {
+                LOG.error("Could not serialize status of job {}", job.jobId, e);
+            }
+        }
+        append(newEvents);
+    }
+
+    private synchronized void append(List<Event> newEvents) {
+        for (Event event : newEvents) {
+            event.id = nextEventId++;
+            events.addLast(event);
+            if (events.size() > capacity) events.removeFirst();
+        }
+        if (!newEvents.isEmpty()) notifyAll();
+    }
+
+    /** ID of the latest event (or zero if there are none), from which a new client should resume. */
+    public synchronized long getLastEventId() {
+        return nextEventId - 1;
+    }
+
+    /**
+     * Whether all events after the given event ID are still retained. If not (e.g., the client has been disconnected for
+     * too long or the server has restarted), the client must be sent the current state of its jobs instead.
+     */
+    public synchronized boolean canResumeFrom(long lastEventId) {
+        long firstRetainedId = events.isEmpty() ? nextEventId : events.peekFirst().id;
+        return lastEventId >= firstRetainedId - 1 && lastEventId < nextEventId;
+    }
+
+    /**
+     * Wait up to the timeout for events for the user's jobs that are newer than the given event ID.
+     *
+     * @return the events for the user (empty if the timeout elapsed first) along with the ID of the latest event
+     * checked, from which the next call should continue
+     */
+    public synchronized Batch awaitEvents(String userId, long lastEventId, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Batch batch = new Batch(lastEventId);
+        while (true) {
+            for (Event event : events) {
+                if (event.id <= batch.lastEventId) continue;
+                if (event.userId.equals(userId)) batch.events.add(event);
+                batch.lastEventId = event.id;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (!batch.events.isEmpty() || remainingMillis <= 0) return batch;
+            wait(remainingMillis);
+        }
+    }
+
+    /**
+     * Reserve one of the available streams.
+     *
+     * @return false if the maximum number of streams is already open (in which case the client should poll instead)
+     */
+    public boolean tryOpenStream() {
+        if (openStreams.incrementAndGet() > maxStreams) {
+            openStreams.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void closeStream() {
+        openStreams.decrementAndGet();
+    }
+
+    /** A serialized job status, numbered in the order it was published. */
+    public static class Event {
+        public long id;
+        public final String userId;
+        public final String jobId;
+        public final String json;
+
+        Event(String userId, String jobId, String json) {
+            this.userId = userId;
+            this.jobId = jobId;
+            this.json = json;
+        }
+    }
+
+    /** Events returned by {@link #awaitEvents(String, long, long)}. */
+    public static class Batch {
+        public final List<Event> events = new ArrayList<>();
+        public long lastEventId;
+
+        Batch(long lastEventId) {
+            this.lastEventId = lastEventId;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.conveyal.datatools.common.status;
+
+/**
+ * Receives changes to the status of {@link MonitorableJob}s (see {@link JobRegistry#subscribe(JobStatusListener)}) so
+ * that clients can be notified of progress without polling.
+ */
+@FunctionalInterface
+public interface JobStatusListener {
+    void jobStatusChanged(MonitorableJob job);
+}
@@ -15,8 +15,10 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Created by landon on 6/13/16.
@@ -44,6 +46,11 @@ public abstract class MonitorableJob implements Runnable, Serializable {
     // Name is not final in case it needs to be amended during job processing.
     public String name;
     public final String jobId = UUID.randomUUID().toString();
+    /**
+     * Determines the order in which queued jobs are started by a {@link JobExecutor}. Defaults to
+     * {@link JobPriority#SCHEDULED} for jobs owned by the system user and {@link JobPriority#INTERACTIVE} otherwise.
+     */
+    public JobPriority priority;
 
     /**
      * Additional jobs that will be run after the main logic of this job has completed.
@@ -84,6 +91,18 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         AUTO_PUBLISH_FEED_VERSION
     }
 
+    /**
+     * Priorities for queued jobs, from highest to lowest.
+     */
+    public enum JobPriority {
+        /** Jobs a user is waiting on (e.g., uploading a feed version). */
+        INTERACTIVE,
+        /** Jobs started by the system (e.g., a nightly feed fetch). */
+        SCHEDULED,
+        /** Jobs queued in large numbers by a single operation (e.g., fetching all feeds in a project). */
+        BULK
+    }
+
     public MonitorableJob(Auth0UserProfile owner, String name, JobType type) {
         // Prevent the creation of a job if the user is null.
         if (owner == null) {
@@ -93,7 +112,9 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         this.name = name;
         status.name = name;
         this.type = type;
+        this.priority = owner.isSystemUser() ? JobPriority.SCHEDULED : JobPriority.INTERACTIVE;
         registerJob();
+        subscribeToStatus();
     }
 
     public MonitorableJob(Auth0UserProfile owner) {
@@ -110,11 +131,23 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      * It is a standard start-up stage for all monitorable jobs.
      */
     private void registerJob() {
-        // Get all active jobs and add the latest active job. Note: Removal of job from user's set of jobs is handled
-        // in the StatusController when a user requests their active jobs and the job has finished/errored.
-        Set<MonitorableJob> userJobs = JobUtils.getJobsForUser(this.owner);
-        userJobs.add(this);
-        JobUtils.userJobsMap.put(retrieveUserId(), userJobs);
+        // Note: Removal of job from the registry is handled in the StatusController when a user requests their active
+        // jobs and the job has finished/errored (or by eviction once the job has been finished for some time).
+        JobUtils.jobRegistry.register(this);
+    }
+
+    /**
+     * Replace the job's status with a subclass that has additional fields (e.g., {@link
+     * com.conveyal.datatools.manager.jobs.DeployJob.DeployStatus}).
+     */
+    protected void replaceStatus(Status newStatus) {
+        this.status = newStatus;
+        subscribeToStatus();
+    }
+
+    /** Forward changes to the job's status to the subscribers of the job registry. */
+    private void subscribeToStatus() {
+        status.subscribe(changedStatus -> JobUtils.jobRegistry.statusChanged(this));
     }
 
     @JsonProperty("owner")
@@ -156,10 +189,13 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      */
     public void run () {
         active = true;
+        JobUtils.jobRegistry.markStarted(this);
         boolean parentJobErrored = false;
         boolean subTaskErrored = false;
         String cancelMessage = "";
         try {
+            // Do not start a job that was cancelled before it was picked up.
+            status.checkCancelled();
             // First execute the core logic of the specific MonitorableJob subclass
             jobLogic();
             if (status.error) {
@@ -174,6 +210,7 @@ public abstract class MonitorableJob implements Runnable, Serializable {
             for (MonitorableJob subJob : subJobs) {
                 String subJobName = subJob.getClass().getSimpleName();
                 if (!parentJobErrored && !subTaskErrored) {
+                    status.checkCancelled();
                     // Calculate completion based on number of sub jobs remaining.
                     double percentComplete = subJobNumber * 100D / subJobsTotal;
                     // Run sub-task if no error has errored during parent job or previous sub-task execution.
@@ -209,11 +246,26 @@ public abstract class MonitorableJob implements Runnable, Serializable {
 
             // We retain finished or errored jobs on the server until they are fetched via the API, which implies they
             // could be displayed by the client.
+        } catch (JobCancelledException e) {
+            LOG.info("{} (jobId={}) cancelled", type, jobId);
+            status.fail("Job cancelled.");
+            // Sub-jobs that have not run yet will never run.
+            for (MonitorableJob subJob : subJobs) {
+                if (!subJob.status.completed) subJob.cancel("Task cancelled because parent job was cancelled.");
+            }
+            // Give the job a chance to clean up (e.g., delete temp files). Jobs already check for errors before
+            // performing any final steps that depend on success.
+            try {
+                jobFinished();
+            } catch (Exception finishedException) {
+                LOG.error("Error cleaning up cancelled job {}", jobId, finishedException);
+            }
         } catch (Exception e) {
             status.fail("Job failed due to unhandled exception!", e);
         } finally {
             LOG.info("{} (jobId={}) {} in {} ms", type, jobId, status.error ? "errored" : "completed", status.duration);
             active = false;
+            JobUtils.jobRegistry.markFinished(this);
         }
     }
 
@@ -226,9 +278,27 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         // Updating the job status with error is all we need to do in order to move the job into completion. Once the
         // user fetches the errored job, it will be automatically removed from the system.
         status.fail(message);
+        // Sub-jobs that are cancelled never run, so they must be marked as finished here.
+        JobUtils.jobRegistry.markFinished(this);
         // FIXME: Do we need to run any clean up here?
     }
 
+    /**
+     * Request that this job and its sub-jobs stop. Cancellation is cooperative: a running job stops at the next point at
+     * which it calls {@link Status#checkCancelled()} (at the latest, before its next sub-job). A job that has not started
+     * will fail immediately once run, so callers should also remove it from its executor's queue (see
+     * {@link JobUtils#cancelJob(MonitorableJob)}).
+     */
+    public void requestCancellation() {
+        status.requestCancellation();
+        for (MonitorableJob subJob : subJobs) subJob.requestCancellation();
+    }
+
+    @JsonIgnore @BsonIgnore
+    public boolean isCancellationRequested() {
+        return status.isCancellationRequested();
+    }
+
     /**
      * Enqueues a sub-job to be run when the main logic of this job has finished.
      */
@@ -236,6 +306,8 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         for (MonitorableJob job : jobs) {
             job.parentJobId = this.jobId;
             job.parentJobType = this.type;
+            // Sub-jobs added after the parent was cancelled (e.g., from within jobLogic) are cancelled too.
+            if (isCancellationRequested()) job.requestCancellation();
             subJobs.add(job);
         }
     }
@@ -249,6 +321,11 @@ public abstract class MonitorableJob implements Runnable, Serializable {
      * Represents the current status of this job.
      */
     public static class Status {
+        /** Minimum time between log lines for progress updates of a single job. */
+        private static final long UPDATE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+        private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
         /** What message (defined in messages.<lang>) should be displayed to the user? */
         public String message;
 
@@ -271,39 +348,108 @@ public abstract class MonitorableJob implements Runnable, Serializable {
         /** How much of task is complete? */
         public double percentComplete;
 
+        /** Wall clock time at which the job was created (for display). Durations are measured with a monotonic clock. */
         public long startTime = System.currentTimeMillis();
         public long duration;
 
         // When was the job initialized?
         public String initialized = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
 
-        // When was the job last modified?
-        public String modified = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        // When was the job completed? (This is only formatted once, on completion, to keep updates cheap.)
+        public String modified = initialized;
+
+        /** Wall clock time of the last update to this status, in epoch milliseconds. */
+        public long lastUpdated = startTime;
 
         // Name of file/item once completed
         public String completedName;
 
+        private final long startNanos = System.nanoTime();
+        private long lastLoggedNanos = startNanos - UPDATE_LOG_INTERVAL_NANOS;
+        private final List<Consumer<Status>> subscribers = new CopyOnWriteArrayList<>();
+
+        /** Set from another thread (e.g., an API request) to ask the job to stop. Not serialized. */
+        private volatile boolean cancellationRequested = false;
+
+        /** Ask the job this status belongs to to stop at its next {@link #checkCancelled()}. */
+        public void requestCancellation() {
+            cancellationRequested = true;
+        }
+
+        @JsonIgnore @BsonIgnore
+        public boolean isCancellationRequested() {
+            return cancellationRequested;
+        }
+
+        /**
+         * Throw a {@link JobCancelledException} if cancellation of the job has been requested. Long-running steps should
+         * call this between units of work (e.g., between tables or files) and only where unwinding leaves no partial
+         * state behind that would not otherwise be cleaned up on failure.
+         */
+        public void checkCancelled() {
+            if (cancellationRequested) throw new JobCancelledException(name);
+        }
+
         /**
          * Update status message and percent complete. This method should be used while job is still in progress.
+         *
+         * Updates may be made in tight loops, so this only assigns fields and notifies subscribers. Progress is logged
+         * at most once every {@link #UPDATE_LOG_INTERVAL_NANOS} per job, and the calling method is only looked up for
+         * those log lines when debug logging is enabled.
          */
         public void update (String message, double percentComplete) {
-            LOG.info("Job updated `{}`: `{}`\n{}", name, message, getCallingMethodTrace());
             this.message = message;
             this.percentComplete = percentComplete;
+            this.lastUpdated = System.currentTimeMillis();
+            long now = System.nanoTime();
+            if (now - lastLoggedNanos >= UPDATE_LOG_INTERVAL_NANOS) {
+                lastLoggedNanos = now;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Job updated `{}`: `{}` ({}%)\n{}", name, message, percentComplete, getCallingMethodTrace());
+                } else {
+                    LOG.info("Job updated `{}`: `{}` ({}%)", name, message, percentComplete);
+                }
+            }
+            notifySubscribers();
         }
 
         /**
-         * Gets stack trace from method calling {@link #update(String, double)} or {@link #fail(String)} for logging
-         * purposes.
+         * Gets the method calling {@link #update(String, double)} or {@link #fail(String)} for logging purposes. Only the
+         * frames up to the caller are walked (rather than capturing the whole stack trace).
          */
         private String getCallingMethodTrace() {
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            // Get trace from method calling update or fail. To trace this back:
-            // 0. this thread
-            // 1. this method
-            // 2. Status#update or Status#fail
-            // 3. line where update/fail is called in server job
-            return stackTrace.length >= 3 ? stackTrace[3].toString() : "WARNING: Stack trace not found.";
+            return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> !frame.getDeclaringClass().equals(Status.class))
+                .findFirst()
+                .map(StackWalker.StackFrame::toString)
+                .orElse("WARNING: Stack trace not found."));
+        }
+
+        /** Time since the job was created, measured with a monotonic clock. */
+        public long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Call the subscriber whenever this status is updated or completed. Subscribers are called on the job's thread,
+         * so they must be quick (e.g., hand off the change to another thread).
+         */
+        public void subscribe(Consumer<Status> subscriber) {
+            subscribers.add(subscriber);
+        }
+
+        public void unsubscribe(Consumer<Status> subscriber) {
+            subscribers.remove(subscriber);
+        }
+
+        private void notifySubscribers() {
+            for (Consumer<Status> subscriber : subscribers) {
+                try {
+                    subscriber.accept(this);
+                } catch (RuntimeException e) {
+                    LOG.warn("Error notifying subscriber of status change for job `{}`", name, e);
+                }
+            }
         }
 
         /**
@@ -323,7 +469,10 @@ public abstract class MonitorableJob implements Runnable, Serializable {
             if (message != null) this.message = message;
             this.percentComplete = 100;
             this.completed = true;
-            this.duration = System.currentTimeMillis() - this.startTime;
+            this.duration = elapsedMillis();
+            this.lastUpdated = System.currentTimeMillis();
+            this.modified = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+            notifySubscribers();
         }
 
         /**
@@ -25,6 +25,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.Utils.getTimezone;
 import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
@@ -53,14 +54,15 @@ public class Scheduler {
      */
     public static void initialize() {
         LOG.info("Scheduling recurring feed auto fetches for all projects.");
-        for (Project project : Persistence.projects.getAll()) {
-            handleAutoFeedFetch(project);
+        // Stream projects and feed sources rather than loading entire collections into memory at startup.
+        try (Stream<Project> projects = Persistence.projects.streamAll()) {
+            projects.forEach(Scheduler::handleAutoFeedFetch);
         }
         LOG.info("Scheduling feed expiration notifications for all feed sources.");
         // Get all active feed sources
-        for (FeedSource feedSource : Persistence.feedSources.getAll()) {
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.streamAll()) {
             // Schedule expiration notification jobs for the latest feed version
-            scheduleExpirationNotifications(feedSource);
+            feedSources.forEach(Scheduler::scheduleExpirationNotifications);
         }
     }
 
@@ -2,6 +2,7 @@ package com.conveyal.datatools.editor.controllers.api;
 
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.editor.controllers.EditorLockController;
+import com.conveyal.datatools.editor.utils.CopyOnWriteSnapshots;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.JsonViews;
@@ -32,10 +33,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -63,6 +66,8 @@ public abstract class EditorController<T extends Entity> {
     private final String classToLowercase;
     private static final String SNAKE_CASE_REGEX = "\\b[a-z]+(_[a-z]+)*\\b";
     private static final ObjectMapper mapper = new ObjectMapper();
+    /** Tables written to when normalizing the stop times for a pattern. */
+    private static final Set<Table> STOP_TIME_NORMALIZATION_TABLES = Collections.singleton(Table.STOP_TIMES);
     public static final JsonManager<Entity> json = new JsonManager<>(Entity.class, JsonViews.UserInterface.class);
     private final Table table;
     // List of operators used to construct where clauses. Derived from list maintained for Postgrest:
@@ -200,8 +205,9 @@ public abstract class EditorController<T extends Entity> {
                     logMessageAndHalt(req, 400, "Error encountered parsing filter.", e);
                 }
             }
-            // Set up the db connection and set all of the patch and where clause parameters.
-            connection = datasource.getConnection();
+            // Set up the db connection (with the table prepared for writing) and set all of the patch and where clause
+            // parameters.
+            connection = CopyOnWriteSnapshots.getConnectionForWrite(datasource, namespace, Collections.singleton(table));
             PreparedStatement preparedStatement = connection.prepareStatement(updateSql);
             int oneBasedIndex = 1;
             for (Field field : fieldsToPatch) {
@@ -251,7 +257,12 @@ public abstract class EditorController<T extends Entity> {
             logMessageAndHalt(req, 400, "Must provide valid pattern_id");
         }
         try {
-            JdbcTableWriter tableWriter = new JdbcTableWriter(Table.TRIPS, datasource, namespace);
+            JdbcTableWriter tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                Table.TRIPS,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(Table.TRIPS, true)
+            );
             int deletedCount = tableWriter.deleteWhere("pattern_id", patternId, true);
             return formatJSON(String.format("Deleted %d.", deletedCount), 200);
         } catch (InvalidNamespaceException e) {
@@ -300,16 +311,32 @@ public abstract class EditorController<T extends Entity> {
                 );
             }
 
-            tableWriter = new JdbcTableWriter(Table.STOP_TIMES, datasource, namespace);
+            // Each step below is committed separately, so each writer prepares the tables it writes to.
+            tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                Table.STOP_TIMES,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(Table.STOP_TIMES, true)
+            );
             int deletedCountStopTimes = tableWriter.deleteWhere(stopIdColumnName, stopId, true);
 
             int deletedCountPatternStops = 0;
             if (!patternsToBeNormalized.isEmpty()) {
-                tableWriter = new JdbcTableWriter(Table.PATTERN_STOP, datasource, namespace);
+                tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                    Table.PATTERN_STOP,
+                    datasource,
+                    namespace,
+                    CopyOnWriteSnapshots.getTablesWrittenBy(Table.PATTERN_STOP, true)
+                );
                 deletedCountPatternStops = tableWriter.deleteWhere(stopIdColumnName, stopId, true);
                 if (deletedCountPatternStops > 0) {
                     for (Map.Entry<Integer, Integer> patternStop : patternsToBeNormalized.entrySet()) {
-                        tableWriter = new JdbcTableWriter(Table.PATTERN_STOP, datasource, namespace);
+                        tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                            Table.PATTERN_STOP,
+                            datasource,
+                            namespace,
+                            STOP_TIME_NORMALIZATION_TABLES
+                        );
                         int stopSequence = patternStop.getValue();
                         // Begin with the stop prior to the one deleted, unless at the beginning.
                         int beginWithSequence = (stopSequence != 0) ? stopSequence - 1 : stopSequence;
@@ -318,7 +345,12 @@ public abstract class EditorController<T extends Entity> {
                 }
             }
 
-            tableWriter = new JdbcTableWriter(Table.STOPS, datasource, namespace);
+            tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                Table.STOPS,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(Table.STOPS, true)
+            );
             int deletedCountStop = tableWriter.deleteWhere(stopIdColumnName, stopId, true);
 
             return formatJSON(
@@ -350,7 +382,12 @@ public abstract class EditorController<T extends Entity> {
         String[] tripIds = req.queryParams("tripIds").split(",");
         JdbcTableWriter tableWriter = null;
         try {
-            tableWriter = new JdbcTableWriter(table, datasource, namespace);
+            tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                table,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(table, true)
+            );
             for (String tripId: tripIds) {
                 // Delete each trip ID found in query param WITHOUT auto-committing.
                 int result = tableWriter.delete(Integer.parseInt(tripId), false);
@@ -382,7 +419,12 @@ public abstract class EditorController<T extends Entity> {
         String namespace = getNamespaceAndValidateSession(req);
         Integer id = getIdFromRequest(req);
         try {
-            JdbcTableWriter tableWriter = new JdbcTableWriter(table, datasource, namespace);
+            JdbcTableWriter tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                table,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(table, true)
+            );
             if (tableWriter.delete(id, true) == 1) {
                 // FIXME: change return message based on result value
                 return formatJSON("Deleted one.", 200);
@@ -406,7 +448,12 @@ public abstract class EditorController<T extends Entity> {
         int patternId = getIdFromRequest(req);
         try {
             int beginStopSequence = Integer.parseInt(req.queryParams("stopSequence"));
-            JdbcTableWriter tableWriter = new JdbcTableWriter(table, datasource, namespace);
+            JdbcTableWriter tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                table,
+                datasource,
+                namespace,
+                STOP_TIME_NORMALIZATION_TABLES
+            );
             int stopTimesUpdated = tableWriter.normalizeStopTimesForPattern(patternId, beginStopSequence);
             return SparkUtils.formatJSON("updateResult", stopTimesUpdated + " stop times updated.");
         } catch (Exception e) {
@@ -438,7 +485,7 @@ public abstract class EditorController<T extends Entity> {
         // Update URL in GTFS entity with simple SQL update. Note: the request object only contains an image file, so
         // the standard JdbcTableWriter update method that requires a complete JSON string cannot be used.
         try {
-            connection = datasource.getConnection();
+            connection = CopyOnWriteSnapshots.getConnectionForWrite(datasource, namespace, Collections.singleton(table));
             String updateSql = String.format("update %s.%s set %s_branding_url = ?", namespace, table.name, classToLowercase);
             PreparedStatement preparedStatement = connection.prepareStatement(updateSql);
             preparedStatement.setString(1, url);
@@ -470,8 +517,16 @@ public abstract class EditorController<T extends Entity> {
         Integer id = getIdFromRequest(req);
         // Save or update to database
         try {
-            JdbcTableWriter tableWriter = new JdbcTableWriter(table, datasource, namespace);
             String jsonBody = req.body();
+            // Records that reference the entity are only updated if it is deleted or its key value changes.
+            boolean cascade = !isCreating &&
+                CopyOnWriteSnapshots.keyValueChanges(datasource, namespace, table, id, jsonBody);
+            JdbcTableWriter tableWriter = CopyOnWriteSnapshots.createTableWriter(
+                table,
+                datasource,
+                namespace,
+                CopyOnWriteSnapshots.getTablesWrittenBy(table, cascade)
+            );
             if (isCreating) {
                 return tableWriter.create(jsonBody, true);
             } else {
@@ -1,6 +1,7 @@
 package com.conveyal.datatools.editor.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.editor.utils.CopyOnWriteSnapshots;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -12,6 +13,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Date;
 
@@ -31,7 +33,9 @@ import static com.conveyal.gtfs.GTFS.makeSnapshot;
  *    Also, the editorNamespace field is updated to this first buffer namespace (abcd_).
  * 3. User makes edits, deletes a route, adds stops etc.
  *
- *  TODO: In the future, we could copy on write to add individual tables as they are edited and piece together a feed.
+ *  Note: a snapshot of the buffer that does not replace the buffer (i.e., a "save point") is copy on write. Its tables
+ *  are views of the buffer's tables and are only copied when the buffer's tables are edited (see
+ *  {@link CopyOnWriteSnapshots}).
  *
  * 4. User makes a new snapshot to save her work. This initializes another CreateSnapshotJob to snapshot the buffer
  *    (abcd_). Operationally what happens is that the tables are copied to a new namespace (lmno_) and the new namespace
@@ -112,7 +116,22 @@ public class CreateSnapshotJob extends MonitorableJob {
         Collection<Snapshot> existingSnapshots = feedSource.retrieveSnapshots();
         int version = existingSnapshots.size();
         status.update("Creating snapshot...", 20);
-        FeedLoadResult loadResult = makeSnapshot(namespace, DataManager.GTFS_DATA_SOURCE, !feedSource.preserveStopTimesSequence);
+        FeedLoadResult loadResult;
+        if (sharesTables()) {
+            // The buffer remains the working copy, so the snapshot can share its tables until they are edited.
+            try {
+                loadResult = CopyOnWriteSnapshots.createSnapshot(
+                    namespace,
+                    getBufferLoadResult(existingSnapshots),
+                    DataManager.GTFS_DATA_SOURCE
+                );
+            } catch (SQLException e) {
+                status.fail("Could not create snapshot of editor buffer", e);
+                return;
+            }
+        } else {
+            loadResult = makeSnapshot(namespace, DataManager.GTFS_DATA_SOURCE, !feedSource.preserveStopTimesSequence);
+        }
         snapshot.version = version;
         snapshot.namespace = loadResult.uniqueIdentifier;
         snapshot.feedLoadResult = loadResult;
@@ -123,6 +142,27 @@ public class CreateSnapshotJob extends MonitorableJob {
         status.update("Database snapshot finished.", 80);
     }
 
+    /**
+     * Get the load result recorded when the buffer was created (i.e., by the snapshot whose namespace is the buffer), or
+     * null if the buffer has no snapshot record.
+     */
+    private FeedLoadResult getBufferLoadResult(Collection<Snapshot> existingSnapshots) {
+        for (Snapshot existingSnapshot : existingSnapshots) {
+            if (namespace.equals(existingSnapshot.namespace)) return existingSnapshot.feedLoadResult;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the snapshot can share the tables of the namespace being snapshotted, which is the case for a snapshot of
+     * the editor buffer that will not become the buffer. (A namespace that will be edited, or a feed version namespace
+     * that has not been prepared for editing, must be copied in full.)
+     */
+    private boolean sharesTables() {
+        return CopyOnWriteSnapshots.ENABLED && !updateBuffer && namespace != null &&
+            namespace.equals(feedSource.editorNamespace);
+    }
+
     @Override
     public void jobFinished () {
         if (!status.error) {
@@ -0,0 +1,522 @@
+package com.conveyal.datatools.editor.utils;
+
+import com.conveyal.gtfs.loader.FeedLoadResult;
+import com.conveyal.gtfs.loader.Field;
+import com.conveyal.gtfs.loader.JdbcTableWriter;
+import com.conveyal.gtfs.loader.Table;
+import com.conveyal.gtfs.util.InvalidNamespaceException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+import static com.conveyal.gtfs.util.Util.ensureValidNamespace;
+import static com.conveyal.gtfs.util.Util.randomIdString;
+
+/**
+ * Creates and maintains editor snapshots that share unchanged tables with the namespace they were taken from (i.e.,
+ * copy on write). Rather than copying every table in the editor buffer, a snapshot of the buffer is a new namespace
+ * containing a view of each of the buffer's tables. No records are copied until a shared table is about to change:
+ * before a table is written to (see {@link #prepareForWrite}) or its namespace is deleted (see
+ * {@link #releaseNamespace}), any views of the table in other namespaces are replaced with a copy of the table. A view
+ * in the namespace being written to is likewise replaced with a copy of the table it selects from.
+ *
+ * Views are always defined on a physical table (never on another view), so the namespaces sharing a table can be found
+ * with a single lookup in information_schema.view_table_usage.
+ *
+ * Snapshots must never show later edits, so the copy before a write happens in the writer's own transaction with the
+ * written tables locked (see {@link #getConnectionForWrite}) and snapshots take a share lock on the tables they view
+ * while they are created. A snapshot therefore either waits for an edit in progress to commit (and shows it) or is
+ * created first, in which case the writer sees the new views once it has its locks and copies the tables.
+ */
+public class CopyOnWriteSnapshots {
+    private static final Logger LOG = LoggerFactory.getLogger(CopyOnWriteSnapshots.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String VIEW = "VIEW";
+    /** Whether new snapshots of the editor buffer should share tables with the buffer. */
+    public static final boolean ENABLED =
+        "true".equals(getConfigPropertyAsText("EDITOR_COPY_ON_WRITE_SNAPSHOTS", "true"));
+    /**
+     * Tables (other than the table itself) that creating, updating, or deleting a record in a table may also write to,
+     * e.g., updating a pattern also updates its pattern stops (and the stop times and shapes that depend on them).
+     */
+    private static final Map<Table, List<Table>> CHILD_TABLES = Map.of(
+        Table.PATTERNS, List.of(Table.PATTERN_STOP, Table.SHAPES, Table.TRIPS, Table.STOP_TIMES),
+        Table.TRIPS, List.of(Table.STOP_TIMES, Table.FREQUENCIES),
+        Table.CALENDAR, List.of(Table.SCHEDULE_EXCEPTIONS)
+    );
+
+    /**
+     * Create a snapshot of the source namespace that shares all of its tables with the source namespace. The new
+     * namespace is registered in the feeds table as a snapshot of the source namespace (as it would be by
+     * {@link com.conveyal.gtfs.GTFS#makeSnapshot}). The snapshot's table results are taken from the source namespace's
+     * load result (if known) rather than counting the rows while the tables are locked.
+     */
+    public static FeedLoadResult createSnapshot(
+        String sourceNamespace,
+        FeedLoadResult sourceLoadResult,
+        DataSource dataSource
+    ) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        FeedLoadResult result = new FeedLoadResult(true);
+        if (sourceLoadResult != null) copyTableResults(sourceLoadResult, result);
+        String namespace = randomIdString();
+        result.uniqueIdentifier = namespace;
+        try (
+            Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()
+        ) {
+            connection.setAutoCommit(false);
+            statement.execute("create schema " + namespace);
+            try (PreparedStatement insertStatement = connection.prepareStatement(
+                "insert into feeds (namespace, loaded_date, snapshot_of) values (?, current_timestamp, ?)"
+            )) {
+                insertStatement.setString(1, namespace);
+                insertStatement.setString(2, sourceNamespace);
+                insertStatement.execute();
+            }
+            // Lock the tables that the views will select from (in the same order as writers do, see
+            // prepareForWrite) so that no edits are in progress on them until the snapshot is committed.
+            List<String> tableNames = new ArrayList<>(new TreeSet<>(getTableNames(connection, sourceNamespace)));
+            Map<String, String> baseNamespaces = new HashMap<>();
+            for (String tableName : tableNames) {
+                String baseNamespace = getBaseNamespace(connection, sourceNamespace, tableName);
+                statement.execute(String.format("lock table %s.%s in share mode", baseNamespace, tableName));
+                baseNamespaces.put(tableName, baseNamespace);
+            }
+            for (String tableName : tableNames) {
+                String baseNamespace = baseNamespaces.get(tableName);
+                statement.execute(String.format(
+                    "create view %s.%s as select * from %s.%s",
+                    namespace,
+                    tableName,
+                    baseNamespace,
+                    tableName
+                ));
+            }
+            connection.commit();
+        }
+        result.completionTime = System.currentTimeMillis();
+        result.loadTimeMillis = result.completionTime - startTime;
+        LOG.info("Created snapshot {} of {} (sharing tables) in {} ms", namespace, sourceNamespace, result.loadTimeMillis);
+        return result;
+    }
+
+    /**
+     * Get a connection (without auto-commit) on which the tables can be written to without changing other namespaces:
+     * the tables are locked and any that are shared with other namespaces are copied (see {@link #prepareForWrite}).
+     * The copies are committed along with the write, so the caller must write to the tables on this connection and is
+     * responsible for committing and closing it.
+     */
+    public static Connection getConnectionForWrite(DataSource dataSource, String namespace, Collection<Table> tables)
+        throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            prepareForWrite(connection, namespace, tables);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            DbUtils.closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Create a table writer for the table whose connection has been prepared for writing to the provided tables (see
+     * {@link #getConnectionForWrite}). The writer's commit (e.g., by writing with auto-commit) also commits the copies.
+     */
+    public static JdbcTableWriter createTableWriter(
+        Table table,
+        DataSource dataSource,
+        String namespace,
+        Collection<Table> tables
+    ) throws SQLException, InvalidNamespaceException {
+        ensureValidNamespace(namespace);
+        Connection connection = getConnectionForWrite(dataSource, namespace, tables);
+        try {
+            return new JdbcTableWriter(table, dataSource, namespace, connection);
+        } catch (InvalidNamespaceException | RuntimeException e) {
+            DbUtils.closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Lock the tables in the namespace and copy any of them that are shared with other namespaces, so that the tables
+     * can be written to without changing the other namespaces. This turns off auto-commit on the connection: the
+     * caller must write to the tables in the same transaction (so that no snapshot can be created from the tables
+     * between the copy and the write) and then commit it.
+     */
+    public static void prepareForWrite(Connection connection, String namespace, Collection<Table> tables)
+        throws SQLException {
+        connection.setAutoCommit(false);
+        // Lock the tables in name order (as snapshots do) before checking whether they are shared, so that a snapshot
+        // created before the locks are granted is seen by the check.
+        Set<String> tableNames = new TreeSet<>();
+        for (Table table : tables) tableNames.add(table.name);
+        try (Statement statement = connection.createStatement()) {
+            for (String tableName : tableNames) {
+                String tableType = getTableType(connection, namespace, tableName);
+                if (tableType == null || VIEW.equals(tableType)) continue;
+                statement.execute(String.format("lock table %s.%s in share row exclusive mode", namespace, tableName));
+            }
+        }
+        List<String> tableNameList = new ArrayList<>(tableNames);
+        if (!sharesAnyTable(connection, namespace, tableNameList)) return;
+        for (String tableName : tableNameList) {
+            prepareTableForWrite(connection, namespace, tableName);
+        }
+    }
+
+    /**
+     * Copy any of the namespace's tables that are shared with other namespaces, so that the namespace can be deleted
+     * without affecting the other namespaces. This must be called before deleting the namespace.
+     */
+    public static void releaseNamespace(DataSource dataSource, String namespace) throws SQLException {
+        releaseNamespaces(dataSource, Collections.singleton(namespace));
+    }
+
+    /**
+     * Copy any tables in the namespaces that are shared with namespaces not being released, so that the namespaces can
+     * all be deleted without affecting the others. Tables shared only among the released namespaces are not copied
+     * (e.g., when deleting a feed source's editor buffer along with all of its snapshots). This must be called before
+     * deleting the namespaces.
+     */
+    public static void releaseNamespaces(DataSource dataSource, Collection<String> namespaces) throws SQLException {
+        Set<String> releasedNamespaces = new HashSet<>(namespaces);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            for (String namespace : releasedNamespaces) {
+                List<String> tableNames = getTableNames(connection, namespace);
+                if (!sharesAnyTable(connection, namespace, tableNames)) continue;
+                for (String tableName : tableNames) {
+                    // Views in the namespaces are simply dropped with the namespaces.
+                    if (!VIEW.equals(getTableType(connection, namespace, tableName))) {
+                        copyForSharingNamespaces(connection, namespace, tableName, releasedNamespaces);
+                    }
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * Copy the table if it is a view of a table in another namespace or, if it is a physical table, replace any views
+     * of it in other namespaces with a single copy of the table (which the other views then select from). The caller
+     * is responsible for committing the transaction.
+     */
+    public static void prepareTableForWrite(Connection connection, String namespace, String tableName)
+        throws SQLException {
+        String tableType = getTableType(connection, namespace, tableName);
+        if (tableType == null) return;
+        if (VIEW.equals(tableType)) {
+            materialize(connection, namespace, tableName);
+            return;
+        }
+        copyForSharingNamespaces(connection, namespace, tableName, Collections.emptySet());
+    }
+
+    /**
+     * Replace the views of the physical table in other namespaces (except the excluded namespaces) with a single copy of
+     * the table (which the other views then select from).
+     */
+    private static void copyForSharingNamespaces(
+        Connection connection,
+        String namespace,
+        String tableName,
+        Set<String> excludedNamespaces
+    ) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (!connection.getAutoCommit()) {
+                // Block writes to the table (and other attempts to copy it) until the copy is committed.
+                statement.execute(String.format("lock table %s.%s in share row exclusive mode", namespace, tableName));
+            }
+            List<String> sharingNamespaces = getSharingNamespaces(connection, namespace, tableName);
+            sharingNamespaces.removeAll(excludedNamespaces);
+            if (sharingNamespaces.isEmpty()) return;
+            // All of the views show the same (unchanged) records, so they can all share one copy (unless a view was
+            // created before columns were added to the table).
+            String copyNamespace = sharingNamespaces.get(0);
+            List<String> copyColumns = getColumnNames(connection, copyNamespace, tableName);
+            materialize(connection, copyNamespace, tableName);
+            for (String sharingNamespace : sharingNamespaces.subList(1, sharingNamespaces.size())) {
+                if (!copyColumns.equals(getColumnNames(connection, sharingNamespace, tableName))) {
+                    materialize(connection, sharingNamespace, tableName);
+                    continue;
+                }
+                statement.execute(String.format(
+                    "create or replace view %s.%s as select * from %s.%s",
+                    sharingNamespace,
+                    tableName,
+                    copyNamespace,
+                    tableName
+                ));
+            }
+            LOG.info(
+                "Copied {}.{} to {} before write (shared with {} namespace(s))",
+                namespace,
+                tableName,
+                copyNamespace,
+                sharingNamespaces.size()
+            );
+        }
+    }
+
+    /**
+     * Get the tables that a create, update, or delete of a record in the table may write to. If cascading (i.e., the
+     * record is deleted or its key value changes), this includes all of the tables that reference the table.
+     */
+    public static Set<Table> getTablesWrittenBy(Table table, boolean cascade) {
+        Set<Table> tables = new LinkedHashSet<>();
+        addWithChildTables(tables, table);
+        boolean foundReferencingTable = cascade;
+        while (foundReferencingTable) {
+            foundReferencingTable = false;
+            for (Table otherTable : Table.tablesInOrder) {
+                if (tables.contains(otherTable)) continue;
+                for (Table writtenTable : new ArrayList<>(tables)) {
+                    if (referencesKeyOf(otherTable, writtenTable)) {
+                        addWithChildTables(tables, otherTable);
+                        foundReferencingTable = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Whether updating the record with the JSON body would change its key value (e.g., stop_id), in which case
+     * references to the record in other tables are also updated. Returns true if the key value cannot be determined.
+     */
+    public static boolean keyValueChanges(DataSource dataSource, String namespace, Table table, int id, String jsonBody)
+        throws SQLException, IOException {
+        String keyFieldName = table.getKeyFieldName();
+        JsonNode keyValue = mapper.readTree(jsonBody).get(keyFieldName);
+        if (keyValue == null) return true;
+        try (
+            Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(
+                String.format("select %s from %s.%s where id = ?", keyFieldName, namespace, table.name)
+            )
+        ) {
+            statement.setInt(1, id);
+            ResultSet resultSet = statement.executeQuery();
+            return !resultSet.next() || !keyValue.asText().equals(resultSet.getString(1));
+        }
+    }
+
+    private static void copyTableResults(FeedLoadResult source, FeedLoadResult result) {
+        result.agency = source.agency;
+        result.calendar = source.calendar;
+        result.calendarDates = source.calendarDates;
+        result.fareAttributes = source.fareAttributes;
+        result.fareRules = source.fareRules;
+        result.feedInfo = source.feedInfo;
+        result.frequencies = source.frequencies;
+        result.routes = source.routes;
+        result.shapes = source.shapes;
+        result.stops = source.stops;
+        result.stopTimes = source.stopTimes;
+        result.transfers = source.transfers;
+        result.trips = source.trips;
+    }
+
+    private static void addWithChildTables(Set<Table> tables, Table table) {
+        tables.add(table);
+        tables.addAll(CHILD_TABLES.getOrDefault(table, Collections.emptyList()));
+    }
+
+    private static boolean referencesKeyOf(Table table, Table referencedTable) {
+        String keyFieldName = referencedTable.getKeyFieldName();
+        for (Field field : table.fields) {
+            if (referencedTable.equals(field.referenceTable)) return true;
+            if (referencedTable.hasUniqueKeyField && field.name.equals(keyFieldName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replace the view with a copy (including indexes, constraints, and defaults) of the table it selects from. Only
+     * the view's columns are copied, in case columns have since been added to the table.
+     */
+    private static void materialize(Connection connection, String namespace, String tableName) throws SQLException {
+        String baseNamespace = getBaseNamespace(connection, namespace, tableName);
+        List<String> viewColumns = getColumnNames(connection, namespace, tableName);
+        String qualifiedName = String.format("%s.%s", namespace, tableName);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop view " + qualifiedName);
+            statement.execute(String.format(
+                "create table %s (like %s.%s including all)",
+                qualifiedName,
+                baseNamespace,
+                tableName
+            ));
+            for (String columnName : getColumnNames(connection, namespace, tableName)) {
+                if (!viewColumns.contains(columnName)) {
+                    statement.execute(String.format("alter table %s drop column %s", qualifiedName, columnName));
+                }
+            }
+            String columns = String.join(", ", viewColumns);
+            statement.execute(String.format(
+                "insert into %s (%s) select %s from %s.%s",
+                qualifiedName,
+                columns,
+                columns,
+                baseNamespace,
+                tableName
+            ));
+            // The copied defaults still draw from the original table's sequences, so give the copy its own.
+            for (String columnName : getSequenceColumnNames(connection, namespace, tableName)) {
+                String sequenceName = String.format("%s.%s_%s_seq", namespace, tableName, columnName);
+                statement.execute(String.format(
+                    "create sequence %s owned by %s.%s",
+                    sequenceName,
+                    qualifiedName,
+                    columnName
+                ));
+                statement.execute(String.format(
+                    "select setval('%s', coalesce(max(%s), 0) + 1, false) from %s",
+                    sequenceName,
+                    columnName,
+                    qualifiedName
+                ));
+                statement.execute(String.format(
+                    "alter table %s alter column %s set default nextval('%s')",
+                    qualifiedName,
+                    columnName,
+                    sequenceName
+                ));
+            }
+        }
+    }
+
+    /**
+     * Whether any of the tables are views or are shared with (i.e., have views in) other namespaces.
+     */
+    private static boolean sharesAnyTable(Connection connection, String namespace, List<String> tableNames)
+        throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+            "select 1 from information_schema.view_table_usage " +
+                "where (view_schema = ? or table_schema = ?) and view_name = table_name and table_name = any(?) limit 1"
+        )) {
+            statement.setString(1, namespace);
+            statement.setString(2, namespace);
+            statement.setArray(3, connection.createArrayOf("varchar", tableNames.toArray()));
+            return statement.executeQuery().next();
+        }
+    }
+
+    /**
+     * Get the namespaces (other than the table's own namespace) with a view of the table.
+     */
+    private static List<String> getSharingNamespaces(Connection connection, String namespace, String tableName)
+        throws SQLException {
+        return queryForStrings(
+            connection,
+            "select view_schema from information_schema.view_table_usage " +
+                "where table_schema = ? and table_name = ? and view_name = table_name and view_schema <> table_schema " +
+                "order by view_schema",
+            namespace,
+            tableName
+        );
+    }
+
+    /**
+     * Get the namespace of the physical table that a table selects from (or the namespace itself if the table is not a
+     * view).
+     */
+    private static String getBaseNamespace(Connection connection, String namespace, String tableName)
+        throws SQLException {
+        if (!VIEW.equals(getTableType(connection, namespace, tableName))) return namespace;
+        List<String> baseNamespaces = queryForStrings(
+            connection,
+            "select table_schema from information_schema.view_table_usage " +
+                "where view_schema = ? and view_name = ? and table_name = view_name",
+            namespace,
+            tableName
+        );
+        if (baseNamespaces.size() != 1) {
+            throw new SQLException(String.format("View %s.%s does not share a single table.", namespace, tableName));
+        }
+        return baseNamespaces.get(0);
+    }
+
+    /**
+     * Get the table type (e.g., BASE TABLE or VIEW), or null if the table does not exist.
+     */
+    private static String getTableType(Connection connection, String namespace, String tableName) throws SQLException {
+        List<String> tableTypes = queryForStrings(
+            connection,
+            "select table_type from information_schema.tables where table_schema = ? and table_name = ?",
+            namespace,
+            tableName
+        );
+        return tableTypes.isEmpty() ? null : tableTypes.get(0);
+    }
+
+    private static List<String> getTableNames(Connection connection, String namespace) throws SQLException {
+        return queryForStrings(
+            connection,
+            "select table_name from information_schema.tables where table_schema = ? order by table_name",
+            namespace
+        );
+    }
+
+    private static List<String> getColumnNames(Connection connection, String namespace, String tableName)
+        throws SQLException {
+        return queryForStrings(
+            connection,
+            "select column_name from information_schema.columns " +
+                "where table_schema = ? and table_name = ? order by ordinal_position",
+            namespace,
+            tableName
+        );
+    }
+
+    private static List<String> getSequenceColumnNames(Connection connection, String namespace, String tableName)
+        throws SQLException {
+        return queryForStrings(
+            connection,
+            "select column_name from information_schema.columns " +
+                "where table_schema = ? and table_name = ? and column_default like 'nextval(%'",
+            namespace,
+            tableName
+        );
+    }
+
+    private static List<String> queryForStrings(Connection connection, String sql, String... parameters)
+        throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                values.add(resultSet.getString(1));
+            }
+        }
+        return values;
+    }
+}
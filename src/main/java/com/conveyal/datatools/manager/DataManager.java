@@ -26,6 +26,7 @@ import com.conveyal.datatools.manager.extensions.mtc.MtcFeedResource;
 import com.conveyal.datatools.manager.extensions.transitfeeds.TransitFeedsFeedResource;
 import com.conveyal.datatools.manager.extensions.transitland.TransitLandFeedResource;
 import com.conveyal.datatools.manager.jobs.FeedUpdater;
+import com.conveyal.datatools.manager.jobs.ValidateAllFeedsJob;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.ErrorUtils;
 import com.conveyal.datatools.manager.utils.json.JsonUtil;
@@ -143,6 +144,9 @@ public class DataManager {
 
         // Initialize scheduled tasks
         Scheduler.initialize();
+
+        // Resume any bulk validation interrupted by the last shutdown
+        ValidateAllFeedsJob.resumeIncompleteJobs();
     }
 
     /*
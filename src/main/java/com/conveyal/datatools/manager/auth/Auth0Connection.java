@@ -38,6 +38,14 @@ public class Auth0Connection {
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final Logger LOG = LoggerFactory.getLogger(Auth0Connection.class);
     private static JWTVerifier verifier;
+    /**
+     * Profiles for recently verified tokens. Tokens are only cached until they expire, so the upper bound on the time
+     * to live mainly limits how long a token's profile is held in memory after the user stops making requests.
+     */
+    private static final VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(
+        Long.parseLong(getConfigPropertyAsText("AUTH_TOKEN_CACHE_MAX_SIZE", "1000")),
+        Long.parseLong(getConfigPropertyAsText("AUTH_TOKEN_CACHE_TTL_SECONDS", "3600"))
+    );
 
     /**
      * Whether authentication is disabled for the HTTP endpoints. This defaults to the value in the config file, but can
@@ -73,6 +81,12 @@ public class Auth0Connection {
         if (token == null) {
             logMessageAndHalt(req, 401, "Could not find authorization token");
         }
+        // Skip verification if the token has already been verified (and has not yet expired).
+        Auth0UserProfile cachedProfile = verifiedTokens.get(token);
+        if (cachedProfile != null) {
+            req.attribute("user", cachedProfile);
+            return;
+        }
         // Handle getting the verifier outside of the below verification try/catch, which is intended to catch issues
         // with the client request. (getVerifier has its own exception/halt handling).
         verifier = getVerifier(req);
@@ -82,6 +96,7 @@ public class Auth0Connection {
             Map<String, Object> jwt = verifier.verify(token);
             remapTokenValues(jwt);
             Auth0UserProfile profile = MAPPER.convertValue(jwt, Auth0UserProfile.class);
+            verifiedTokens.put(token, jwt.get("exp"), profile);
             // The user attribute is used on the server side to check user permissions and does not have all of the
             // fields that the raw Auth0 profile string does.
             req.attribute("user", profile);
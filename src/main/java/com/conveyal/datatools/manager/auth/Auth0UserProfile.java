@@ -19,6 +19,8 @@ import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Auth0UserProfile {
+    private static final String SYSTEM_USER_ID = "user_id:system";
+
     String email;
     String user_id;
     AppMetadata app_metadata;
@@ -66,7 +68,15 @@ public class Auth0UserProfile {
      * Utility method for creating a system user (for autonomous server jobs).
      */
     public static Auth0UserProfile createSystemUser() {
-        return createAdminUser("system", "user_id:system");
+        return createAdminUser("system", SYSTEM_USER_ID);
+    }
+
+    /**
+     * Whether this is the system user used for autonomous server jobs (see {@link #createSystemUser()}).
+     */
+    @JsonIgnore
+    public boolean isSystemUser() {
+        return SYSTEM_USER_ID.equals(user_id);
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.conveyal.datatools.manager.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the user profiles for JWTs that {@link Auth0Connection} has already verified, so that repeated
+ * requests with the same token skip verifying the signature and converting the claims into an {@link Auth0UserProfile}.
+ * Tokens are keyed on their SHA-256 hash (so the cache does not hold the raw tokens) and each entry is only returned
+ * until the token's exp claim, after which the token is verified again (and rejected as expired). Entries are also
+ * evicted once the cache exceeds its maximum size or once they are older than the time to live.
+ */
+class VerifiedTokenCache {
+    private final Cache<String, VerifiedToken> tokens;
+
+    VerifiedTokenCache(long maximumSize, long timeToLiveSeconds) {
+        tokens = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Get the profile for a previously verified token, or null if the token has not been verified or has expired.
+     */
+    Auth0UserProfile get(String token) {
+        String key = hash(token);
+        VerifiedToken verifiedToken = tokens.getIfPresent(key);
+        if (verifiedToken == null) return null;
+        if (System.currentTimeMillis() >= verifiedToken.expiresAtMillis) {
+            tokens.invalidate(key);
+            return null;
+        }
+        return verifiedToken.profile;
+    }
+
+    /**
+     * Store the profile for a verified token until the token's exp claim (in seconds since the epoch). Tokens without
+     * an exp claim are not cached.
+     */
+    void put(String token, Object exp, Auth0UserProfile profile) {
+        if (!(exp instanceof Number)) return;
+        long expiresAtMillis = ((Number) exp).longValue() * 1000;
+        if (System.currentTimeMillis() >= expiresAtMillis) return;
+        tokens.put(hash(token), new VerifiedToken(profile, expiresAtMillis));
+    }
+
+    private static String hash(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    }
+
+    private static class VerifiedToken {
+        final Auth0UserProfile profile;
+        final long expiresAtMillis;
+
+        VerifiedToken(Auth0UserProfile profile, long expiresAtMillis) {
+            this.profile = profile;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
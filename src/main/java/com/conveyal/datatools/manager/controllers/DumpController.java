@@ -1,24 +1,25 @@
 package com.conveyal.datatools.manager.controllers;
 
-import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
-import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
-import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
-import com.conveyal.datatools.manager.jobs.ValidateMobilityDataFeedJob;
+import com.conveyal.datatools.manager.jobs.ValidateAllFeedsJob;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.models.Model;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
-import com.conveyal.gtfs.validator.ValidationResult;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -26,14 +27,23 @@ import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.mongodb.client.model.Filters.and;
@@ -51,9 +61,11 @@ import static spark.Spark.post;
 
 public class DumpController {
     public static final Logger LOG = LoggerFactory.getLogger(DumpController.class);
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
     /**
-     * Represents a snapshot of the database. This requires loading the entire database into RAM.
-     * This shouldn't be an issue, though, as the feeds are stored separately. This is only metadata.
+     * Represents a snapshot of the database. Reading one requires loading the entire database into RAM, so dumps are
+     * instead written and loaded one object at a time (see {@link #dump} and {@link #load(InputStream)}), though older
+     * dumps in this shape can still be loaded.
      */
     public static class DatabaseState {
         public Collection<Project> projects;
@@ -84,83 +96,195 @@ public class DumpController {
     }
 
     /**
-     * Copies each table containing application data into the database state object and returns entire set of data. This,
-     * along with the other methods in this class, should only be used in a controlled environment where no outside access
-     * is permitted (e.g., using a cloned database on a local development machine). Otherwise, application data is
-     * visible to the entire world.
+     * A collection of application data included in database dumps. The collection's name is also the name of its field
+     * in a {@link DatabaseState}. When loading a dump, objects are buffered and inserted in batches.
      */
-    public static DatabaseState dump (Request req, Response res) throws JsonProcessingException {
-//        // FIXME this appears to be capable of using unbounded amounts of memory (it copies an entire database into memory)
-        DatabaseState db = new DatabaseState();
-        db.projects = Persistence.projects.getAll();
-        db.feedSources = Persistence.feedSources.getAll();
-        db.feedVersions = Persistence.feedVersions.getAll();
-        db.notes = Persistence.notes.getAll();
-        db.deployments = Persistence.deployments.getAll();
-        db.externalProperties = Persistence.externalFeedSourceProperties.getAll();
-        db.snapshots = Persistence.snapshots.getAll();
-        return db;
+    private static class DumpedCollection<T extends Model> {
+        private final String name;
+        private final Class<T> type;
+        private final TypedPersistence<T> persistence;
+        private final List<T> batch = new ArrayList<>();
+        private int loadedCount;
+
+        private DumpedCollection(String name, Class<T> type, TypedPersistence<T> persistence) {
+            this.name = name;
+            this.type = type;
+            this.persistence = persistence;
+        }
+
+        /**
+         * Write all objects in the collection to the generator (one NDJSON record per line), streaming them from the
+         * database.
+         */
+        private void write(JsonGenerator generator) throws IOException {
+            try (Stream<T> objects = persistence.streamAll()) {
+                Iterator<T> iterator = objects.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("collection", name);
+                    generator.writeFieldName("object");
+                    json.write(generator, iterator.next());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+
+        /**
+         * Read the object at the parser's current token and insert it (once the batch is full).
+         */
+        private void load(JsonParser parser) throws IOException {
+            T object = json.read(parser, type);
+            if (object == null) return;
+            batch.add(object);
+            if (batch.size() >= LOAD_BATCH_SIZE) flush();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) return;
+            persistence.createMany(batch);
+            loadedCount += batch.size();
+            LOG.info("loaded {} {}", loadedCount, name);
+            batch.clear();
+        }
+    }
+
+    /** Number of objects inserted at once when loading a dump. */
+    static final int LOAD_BATCH_SIZE = 1000;
+
+    /**
+     * Get the collections included in database dumps (in the order they are written and should be loaded).
+     */
+    private static List<DumpedCollection<?>> getDumpedCollections() {
+        return Arrays.asList(
+            new DumpedCollection<>("projects", Project.class, Persistence.projects),
+            new DumpedCollection<>("feedSources", FeedSource.class, Persistence.feedSources),
+            new DumpedCollection<>("feedVersions", FeedVersion.class, Persistence.feedVersions),
+            new DumpedCollection<>("notes", Note.class, Persistence.notes),
+            new DumpedCollection<>("deployments", Deployment.class, Persistence.deployments),
+            new DumpedCollection<>("externalProperties", ExternalFeedSourceProperty.class, Persistence.externalFeedSourceProperties),
+            new DumpedCollection<>("snapshots", Snapshot.class, Persistence.snapshots)
+        );
     }
+
+    /**
+     * Writes each table containing application data to the response as newline-delimited JSON, with one line for each
+     * object in the form {"collection": "feedSources", "object": {...}}. This, along with the other methods in this
+     * class, should only be used in a controlled environment where no outside access is permitted (e.g., using a
+     * cloned database on a local development machine). Otherwise, application data is visible to the entire world.
+     *
+     * Each collection is streamed from MongoDB straight into the response, so only one batch of objects is held in
+     * memory at a time regardless of how much data has accumulated.
+     */
+    public static HttpServletResponse dump (Request req, Response res) {
+        HttpServletResponse raw = res.raw();
+        raw.setContentType(NDJSON_CONTENT_TYPE);
+        try (
+            OutputStream outputStream = raw.getOutputStream();
+            JsonGenerator generator = json.createGenerator(outputStream)
+        ) {
+            // Records are separated by the newline written after each one.
+            generator.setRootValueSeparator(null);
+            for (DumpedCollection<?> collection : getDumpedCollections()) {
+                collection.write(generator);
+            }
+        } catch (IOException e) {
+            logMessageAndHalt(req, 500, "Could not write database dump to output stream", e);
+        }
+        return raw;
+    }
+
     // FIXME: This can now be authenticated because users are stored in Auth0.
     // this is not authenticated, because it has to happen with a bare database (i.e. no users)
     // this method in particular is coded to allow up to 500MB of data to be posted
 //    @BodyParser.Of(value=BodyParser.Json.class, maxLength = 500 * 1024 * 1024)
 
     /**
-     * Load a JSON dump into the manager database. This should be performed with the python script load.py found
-     * in the datatools-ui/scripts directory.
+     * HTTP endpoint to load a dump. NDJSON dumps are read straight from the request. Request bodies with a JSON
+     * content type have already been read into memory by the request logging (see
+     * {@link com.conveyal.datatools.common.utils.SparkUtils#logRequest}), so they are read from Spark's copy.
+     */
+    private static boolean load (Request req, Response res) {
+        try (
+            // NOTE: Spark wraps the servlet request in an HttpRequestWrapper (an internal class) whose input stream
+            // reads from a copy of the body that it caches in memory. Getting the wrapped request is the only way
+            // to read the body from the connection, but relies on this Spark implementation detail.
+            InputStream inputStream = "application/json".equals(req.contentType())
+                ? req.raw().getInputStream()
+                : ((ServletRequestWrapper) req.raw()).getRequest().getInputStream()
+        ) {
+            return load(inputStream);
+        } catch (IOException e) {
+            logMessageAndHalt(req, 400, "Error reading database dump from request", e);
+            return false;
+        }
+    }
+
+    /**
+     * Load a dump into the manager database. This should be performed with the python script load.py found
+     * in the datatools-ui/scripts directory. The dump may either be newline-delimited JSON (as written by
+     * {@link #dump}) or a single {@link DatabaseState} JSON object. Either way, objects are read one at a time and
+     * inserted in batches, so the dump is never held in memory as a whole.
      */
-    public static boolean load (String jsonString) {
+    public static boolean load (InputStream inputStream) {
         // TODO: really ought to check all tables
         LOG.info("loading data...");
-        DatabaseState db;
-        try {
-            db = json.read(jsonString);
-            LOG.info("data loaded successfully");
+        Map<String, DumpedCollection<?>> collectionsByName = getDumpedCollections().stream()
+            .collect(Collectors.toMap(collection -> collection.name, collection -> collection));
+        try (JsonParser parser = json.createParser(inputStream)) {
+            while (parser.nextToken() != null) {
+                if (!parser.isExpectedStartObjectToken()) {
+                    throw new JsonParseException(parser, "Expected a JSON object");
+                }
+                String fieldName = parser.nextFieldName();
+                if ("collection".equals(fieldName)) {
+                    // NDJSON record: {"collection": "...", "object": {...}}
+                    DumpedCollection<?> collection = getCollection(collectionsByName, parser.nextTextValue(), parser);
+                    if (!"object".equals(parser.nextFieldName())) {
+                        throw new JsonParseException(parser, "Expected object field after collection field");
+                    }
+                    parser.nextToken();
+                    collection.load(parser);
+                    if (parser.nextToken() != JsonToken.END_OBJECT) {
+                        throw new JsonParseException(parser, "Expected end of NDJSON record");
+                    }
+                } else {
+                    // DatabaseState object: {"projects": [...], "feedSources": [...], ...}
+                    for (; fieldName != null; fieldName = parser.nextFieldName()) {
+                        DumpedCollection<?> collection = getCollection(collectionsByName, fieldName, parser);
+                        JsonToken token = parser.nextToken();
+                        if (token == JsonToken.VALUE_NULL) continue;
+                        if (token != JsonToken.START_ARRAY) {
+                            throw new JsonParseException(parser, "Expected an array of " + fieldName);
+                        }
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            collection.load(parser);
+                        }
+                    }
+                }
+            }
+            for (DumpedCollection<?> collection : collectionsByName.values()) {
+                collection.flush();
+            }
         } catch (IOException e) {
             e.printStackTrace();
             LOG.error("data load error.  check json validity.");
             return false;
         }
-        for (Project project : db.projects) {
-            LOG.info("loading project {}", project.id);
-            Persistence.projects.create(project);
-        }
-
-        for (FeedSource feedSource : db.feedSources) {
-            LOG.info("loading feed source {}", feedSource.id);
-            Persistence.feedSources.create(feedSource);
-        }
-
-        for (FeedVersion feedVersion : db.feedVersions) {
-            LOG.info("loading version {}", feedVersion.id);
-            Persistence.feedVersions.create(feedVersion);
-        }
-
-        for (Note note : db.notes) {
-            LOG.info("loading note {}", note.id);
-            Persistence.notes.create(note);
-        }
-
-        for (Deployment deployment : db.deployments) {
-            LOG.info("loading deployment {}", deployment.id);
-            Persistence.deployments.create(deployment);
-        }
-
-        for (ExternalFeedSourceProperty externalFeedSourceProperty : db.externalProperties) {
-            LOG.info("loading external properties {}", externalFeedSourceProperty.id);
-            Persistence.externalFeedSourceProperties.create(externalFeedSourceProperty);
-        }
-
-        for (Snapshot snapshot : db.snapshots) {
-            LOG.info("loading snapshot {}", snapshot.id);
-            Persistence.snapshots.create(snapshot);
-        }
-
         LOG.info("load completed.");
         return true;
     }
 
+    private static DumpedCollection<?> getCollection(
+        Map<String, DumpedCollection<?>> collectionsByName,
+        String name,
+        JsonParser parser
+    ) throws JsonParseException {
+        DumpedCollection<?> collection = collectionsByName.get(name);
+        if (collection == null) throw new JsonParseException(parser, "Unknown collection " + name);
+        return collection;
+    }
+
     /**
      * Updates snapshots in Mongo database with data from a list of snapshots in a JSON dump file. This is mainly intended
      * for a one-off import that did not load in the snapshots from a dump file, but rather generated them directly from
@@ -344,30 +468,13 @@ public class DumpController {
      * HTTP endpoint that will trigger the initial or re-validation of all feed versions contained in the application.
      * The intended use cases here are 1) to validate all versions after a fresh database copy has been loaded in and
      * 2) to trigger a revalidation of all feed versions should a new validation stage be added to the validation process
-     * that needs to be applied to all feeds.
+     * that needs to be applied to all feeds. The versions are validated by a {@link ValidateAllFeedsJob}, which
+     * validates a few versions at a time and resumes where it stopped if the server restarts.
      */
-    public static boolean validateAll (boolean load, boolean force, String filterFeedId) throws Exception {
+    public static boolean validateAll (boolean load, boolean force, String filterFeedId) {
         LOG.info("validating all feeds...");
-        Collection<FeedVersion> allVersions = Persistence.feedVersions.getAll();
-        for(FeedVersion version: allVersions) {
-            ValidationResult result = version.validationResult;
-            if(!force && result != null && result.fatalException != null) {
-                // If the force option is not true and the validation result did not fail, re-validate.
-                continue;
-            }
-            if (filterFeedId != null && !version.feedSourceId.equals(filterFeedId)) {
-                // Skip all feeds except Cortland for now.
-                continue;
-            }
-            Auth0UserProfile systemUser = Auth0UserProfile.createSystemUser();
-            if (load) {
-                JobUtils.heavyExecutor.execute(new ProcessSingleFeedJob(version, systemUser, false));
-            } else {
-                JobUtils.heavyExecutor.execute(new ValidateFeedJob(version, systemUser, false));
-                JobUtils.heavyExecutor.execute(new ValidateMobilityDataFeedJob(version, systemUser, false));
-            }
-        }
-        // ValidateAllFeedsJob validateAllFeedsJob = new ValidateAllFeedsJob("system", force, load);
+        ValidateAllFeedsJob job = ValidateAllFeedsJob.create(Auth0UserProfile.createSystemUser(), load, force, filterFeedId);
+        JobUtils.heavyExecutor.execute(job);
         return true;
     }
 
@@ -376,13 +483,13 @@ public class DumpController {
      */
     public static void register (String apiPrefix) {
         post(apiPrefix + "loadLegacy", DumpController::getLegacy, json::write);
-        post(apiPrefix + "load", (request, response) -> load(request.body()), json::write);
+        post(apiPrefix + "load", DumpController::load, json::write);
         post(apiPrefix + "validateAll", (request, response) -> {
             boolean force = request.queryParams("force") != null && request.queryParams("force").equals("true");
             boolean load = request.queryParams("load") != null && request.queryParams("load").equals("true");
             return validateAll(load, force, null);
         }, json::write);
-        get(apiPrefix + "dump", DumpController::dump, json::write);
+        get(apiPrefix + "dump", DumpController::dump);
         LOG.warn("registered dump w/ prefix " + apiPrefix);
     }
 }
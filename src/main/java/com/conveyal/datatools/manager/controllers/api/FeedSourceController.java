@@ -12,6 +12,7 @@ import com.conveyal.datatools.manager.jobs.NotifyUsersForSubscriptionJob;
 import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedSourceBatchLoader;
 import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.transform.NormalizeFieldTransformation;
@@ -85,6 +86,9 @@ public class FeedSourceController {
         boolean isAdmin = user.canAdministerProject(project);
 
         Collection<FeedSource> projectFeedSources = project.retrieveProjectFeedSources();
+        // Prefetch the properties derived from other collections for all feed sources at once so that serializing the
+        // response does not query MongoDB for each feed source.
+        FeedSourceBatchLoader.load(projectFeedSources);
         for (FeedSource source: projectFeedSources) {
             String orgId = source.organizationId();
             // If user can view or manage feed, add to list of feeds to return. NOTE: By default most users with access
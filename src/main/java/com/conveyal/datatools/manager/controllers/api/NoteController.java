@@ -8,10 +8,10 @@ import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.models.Model;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.MongoCollection;
 import org.eclipse.jetty.http.HttpStatus;
 import spark.Request;
 import spark.Response;
@@ -21,7 +21,6 @@ import java.util.Collection;
 import java.util.Date;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
-import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Updates.push;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -73,10 +72,10 @@ public class NoteController {
         }
         // Create note and update feed source or version with noteIds
         Persistence.notes.create(note);
-        MongoCollection collection = objectWithNote instanceof FeedSource
-            ? Persistence.feedSources.getMongoCollection()
-            : Persistence.feedVersions.getMongoCollection();
-        collection.updateOne(eq(objectWithNote.id), push("noteIds", note.id));
+        TypedPersistence<? extends Model> collection = objectWithNote instanceof FeedSource
+            ? Persistence.feedSources
+            : Persistence.feedVersions;
+        collection.updateOne(objectWithNote.id, push("noteIds", note.id));
         String message = String.format(
                 "%s commented on %s at %s:<blockquote>%s</blockquote>",
                 note.userEmail,
@@ -1,32 +1,64 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobExecutor;
+import com.conveyal.datatools.common.status.JobStatusEventLog;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.RequestSummary;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.persistence.EntityCache;
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+import static spark.Spark.delete;
 import static spark.Spark.get;
 
 /**
  * Created by landon on 6/13/16.
  */
 public class StatusController {
+    private static final Logger LOG = LoggerFactory.getLogger(StatusController.class);
     private static JsonManager<MonitorableJob.Status> json =
         new JsonManager<>(MonitorableJob.Status.class, JsonViews.UserInterface.class);
 
+    /** Time between heartbeats sent on idle job status streams (so that proxies do not close the connection). */
+    private static final long STREAM_HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    /**
+     * Maximum time a job status stream is held open. Streams each hold a request thread, so clients are made to
+     * reconnect (resuming from their last event) periodically rather than holding threads indefinitely.
+     */
+    private static final long STREAM_MAX_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** Time the client should wait before reconnecting to the stream, sent with the SSE retry field. */
+    private static final long STREAM_RETRY_MILLIS = 5000;
+
+    /** Recent job status changes that are pushed to clients connected to the job status stream. */
+    private static final JobStatusEventLog jobStatusEvents = new JobStatusEventLog(
+        Integer.parseInt(getConfigPropertyAsText("JOB_STATUS_EVENT_CAPACITY", "1000")),
+        Integer.parseInt(getConfigPropertyAsText("JOB_STATUS_STREAM_MAX_CONNECTIONS", "50")),
+        500,
+        StatusController::writeJob
+    );
+
     /**
      * Admin API route to return active jobs for all application users.
      */
@@ -51,6 +83,28 @@ public class StatusController {
             .collect(Collectors.toList());
     }
 
+    /**
+     * Admin API route to return hit/miss metrics for the MongoDB read-through caches.
+     */
+    private static List<EntityCache.Summary> getCacheSummariesRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view cache metrics");
+        }
+        return Persistence.getCacheSummaries();
+    }
+
+    /**
+     * Admin API route to return queue depths, running jobs and wait times for the job executors.
+     */
+    private static List<JobExecutor.Summary> getExecutorSummariesRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        if (!userProfile.canAdministerApplication()) {
+            logMessageAndHalt(req, 401, "User not authorized to view job queues");
+        }
+        return JobUtils.getExecutorSummaries();
+    }
+
     /**
      * API route that returns single job by ID from among the jobs for the currently authenticated user.
      */
@@ -63,18 +117,112 @@ public class StatusController {
     }
 
     /**
-     * API route that cancels a single job by ID.
+     * API route that cancels a single job by ID. Users may cancel their own jobs and application admins may cancel any
+     * job. Running jobs stop at their next cancellation check, so the returned job may still be active; its status will
+     * show the job as failed once it has stopped.
      */
-    // TODO Add ability to cancel job. This requires some changes to how these jobs are executed. It appears that
-    //  only scheduled jobs can be canceled.
-//    private static MonitorableJob cancelJob(Request req, Response res) {
-//        String jobId = req.params("jobId");
-//        Auth0UserProfile userProfile = req.attribute("user");
-//        // FIXME: refactor underscore in user_id methods
-//        String userId = userProfile.getUser_id();
-//        MonitorableJob job = getJobById(userId, jobId, true);
-//        return job;
-//    }
+    private static MonitorableJob cancelJobRoute(Request req, Response res) {
+        String jobId = req.params("jobId");
+        Auth0UserProfile userProfile = req.attribute("user");
+        // FIXME: refactor underscore in user_id methods
+        String userId = userProfile.getUser_id();
+        MonitorableJob job = userProfile.canAdministerApplication()
+            ? JobUtils.getJobByJobId(jobId)
+            : JobUtils.getJobById(userId, jobId, false);
+        if (job == null) {
+            logMessageAndHalt(req, 404, "No job found for ID " + jobId);
+        }
+        if (job.status.completed) {
+            logMessageAndHalt(req, 400, "Job has already finished and cannot be cancelled.");
+        }
+        JobUtils.cancelJob(job);
+        return job;
+    }
+
+    /**
+     * API route that pushes changes to the currently authenticated user's jobs as server-sent events, as an alternative
+     * to polling {@link #getUserJobsRoute}. Each event has the type "job" and contains the JSON for a single job (in the
+     * same form as the polling endpoint), sent whenever that job's status changes.
+     *
+     * Clients that reconnect with the Last-Event-ID header (or the lastEventId query param) are sent only the changes
+     * they have missed. New clients, and clients whose last event is no longer retained, are first sent all of their
+     * current jobs. If too many streams are already open, this returns 503 and clients should fall back to polling.
+     *
+     * Note: the stream requires the same Authorization header as other secure endpoints, so browser clients must use a
+     * fetch-based event stream reader rather than the native EventSource.
+     */
+    private static HttpServletResponse streamUserJobsRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        String userId = userProfile.getUser_id();
+        long lastEventId = getLastEventId(req);
+        if (!jobStatusEvents.tryOpenStream()) {
+            logMessageAndHalt(req, 503, "Too many job status streams are open. Poll for job status instead.");
+        }
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("text/event-stream");
+        raw.setCharacterEncoding("UTF-8");
+        raw.setHeader("Cache-Control", "no-cache");
+        // Override the gzip content encoding applied to standard API responses, which would buffer the events.
+        raw.setHeader("Content-Encoding", "identity");
+        try (Writer writer = new OutputStreamWriter(raw.getOutputStream(), StandardCharsets.UTF_8)) {
+            writer.write(String.format("retry: %d\n\n", STREAM_RETRY_MILLIS));
+            if (!jobStatusEvents.canResumeFrom(lastEventId)) {
+                // Send the current state of all the user's jobs. Any changes made after getting the event ID are sent
+                // again below, which is harmless because each event contains the job's full status.
+                lastEventId = jobStatusEvents.getLastEventId();
+                for (MonitorableJob job : JobUtils.getJobsByUserId(userId, false)) {
+                    writeEvent(writer, lastEventId, writeJob(job));
+                }
+            }
+            writer.flush();
+            long deadline = System.currentTimeMillis() + STREAM_MAX_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                JobStatusEventLog.Batch batch = jobStatusEvents.awaitEvents(userId, lastEventId, STREAM_HEARTBEAT_MILLIS);
+                if (batch.events.isEmpty()) {
+                    // Send the latest event ID with the heartbeat so that a reconnecting client skips other users' events.
+                    writer.write(String.format(": heartbeat\nid: %d\n\n", batch.lastEventId));
+                }
+                for (JobStatusEventLog.Event event : batch.events) writeEvent(writer, event.id, event.json);
+                lastEventId = batch.lastEventId;
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // The client has disconnected.
+            LOG.debug("Job status stream closed for user {}", userId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            jobStatusEvents.closeStream();
+        }
+        return raw;
+    }
+
+    /**
+     * Get the ID of the last event the client received from the Last-Event-ID header (sent automatically by
+     * EventSource on reconnect) or the lastEventId query param. Returns -1 if neither is provided.
+     */
+    private static long getLastEventId(Request req) {
+        String lastEventId = req.headers("Last-Event-ID");
+        if (lastEventId == null) lastEventId = req.queryParams("lastEventId");
+        if (lastEventId == null) return -1;
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeEvent(Writer writer, long id, String data) throws IOException {
+        writer.write(String.format("id: %d\nevent: job\ndata: %s\n\n", id, data));
+    }
+
+    private static String writeJob(MonitorableJob job) {
+        try {
+            return json.write(job);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize job " + job.jobId, e);
+        }
+    }
 
     /**
      * API route that returns a set of active jobs for the currently authenticated user.
@@ -88,14 +236,18 @@ public class StatusController {
     }
 
     public static void register (String apiPrefix) {
+        JobUtils.jobRegistry.subscribe(jobStatusEvents);
 
         get(apiPrefix + "secure/status/requests", StatusController::getAllRequestsRoute, json::write);
+        get(apiPrefix + "secure/status/cache", StatusController::getCacheSummariesRoute, json::write);
+        get(apiPrefix + "secure/status/executors", StatusController::getExecutorSummariesRoute, json::write);
         // These endpoints return all jobs for the current user, all application jobs, or a specific job
         get(apiPrefix + "secure/status/jobs", StatusController::getUserJobsRoute, json::write);
         // FIXME Change endpoint for all jobs (to avoid overlap with jobId param)?
         get(apiPrefix + "secure/status/jobs/all", StatusController::getAllJobsRoute, json::write);
+        // Pushes changes to the user's jobs (an alternative to polling secure/status/jobs).
+        get(apiPrefix + "secure/status/jobs/stream", StatusController::streamUserJobsRoute);
         get(apiPrefix + "secure/status/jobs/:jobId", StatusController::getOneJobRoute, json::write);
-        // TODO Add ability to cancel job
-//        delete(apiPrefix + "secure/status/jobs/:jobId", StatusController::cancelJob, json::write);
+        delete(apiPrefix + "secure/status/jobs/:jobId", StatusController::cancelJobRoute, json::write);
     }
 }
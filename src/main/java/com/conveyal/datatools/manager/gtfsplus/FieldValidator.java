@@ -0,0 +1,71 @@
+package com.conveyal.datatools.manager.gtfsplus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A GTFS+ field spec (from gtfsplus.yml) compiled for validating values, so that the spec is interpreted once per
+ * table rather than once per value. The checks are equivalent to the JsonNode-based helpers in
+ * {@link GtfsPlusValidation} (e.g., {@link GtfsPlusValidation#isValueValidWithParent}).
+ */
+class FieldValidator {
+    final String name;
+    final String inputType;
+    final boolean required;
+    /** Max length for TEXT values (or null if there is no limit). */
+    final Integer maxLength;
+    /** Name of the field whose value constrains this field's options (or null if there is none). */
+    final String parentFieldName;
+    /** Option values for DROPDOWN values. Note: per client's request, this check is case insensitive. */
+    private final Set<String> optionValues = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    /** Parent value for each option value (null if the option has no parent value). */
+    private final Map<String, String> optionParentValues = new HashMap<>();
+    /** Displayed text for each option value that has text. */
+    private final Map<String, String> optionTexts = new HashMap<>();
+
+    FieldValidator(JsonNode specField) {
+        name = specField.get("name").asText();
+        inputType = specField.get("inputType").asText();
+        required = specField.get("required") != null && specField.get("required").asBoolean();
+        maxLength = specField.get("maxLength") != null ? specField.get("maxLength").asInt() : null;
+        parentFieldName = specField.get("parent") != null ? specField.get("parent").asText() : null;
+        JsonNode options = specField.get("options");
+        if (options != null) {
+            for (JsonNode option : options) {
+                JsonNode valueNode = option.get("value");
+                if (valueNode == null) continue;
+                String value = valueNode.asText();
+                optionValues.add(value);
+                // As with GtfsPlusValidation#findNode, the first option with a given value applies.
+                if (optionParentValues.containsKey(value)) continue;
+                JsonNode parentValueNode = option.get("parentValue");
+                optionParentValues.put(value, parentValueNode != null ? parentValueNode.asText() : null);
+                JsonNode textNode = option.get("text");
+                if (textNode != null) optionTexts.put(value, textNode.asText());
+            }
+        }
+    }
+
+    /** Whether the value is one of the field's options (or is blank for an optional field). */
+    boolean isValidOption(String value) {
+        return (value != null && optionValues.contains(value)) || (!required && "".equals(value));
+    }
+
+    /** Whether the value is an option belonging to the parent value (or an option without a parent value). */
+    boolean isValueValidWithParent(String parentValue, String value) {
+        // If the provided value is not one of the options, then the value is not valid.
+        if (!optionParentValues.containsKey(value)) return false;
+        String optionParentValue = optionParentValues.get(value);
+        // If no parent value is defined, the value is always valid.
+        return optionParentValue == null || optionParentValue.equals(parentValue);
+    }
+
+    /** Gets the displayed text for an option (or the value itself if the option has no text). */
+    String getOptionText(String value) {
+        return optionTexts.getOrDefault(value, value);
+    }
+}
@@ -4,10 +4,8 @@ import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.conveyal.gtfs.GTFSFeed;
 import com.csvreader.CsvReader;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.logging.log4j.util.Strings;
 import org.slf4j.Logger;
@@ -18,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -46,9 +45,8 @@ public class GtfsPlusValidation implements Serializable {
     }
 
     /**
-     * Validate a GTFS+ feed and return a list of issues encountered.
-     * FIXME: For now this uses the MapDB-backed GTFSFeed class. Which actually suggests that this might
-     *   should be contained within a MonitorableJob.
+     * Validate a GTFS+ feed and return a list of issues encountered. References to GTFS entities (e.g., route IDs) are
+     * checked against the feed version's tables in the GTFS database.
      */
     public static GtfsPlusValidation validate(String feedVersionId) throws Exception {
         GtfsPlusValidation validation = new GtfsPlusValidation(feedVersionId);
@@ -58,29 +56,11 @@ public class GtfsPlusValidation implements Serializable {
         LOG.info("Validating GTFS+ for " + feedVersionId);
 
         FeedVersion feedVersion = Persistence.feedVersions.getById(feedVersionId);
-        // Load the main GTFS file.
-        // FIXME: Swap MapDB-backed GTFSFeed for use of SQL data?
-        File gtfsFeedDbFile = gtfsPlusStore.getFeedFile(feedVersionId + ".db");
-        String gtfsFeedDbFilePath = gtfsFeedDbFile.getAbsolutePath();
-        GTFSFeed gtfsFeed;
-        try {
-            // This check for existence must occur before GTFSFeed is instantiated (and the file must be discarded
-            // immediately).
-            boolean dbExists = gtfsFeedDbFile.isFile();
-            gtfsFeed = new GTFSFeed(gtfsFeedDbFilePath);
-            if (!dbExists) {
-                LOG.info("Loading GTFS file into new MapDB file (.db).");
-                gtfsFeed.loadFromFile(new ZipFile(feedVersion.retrieveGtfsFile().getAbsolutePath()));
-            }
-        } catch (Exception e) {
-            LOG.error("MapDB file for GTFSFeed appears to be corrupted. Deleting and trying to load from zip file.", e);
-            // Error loading MapDB file. Delete and try to reload.
-            gtfsFeedDbFile.delete();
-            new File(gtfsFeedDbFilePath + ".p").delete();
-            LOG.info("Attempt #2 to load GTFS file into new MapDB file (.db).");
-            gtfsFeed = new GTFSFeed(gtfsFeedDbFilePath);
-            gtfsFeed.loadFromFile(new ZipFile(feedVersion.retrieveGtfsFile().getAbsolutePath()));
+        if (feedVersion.namespace == null) {
+            throw new IllegalStateException("Feed version must be loaded into the GTFS database to run GTFS+ validation.");
         }
+        deleteMapDbFiles(feedVersionId);
+        ReferencedGtfsIds gtfsIds = new ReferencedGtfsIds(DataManager.GTFS_DATA_SOURCE, feedVersion.namespace);
 
         // check for saved GTFS+ data
         File file = gtfsPlusStore.getFeed(feedVersionId);
@@ -93,25 +73,38 @@ public class GtfsPlusValidation implements Serializable {
             LOG.info("GTFS+ Validation -- Validating user-saved GTFS+ data (unpublished)");
         }
         int gtfsPlusTableCount = 0;
-        ZipFile zipFile = new ZipFile(file);
-        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        while (entries.hasMoreElements()) {
-            final ZipEntry entry = entries.nextElement();
-            JsonNode tableNode = findNode(DataManager.gtfsPlusConfig, "name", entry.getName());
-            if (tableNode != null) {
-                LOG.info("Validating GTFS+ table: " + entry.getName());
-                gtfsPlusTableCount++;
-                // Skip any byte order mark that may be present. Files must be UTF-8,
-                // but the GTFS spec says that "files that include the UTF byte order mark are acceptable".
-                InputStream bis = new BOMInputStream(zipFile.getInputStream(entry));
-                validateTable(validation.issues, tableNode, bis, gtfsFeed);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                JsonNode tableNode = findNode(DataManager.gtfsPlusConfig, "name", entry.getName());
+                if (tableNode != null) {
+                    LOG.info("Validating GTFS+ table: " + entry.getName());
+                    gtfsPlusTableCount++;
+                    // Skip any byte order mark that may be present. Files must be UTF-8,
+                    // but the GTFS spec says that "files that include the UTF byte order mark are acceptable".
+                    InputStream bis = new BOMInputStream(zipFile.getInputStream(entry));
+                    validateTable(validation.issues, tableNode, bis, gtfsIds);
+                }
             }
         }
-        gtfsFeed.close();
         LOG.info("GTFS+ tables found: {}/{}", gtfsPlusTableCount, DataManager.gtfsPlusConfig.size());
         return validation;
     }
 
+    /**
+     * Delete any MapDB files (.db and .p) left by previous versions of GTFS+ validation, which loaded the GTFS feed
+     * into MapDB to check references.
+     */
+    private static void deleteMapDbFiles(String feedVersionId) {
+        File gtfsFeedDbFile = gtfsPlusStore.getFeedFile(feedVersionId + ".db");
+        if (gtfsFeedDbFile.isFile()) {
+            LOG.info("Deleting unused GTFS+ MapDB file {}", gtfsFeedDbFile.getName());
+            gtfsFeedDbFile.delete();
+            new File(gtfsFeedDbFile.getAbsolutePath() + ".p").delete();
+        }
+    }
+
     /**
      * Validate a single GTFS+ table using the table specification found in gtfsplus.yml.
      */
@@ -119,8 +112,8 @@ public class GtfsPlusValidation implements Serializable {
         Collection<ValidationIssue> issues,
         JsonNode specTable,
         InputStream inputStreamToValidate,
-        GTFSFeed gtfsFeed
-    ) throws IOException {
+        ReferencedGtfsIds gtfsIds
+    ) throws IOException, SQLException {
         String tableId = specTable.get("id").asText();
 
         // Read in table data from input stream.
@@ -147,6 +140,16 @@ public class GtfsPlusValidation implements Serializable {
                 issues.add(new ValidationIssue(tableId, fieldName, -1, "Required column missing."));
             }
         }
+        // Compile the spec for each field found (and the position of any parent field) before reading any rows.
+        FieldValidator[] validators = new FieldValidator[fieldsFound.length];
+        int[] parentFieldPositions = new int[fieldsFound.length];
+        for (int f = 0; f < fieldsFound.length; f++) {
+            if (fieldsFound[f] == null) continue;
+            validators[f] = new FieldValidator(fieldsFound[f]);
+            parentFieldPositions[f] = validators[f].parentFieldName != null
+                ? getParentFieldPosition(fieldsFound, validators[f].parentFieldName)
+                : -1;
+        }
 
         // Iterate over each row and validate each field value.
         int rowIndex = 0;
@@ -167,9 +170,20 @@ public class GtfsPlusValidation implements Serializable {
                 // Validate each value in row. Note: we iterate over the fields and not values because a row may be missing
                 // columns, but we still want to validate that missing value (e.g., if it is missing a required field).
                 for (int f = 0; f < fieldsFound.length; f++) {
+                    if (validators[f] == null) continue;
                     // If value exists for index, use that. Otherwise, default to null to avoid out of bounds exception.
                     String val = f < recordColumnCount ? rowValues[f] : null;
-                    validateTableValue(issues, tableId, rowIndex, rowValues, val, fieldsFound, fieldsFound[f], gtfsFeed);
+                    int parentPosition = parentFieldPositions[f];
+                    validateTableValue(
+                        issues,
+                        tableId,
+                        rowIndex,
+                        val,
+                        validators[f],
+                        parentPosition >= 0 && parentPosition < recordColumnCount ? rowValues[parentPosition] : null,
+                        parentPosition >= 0 ? validators[parentPosition] : null,
+                        gtfsIds
+                    );
                 }
             }
             rowIndex++;
@@ -196,105 +210,86 @@ public class GtfsPlusValidation implements Serializable {
         return specField.get("required") != null && specField.get("required").asBoolean();
     }
 
-    /** Validate a single value for a GTFS+ table. */
+    /**
+     * Validate a single value for a GTFS+ table.
+     * @param parentValue     the value of the field's parent field in the same row (if any)
+     * @param parentValidator the field's parent field (or null if the parent field is not in the table)
+     */
     private static void validateTableValue(
         Collection<ValidationIssue> issues,
         String tableId,
         int rowIndex,
-        String[] allValues,
         String value,
-        JsonNode[] specFieldsFound,
-        JsonNode specField,
-        GTFSFeed gtfsFeed
-    ) {
-        if (specField == null) return;
-        String fieldName = specField.get("name").asText();
-
-        if (isRequired(specField)) {
+        FieldValidator validator,
+        String parentValue,
+        FieldValidator parentValidator,
+        ReferencedGtfsIds gtfsIds
+    ) throws SQLException {
+        String fieldName = validator.name;
+
+        if (validator.required) {
             if (value == null || value.length() == 0) {
                 issues.add(new ValidationIssue(tableId, fieldName, rowIndex, "Required field missing value"));
             }
         }
 
-        switch(specField.get("inputType").asText()) {
+        switch(validator.inputType) {
             case "DROPDOWN":
-                boolean invalid = true;
-                ArrayNode options = (ArrayNode) specField.get("options");
-                for (JsonNode option : options) {
-                    String optionValue = option.get("value").asText();
-
-                    // NOTE: per client's request, this check has been made case insensitive
-                    boolean valuesAreEqual = optionValue.equalsIgnoreCase(value);
-
-                    // if value is found in list of options, break out of loop
-                    if (valuesAreEqual || (!isRequired(specField) && "".equals(value))) {
-                        invalid = false;
-                        break;
-                    }
-                }
-                if (invalid) {
+                if (!validator.isValidOption(value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, "Value: " + value + " is not a valid option."));
                 }
 
                 // Perform the parent value check if a parent field is set in the field spec.
-                JsonNode parentFieldNode = specField.get("parent");
-                if (parentFieldNode != null) {
-                    int parentValuePosition = getParentFieldPosition(specFieldsFound, parentFieldNode.asText());
-                    String parentValue = parentValuePosition >= 0
-                        ? allValues[parentValuePosition]
-                        : null;
-                    if (!isValueValidWithParent(parentValue, value, specField)) {
-                        // Generate a message showing the text that corresponds
-                        // to the category and subcategory values.
-                        String textForValue = getOptionText(value, specField);
-                        String textForParent = parentValue;
-                        if (parentValuePosition >= 0) {
-                            textForParent = getOptionText(textForParent, specFieldsFound[parentValuePosition]);
-                        }
-
-                        issues.add(new ValidationIssue(tableId, fieldName, rowIndex,
-                            String.format(
-                                "Value '%s' is not valid field '%s' is '%s'",
-                                textForValue,
-                                parentFieldNode.asText(),
-                                textForParent
-                            )
-                        ));
-                    }
+                if (validator.parentFieldName != null && !validator.isValueValidWithParent(parentValue, value)) {
+                    // Generate a message showing the text that corresponds
+                    // to the category and subcategory values.
+                    String textForValue = validator.getOptionText(value);
+                    String textForParent = parentValidator != null
+                        ? parentValidator.getOptionText(parentValue)
+                        : parentValue;
+
+                    issues.add(new ValidationIssue(tableId, fieldName, rowIndex,
+                        String.format(
+                            "Value '%s' is not valid field '%s' is '%s'",
+                            textForValue,
+                            validator.parentFieldName,
+                            textForParent
+                        )
+                    ));
                 }
 
                 break;
             case "TEXT":
                 // check if value exceeds max length requirement
-                if (specField.get("maxLength") != null) {
-                    int maxLength = specField.get("maxLength").asInt();
+                if (validator.maxLength != null) {
+                    int maxLength = validator.maxLength;
                     if (value != null && value.length() > maxLength) {
                         issues.add(new ValidationIssue(tableId, fieldName, rowIndex, "Text value exceeds the max. length of " + maxLength));
                     }
                 }
                 break;
             case "GTFS_ROUTE":
-                if (!gtfsFeed.routes.containsKey(value)) {
+                if (!gtfsIds.contains(validator.inputType, value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Route")));
                 }
                 break;
             case "GTFS_STOP":
-                if (!gtfsFeed.stops.containsKey(value)) {
+                if (!gtfsIds.contains(validator.inputType, value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Stop")));
                 }
                 break;
             case "GTFS_TRIP":
-                if (!gtfsFeed.trips.containsKey(value)) {
+                if (!gtfsIds.contains(validator.inputType, value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Trip")));
                 }
                 break;
             case "GTFS_FARE":
-                if (!gtfsFeed.fares.containsKey(value)) {
+                if (!gtfsIds.contains(validator.inputType, value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Fare")));
                 }
                 break;
             case "GTFS_SERVICE":
-                if (!gtfsFeed.services.containsKey(value)) {
+                if (!gtfsIds.contains(validator.inputType, value)) {
                     issues.add(new ValidationIssue(tableId, fieldName, rowIndex, missingIdText(value, "Service")));
                 }
                 break;
@@ -0,0 +1,102 @@
+package com.conveyal.datatools.manager.gtfsplus;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The IDs of GTFS entities that GTFS+ fields may reference (e.g., the route IDs for a GTFS_ROUTE field), read from a
+ * feed version's namespace in the GTFS database. The IDs for each input type are loaded with a single query the first
+ * time they are needed and then checked in memory.
+ */
+class ReferencedGtfsIds {
+    private final DataSource dataSource;
+    private final String namespace;
+    private final Map<String, Set<String>> idsByInputType = new HashMap<>();
+    private Set<String> tableNames;
+
+    ReferencedGtfsIds(DataSource dataSource, String namespace) {
+        this.dataSource = dataSource;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Whether a GTFS entity of the input type exists with the ID.
+     */
+    boolean contains(String inputType, String id) throws SQLException {
+        Set<String> ids = idsByInputType.get(inputType);
+        if (ids == null) {
+            ids = loadIds(inputType);
+            idsByInputType.put(inputType, ids);
+        }
+        return ids.contains(id);
+    }
+
+    /**
+     * Get the table and ID field pairs that hold the IDs for the input type. Services (like GTFSFeed#services) may be
+     * defined in either calendar or calendar_dates.
+     */
+    private static List<String[]> getReferencedTables(String inputType) {
+        switch (inputType) {
+            case "GTFS_ROUTE":
+                return Collections.singletonList(new String[] {"routes", "route_id"});
+            case "GTFS_STOP":
+                return Collections.singletonList(new String[] {"stops", "stop_id"});
+            case "GTFS_TRIP":
+                return Collections.singletonList(new String[] {"trips", "trip_id"});
+            case "GTFS_FARE":
+                return Collections.singletonList(new String[] {"fare_attributes", "fare_id"});
+            case "GTFS_SERVICE":
+                List<String[]> serviceTables = new ArrayList<>();
+                serviceTables.add(new String[] {"calendar", "service_id"});
+                serviceTables.add(new String[] {"calendar_dates", "service_id"});
+                return serviceTables;
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private Set<String> loadIds(String inputType) throws SQLException {
+        Set<String> ids = new HashSet<>();
+        try (Connection connection = dataSource.getConnection()) {
+            if (tableNames == null) tableNames = loadTableNames(connection);
+            // Tables missing from the feed are simply not referenced.
+            List<String> selects = getReferencedTables(inputType).stream()
+                .filter(tableAndField -> tableNames.contains(tableAndField[0]))
+                .map(tableAndField -> String.format("select %s from %s.%s", tableAndField[1], namespace, tableAndField[0]))
+                .collect(Collectors.toList());
+            if (selects.isEmpty()) return ids;
+            try (PreparedStatement statement = connection.prepareStatement(String.join(" union ", selects))) {
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    ids.add(resultSet.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Set<String> loadTableNames(Connection connection) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+            "select table_name from information_schema.tables where table_schema = ?"
+        )) {
+            statement.setString(1, namespace);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+            }
+        }
+        return names;
+    }
+}
@@ -8,16 +8,21 @@ import com.conveyal.datatools.manager.models.transform.FeedTransformTarget;
 import com.conveyal.datatools.manager.models.transform.FeedTransformZipTarget;
 import com.conveyal.datatools.manager.models.transform.FeedTransformation;
 import com.conveyal.datatools.manager.models.transform.ZipTransformation;
+import com.conveyal.datatools.manager.models.transform.ZipTransformationPipeline;
+
+import java.util.List;
 
 /**
  * This job will apply a {@link ZipTransformation} or {@link DbTransformation} to a GTFS zip file or database namespace,
  * respectively, and generate the required FeedTransformTarget object from those inputs, which is passed into the
- * {@link FeedTransformation#doTransform} method.
+ * {@link FeedTransformation#doTransform} method. A list of zip transformations can also be applied together with a
+ * {@link ZipTransformationPipeline}, which rewrites the zip file only once.
  */
 public class ArbitraryTransformJob extends MonitorableJob {
 
     private final FeedTransformTarget target;
     private final FeedTransformation transformation;
+    private final ZipTransformationPipeline zipPipeline;
 
     /**
      * Constructor to initialize a feed transform job that applies to the target version's zip GTFS file.
@@ -26,6 +31,22 @@ public class ArbitraryTransformJob extends MonitorableJob {
         super(owner, "Transform " + zipTarget.gtfsFile.getAbsolutePath(), JobType.ARBITRARY_FEED_TRANSFORM);
         this.target = zipTarget;
         this.transformation = transformation;
+        this.zipPipeline = null;
+    }
+
+    /**
+     * Constructor to initialize a feed transform job that applies several transformations to the target version's zip
+     * GTFS file in a single pass.
+     */
+    public ArbitraryTransformJob(
+        Auth0UserProfile owner,
+        FeedTransformZipTarget zipTarget,
+        List<ZipTransformation> transformations
+    ) {
+        super(owner, "Transform " + zipTarget.gtfsFile.getAbsolutePath(), JobType.ARBITRARY_FEED_TRANSFORM);
+        this.target = zipTarget;
+        this.transformation = null;
+        this.zipPipeline = new ZipTransformationPipeline(transformations);
     }
 
     /**
@@ -35,6 +56,7 @@ public class ArbitraryTransformJob extends MonitorableJob {
         super(owner, "Transform " + dbTarget.snapshotId, JobType.ARBITRARY_FEED_TRANSFORM);
         this.target = dbTarget;
         this.transformation = transformation;
+        this.zipPipeline = null;
     }
 
     @Override
@@ -42,7 +64,11 @@ public class ArbitraryTransformJob extends MonitorableJob {
         // First validate the target and skip transformation if it is invalid.
         target.validate(status);
         if (status.error) return;
-        // If target is valid, perform transformation.
-        transformation.doTransform(target, status);
+        // If target is valid, perform transformation(s).
+        if (zipPipeline != null) {
+            zipPipeline.doTransform((FeedTransformZipTarget) target, status);
+        } else {
+            transformation.doTransform(target, status);
+        }
     }
 }
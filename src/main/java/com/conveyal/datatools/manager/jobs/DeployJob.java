@@ -22,6 +22,7 @@ import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.amazonaws.waiters.Waiter;
 import com.amazonaws.waiters.WaiterParameters;
+import com.conveyal.datatools.common.status.JobCancelledException;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.EC2Utils;
@@ -107,6 +108,12 @@ public class DeployJob extends MonitorableJob {
         "modules.deployment.otp_download_url",
         "https://opentripplanner-builds.s3.amazonaws.com"
     );
+    /** Size of each part of the multipart upload of a bundle to S3. */
+    private static final long BUNDLE_UPLOAD_PART_SIZE =
+        Long.parseLong(DataManager.getConfigPropertyAsText("BUNDLE_UPLOAD_PART_SIZE_MB", "32")) * 1024 * 1024;
+    /** Number of parts of a bundle uploaded to S3 at once. */
+    private static final int BUNDLE_UPLOAD_THREADS =
+        Integer.parseInt(DataManager.getConfigPropertyAsText("BUNDLE_UPLOAD_THREADS", "8"));
     private static final String BUILD_CONFIG_FILENAME = "build-config.json";
     private static final String ROUTER_CONFIG_FILENAME = "router-config.json";
 
@@ -244,6 +251,9 @@ public class DeployJob extends MonitorableJob {
         this.s3Bucket = otpServer.s3Bucket != null ? otpServer.s3Bucket : S3Utils.DEFAULT_BUCKET;
         // Use a special subclass of status here that has additional fields
         this.status = new DeployStatus();
+        // Share the same object with the parent class so that MonitorableJob#run sees this job's errors and
+        // cancellation requests.
+        replaceStatus(this.status);
         this.status.name = jobName;
         this.targetCount = otpServer.internalUrl != null ? otpServer.internalUrl.size() : 0;
         this.totalTasks = 1 + targetCount;
@@ -305,6 +315,9 @@ public class DeployJob extends MonitorableJob {
             LOG.info("Deployment pctComplete = {}", status.percentComplete);
             status.built = true;
 
+            // Stop before uploading if cancelled while the bundle was being created. The temp file is deleted in
+            // jobFinished.
+            status.checkCancelled();
             // Upload to S3, if specifically required by the OTPServer or needed for servers in the target group to fetch.
             if (otpServer.s3Bucket != null || otpServer.ec2Info != null) {
                 if (!DataManager.useS3) {
@@ -319,6 +332,8 @@ public class DeployJob extends MonitorableJob {
             }
         }
 
+        // Do not start any servers once cancelled.
+        status.checkCancelled();
         // Handle spinning up new EC2 servers for the load balancer's target group.
         if (otpServer.ec2Info != null) {
             if ("true".equals(DataManager.getConfigPropertyAsText("modules.deployment.ec2.enabled"))) {
@@ -406,6 +421,7 @@ public class DeployJob extends MonitorableJob {
             }
         }
 
+        status.checkCancelled();
         // If there are no OTP targets (i.e. we're only deploying to S3), we're done.
         if(otpServer.internalUrl != null) {
             // If we come to this point, there are internal URLs we need to deploy to (i.e., build graph over the wire).
@@ -457,10 +473,14 @@ public class DeployJob extends MonitorableJob {
         status.message = "Uploading bundle to " + getS3BundleURI();
         status.uploadingS3 = true;
         LOG.info("Uploading deployment {} to {}", deployment.name, uri.toString());
-        // Use Transfer Manager so we can monitor S3 bundle upload progress.
+        // Use Transfer Manager so we can monitor S3 bundle upload progress. The bundle is uploaded as a multipart upload
+        // with parts uploaded in parallel.
         TransferManager transferManager = TransferManagerBuilder
             .standard()
             .withS3Client(getS3ClientForDeployJob())
+            .withMultipartUploadThreshold(BUNDLE_UPLOAD_PART_SIZE)
+            .withMinimumUploadPartSize(BUNDLE_UPLOAD_PART_SIZE)
+            .withExecutorFactory(() -> Executors.newFixedThreadPool(BUNDLE_UPLOAD_THREADS))
             .build();
         final Upload uploadBundle = transferManager.upload(bucket, uri.getKey(), deploymentTempFile);
         uploadBundle.addProgressListener(
@@ -633,7 +653,7 @@ public class DeployJob extends MonitorableJob {
         }
         String message;
         // FIXME: For some reason status duration is not getting set properly in MonitorableJob.
-        status.duration = System.currentTimeMillis() - status.startTime;
+        status.duration = status.elapsedMillis();
         // persist value on most recently fetched deployment as there could have been changes to the deployment
         // before this point
         Deployment latestDeployment = Persistence.deployments.getById(deployment.id);
@@ -764,6 +784,12 @@ public class DeployJob extends MonitorableJob {
                 }
 
                 status.update("Graph build is complete!", 40);
+                // If cancelled during the graph build, do not replace the running servers. The graph building
+                // instance is terminated so that it is not left running.
+                if (status.isCancellationRequested()) {
+                    terminateInstances(graphBuildingInstances);
+                    status.checkCancelled();
+                }
                 // If only building graph, terminate the graph building instance and then mark the job as finished. We
                 // do not want to proceed with the rest of the job which would shut down existing servers running for
                 // the deployment.
@@ -926,6 +952,9 @@ public class DeployJob extends MonitorableJob {
                 // Job is complete.
                 status.completeSuccessfully("Server setup is complete!");
             }
+        } catch (JobCancelledException e) {
+            // Let MonitorableJob#run handle the cancellation.
+            throw e;
         } catch (Exception e) {
             LOG.error("Could not deploy to EC2 server", e);
             status.fail("Could not deploy to EC2 server", e);
@@ -11,9 +11,18 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
 /** Export routes or stops for a GTFS feed version as a shapefile. */
 public class DeploymentGisExportJob extends GisExportJob {
+    /** Maximum number of feed versions exported concurrently by each deployment export. */
+    private static final int GIS_EXPORT_THREADS = Integer.parseInt(getConfigPropertyAsText("GIS_EXPORT_THREADS", "4"));
     public List<SummarizedFeedVersion> feedVersions;
     public Deployment deployment;
 
@@ -25,31 +34,43 @@ public class DeploymentGisExportJob extends GisExportJob {
 
     @Override public void jobLogic() {
         LOG.info("Storing shapefiles for deployment {}", deployment.name);
-
+        // Each feed version is written to its own shapefile, so the feed versions can be exported independently.
+        ExecutorService executor = Executors.newFixedThreadPool(GIS_EXPORT_THREADS);
         try {
             File outDir = setupGisExport();
 
             int feedVersionsSize = feedVersions.size();
-            int currentFeedVersion = 1;
+            AtomicInteger feedVersionsExported = new AtomicInteger();
+            List<CompletableFuture<Void>> exports = new ArrayList<>();
             for (SummarizedFeedVersion feedVersion: feedVersions) {
-                int percentComplete = (currentFeedVersion * 100) / feedVersionsSize;
                 // Replace any slashes in the feedsource name, this will cause directory issues if left in.
                 String feedSourceName = feedVersion.feedSource.name.contains("/") ? feedVersion.feedSource.name.replace("/", "") : feedVersion.feedSource.name;
                 Path outputPath = Paths.get(outDir.getPath() + File.separator + feedSourceName);
                 File feedVersionFolder = Files.createDirectory(outputPath).toFile();
-                // feedId needs to be a collection for the base GisExportJob packageShapefiles method.
-                feedIds = Collections.singletonList(feedVersion.id);
-
-                // Pass feedVersionFolder as the outDir to write output to a feed-specific folder.
-                packageShapefiles(feedVersionFolder, feedSourceName + ".shp", percentComplete);
-
-                currentFeedVersion++;
+                exports.add(CompletableFuture.runAsync(() -> {
+                    status.checkCancelled();
+                    int percentComplete = (feedVersionsExported.get() * 100) / feedVersionsSize;
+                    // Pass feedVersionFolder as the outDir to write output to a feed-specific folder.
+                    packageShapefiles(
+                        Collections.singletonList(feedVersion.id),
+                        feedVersionFolder,
+                        feedSourceName + ".shp",
+                        percentComplete
+                    );
+                    feedVersionsExported.incrementAndGet();
+                }, executor));
             }
+            CompletableFuture.allOf(exports.toArray(new CompletableFuture[0])).join();
             zipShapefiles(outDir);
         }
         catch (IOException e) {
             status.fail("An IOException occurred while exporting the GIS shapefiles", e);
+        } catch (CompletionException e) {
+            // Rethrow the exception thrown by the feed version export (e.g., if the job was cancelled).
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        } finally {
+            executor.shutdownNow();
         }
     }
 }
-
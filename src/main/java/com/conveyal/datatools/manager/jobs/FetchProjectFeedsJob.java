@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.MonitorableJob.JobPriority;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
 import com.conveyal.datatools.manager.models.FeedSource;
@@ -52,11 +53,13 @@ public class FetchProjectFeedsJob extends MonitorableJob {
             }
             // No need to track overall status on this FetchProjectFeedsJob. All "child" jobs execute in threadpool,
             // so we don't know their status.
-            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, true);
-            // Run this in a heavy executor with continueThread = true, so that fetch/process jobs for each
-            // feed source execute in order (i.e., fetch feed source A, then process; next, fetch feed source b, then
-            // process).
-            JobUtils.heavyExecutor.execute(fetchSingleFeedJob);
+            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, false);
+            // Queue behind any interactive or scheduled jobs for individual feeds.
+            fetchSingleFeedJob.priority = JobPriority.BULK;
+            // Run the downloads in the fetch executor with continueThread = false, so that many feeds are downloaded
+            // at once (subject to the per-host limit in FeedFetchClient) and each new version is processed in the
+            // heavy executor as soon as it has been downloaded.
+            JobUtils.fetchExecutor.execute(fetchSingleFeedJob);
         }
     }
 
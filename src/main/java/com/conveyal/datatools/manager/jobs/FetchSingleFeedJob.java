@@ -69,9 +69,10 @@ public class FetchSingleFeedJob extends FeedVersionJob {
             // quickly and the "processing" happens over time. So, we run the processing in a separate thread in order
             // to match this user and system expectation.
             //
-            // The exception (continueThread = true) is provided for FetchProjectFeedsJob, when we want the feeds to
-            // fetch and then process in sequence.
+            // The exception (continueThread = true) is provided for when we want a feed to fetch and then process in
+            // sequence on the same thread.
             ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(result, this.owner, true);
+            processSingleFeedJob.priority = priority;
             if (continueThread) {
                 addNextJob(processSingleFeedJob);
             } else {
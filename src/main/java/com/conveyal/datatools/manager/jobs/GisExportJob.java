@@ -7,22 +7,15 @@ import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.loader.Feed;
-import com.conveyal.gtfs.loader.Requirement;
-import com.conveyal.gtfs.loader.Table;
 import com.conveyal.gtfs.model.Agency;
 import com.conveyal.gtfs.model.Route;
 import com.conveyal.gtfs.model.Stop;
-import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.FileUtils;
 import org.geotools.data.DataUtilities;
-import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.data.simple.SimpleFeatureStore;
-import org.geotools.feature.DefaultFeatureCollection;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -40,6 +33,7 @@ import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -51,6 +45,26 @@ public class GisExportJob extends MonitorableJob {
     public static final Logger LOG = LoggerFactory.getLogger(GisExportJob.class);
     public ExportType exportType;
     public Collection<String> feedIds;
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+    /** Number of rows fetched from the database at a time while streaming pattern points. */
+    private static final int FETCH_SIZE = 10000;
+    /**
+     * Select the points of every pattern's line, ordered by pattern and sequence: the pattern's shape points if it has a
+     * shape, otherwise the locations of its stops. (Only these pattern columns are selected because some feeds, perhaps
+     * legacy, do not contain the column patterns#direction_id. See https://github.com/ibi-group/datatools-server/issues/203)
+     */
+    private static final String PATTERN_POINTS_SQL = String.join(" ",
+        "select p.pattern_id, p.route_id, p.name, p.shape_id,",
+        "s.shape_pt_lon as lon, s.shape_pt_lat as lat, s.shape_pt_sequence as point_sequence",
+        "from %1$s.patterns as p left join %1$s.shapes as s on s.shape_id = p.shape_id",
+        "where p.shape_id is not null",
+        "union all",
+        "select p.pattern_id, p.route_id, p.name, p.shape_id, stops.stop_lon, stops.stop_lat, ps.stop_sequence",
+        "from %1$s.patterns as p left join %1$s.pattern_stops as ps on ps.pattern_id = p.pattern_id",
+        "left join %1$s.stops as stops on stops.stop_id = ps.stop_id",
+        "where p.shape_id is null",
+        "order by pattern_id, point_sequence"
+    );
 
     public GisExportJob(ExportType exportType, File file, Collection<String> feedIds, Auth0UserProfile owner) {
         super(
@@ -66,16 +80,29 @@ public class GisExportJob extends MonitorableJob {
 
     // GIS export behaviour extracted to be shared with DeploymentGISExportJob
     public void packageShapefiles(File outDir, String outShpName, int percentComplete) {
+        packageShapefiles(feedIds, outDir, outShpName, percentComplete);
+    }
+
+    /**
+     * Write the stops or routes for the feeds to a shapefile. Features are streamed from the database (one query per
+     * feed) and written to the shapefile as they are read, so that the features are never all held in memory. This may
+     * be called concurrently for different shapefiles (see {@link DeploymentGisExportJob}).
+     */
+    protected void packageShapefiles(Collection<String> feedIdsToExport, File outDir, String outShpName, int percentComplete) {
         File outShp = new File(outDir, outShpName);
-        Connection connection = null;
-        try {
-            GeometryFactory geometryFactory = new GeometryFactory();
+        ShapefileDataStore datastore = null;
+        FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter = null;
+        // Get connection for use in fetching patterns. This is outside of for loop so we're
+        // not connecting multiple times.
+        try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+            // Results are only streamed (rather than loaded all at once) within a transaction.
+            connection.setAutoCommit(false);
             ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
 
             Map<String, Serializable> params = new HashMap<>();
             params.put("url", outShp.toURI().toURL());
 
-            ShapefileDataStore datastore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
+            datastore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
             datastore.forceSchemaCRS(DefaultGeographicCRS.WGS84);
 
             final SimpleFeatureType STOP_TYPE = DataUtilities.createType(
@@ -110,12 +137,19 @@ public class GisExportJob extends MonitorableJob {
                     "agency:String"
                 )
             );
-            SimpleFeatureBuilder featureBuilder;
-            DefaultFeatureCollection features = new DefaultFeatureCollection();
-            // Get connection for use in fetching patterns. This is outside of for loop so we're
-            // not connecting multiple times.
-            connection = DataManager.GTFS_DATA_SOURCE.getConnection();
-            for (String feedId : feedIds) {
+            if (exportType.equals(ExportType.STOPS)) {
+                datastore.createSchema(STOP_TYPE);
+            } else if (exportType.equals(ExportType.ROUTES)) {
+                datastore.createSchema(ROUTE_TYPE);
+            } else {
+                throw new IllegalStateException("Invalid type");
+            }
+            // Write features directly to the shapefile (auto-commit writes go to disk as they are added, whereas a
+            // transaction would hold all of the features in memory until committed).
+            String typeName = datastore.getTypeNames()[0];
+            featureWriter = datastore.getFeatureWriterAppend(typeName, Transaction.AUTO_COMMIT);
+            int featureCount = 0;
+            for (String feedId : feedIdsToExport) {
                 // Get feed version and connection to RDBMS feed.
                 FeedVersion version = Persistence.feedVersions.getById(feedId);
                 if (version == null) {
@@ -133,152 +167,156 @@ public class GisExportJob extends MonitorableJob {
                         agencyName),
                     percentComplete
                 );
-                if (exportType.equals(ExportType.STOPS)) {
-                    datastore.createSchema(STOP_TYPE);
-                    featureBuilder = new SimpleFeatureBuilder(STOP_TYPE);
-                    for (Stop stop : feed.stops) {
-                        Point point = geometryFactory.createPoint(
-                            new Coordinate(stop.stop_lon, stop.stop_lat)
-                        );
-                        LOG.info(point.toString());
-                        featureBuilder.add(point);
-                        featureBuilder.add(stop.stop_name);
-                        featureBuilder.add(stop.stop_code);
-                        featureBuilder.add(stop.stop_desc);
-                        featureBuilder.add(stop.stop_id);
-                        featureBuilder.add(agencyName);
-                        // Build feature (null id arg will generate default ID).
-                        SimpleFeature feature = featureBuilder.buildFeature(null);
-                        features.add(feature);
-                    }
-                } else if (exportType.equals(ExportType.ROUTES)) {
-                    datastore.createSchema(ROUTE_TYPE);
-                    featureBuilder = new SimpleFeatureBuilder(ROUTE_TYPE);
-                    // There is not a clean way to fetch patterns out of the RDBMS and it may not
-                    // be worth building a structured way with JDBCTableReader simply for
-                    // exporting a shapefile. If there are future similar cases, we may need to
-                    // refactor this into a more structured operation using Java objects or
-                    // com.conveyal.gtfs.loader.Feed
-                    // Note: we use generateSelectSql for PROPRIETARY because we encountered an issue with some feeds
-                    // (perhaps legacy) not containing the column patterns#direction_id.
-                    // See https://github.com/ibi-group/datatools-server/issues/203
-                    // TODO: replace with Table#generateSelectAllSql
-                    String patternsSql = Table.PATTERNS.generateSelectSql(version.namespace, Requirement.PROPRIETARY);
-                    PreparedStatement statement = connection.prepareStatement(patternsSql);
-                    ResultSet resultSet = statement.executeQuery();
-                    // we loop over trip patterns. Note that this will yield several lines for routes that have
-                    // multiple patterns. There's no real good way to reconcile the shapes of multiple patterns.
-                    while (resultSet.next()) {
-                        String pattern_id = resultSet.getString("pattern_id");
-                        String route_id = resultSet.getString("route_id");
-                        String name = resultSet.getString("name");
-                        String shape_id = resultSet.getString("shape_id");
-                        LineString shape;
-                        if (shape_id != null) {
-                            // Select shape points for pattern shape and build line string.
-                            PreparedStatement shapeStatement = connection.prepareStatement(
-                                String.format(
-                                    "select shape_pt_lon, shape_pt_lat, shape_pt_sequence, "
-                                            + "shape_id from %s.shapes where shape_id = ? "
-                                            + "order by shape_pt_sequence",
-                                    version.namespace
-                                ));
-                            shapeStatement.setString(1, shape_id);
-                            ResultSet shapePointsResultSet = shapeStatement.executeQuery();
-                            // Construct line string from shape points.
-                            List<Coordinate> coordinates = new ArrayList<>();
-                            while (shapePointsResultSet.next()) {
-                                double lon = shapePointsResultSet.getDouble(1);
-                                double lat = shapePointsResultSet.getDouble(2);
-                                coordinates.add(new Coordinate(lon, lat));
-                            }
-                            Coordinate[] coords = new Coordinate[coordinates.size()];
-                            coords = coordinates.toArray(coords);
-                            shape = geometryFactory.createLineString(coords);
-                        } else {
-                            LOG.info("Building pattern {} from stops", pattern_id);
-                            // Build the shape from the pattern stops if there is no shape for
-                            // pattern.
-                            PreparedStatement stopsStatement = connection.prepareStatement(
-                                String.format(
-                                    "select stop_lon, stop_lat, stops.stop_id, stop_sequence, pattern_id"
-                                        + " from %s.stops as stops, %s.pattern_stops as ps"
-                                        + " where pattern_id = ? and stops.stop_id = ps.stop_id"
-                                        + " order by pattern_id, stop_sequence",
-                                    version.namespace, version.namespace
-                                ));
-                            stopsStatement.setString(1, pattern_id);
-                            List<Coordinate> coordinates = new ArrayList<>();
-                            ResultSet stopsResultSet = stopsStatement.executeQuery();
-                            while (stopsResultSet.next()) {
-                                double lon = stopsResultSet.getDouble(1);
-                                double lat = stopsResultSet.getDouble(2);
-                                coordinates.add(new Coordinate(lon, lat));
-                            }
-                            Coordinate[] coords = new Coordinate[coordinates.size()];
-                            coords = coordinates.toArray(coords);
-                            shape = geometryFactory.createLineString(coords);
-                        }
-
-                        Route route = feed.routes.get(route_id);
-                        if (route == null) {
-                            LOG.warn("Route ({}) for pattern {} does not exist. Skipping pattern"
-                                , route_id, pattern_id);
-                            continue;
-                        }
-                        featureBuilder.add(shape);
-                        featureBuilder.add(name);
-                        featureBuilder.add(route.route_short_name);
-                        featureBuilder.add(route.route_long_name);
-                        featureBuilder.add(route.route_desc);
-                        featureBuilder.add(route.route_type);
-                        featureBuilder.add(route.route_url);
-                        featureBuilder.add(route.route_color);
-                        featureBuilder.add(route.route_text_color);
-                        featureBuilder.add(shape_id);
-                        featureBuilder.add(agencyName);
-                        SimpleFeature feature = featureBuilder.buildFeature(null);
-                        features.add(feature);
-                    }
-                } else {
-                    throw new IllegalStateException("Invalid type");
-                }
+                featureCount += exportType.equals(ExportType.STOPS)
+                    ? writeStops(feed, agencyName, featureWriter)
+                    : writeRoutes(connection, version.namespace, feed, agencyName, featureWriter);
             }
-            if (features.size() == 0) {
+            featureWriter.close();
+            featureWriter = null;
+            if (featureCount == 0) {
                 throw new IllegalStateException("Cannot write shapefile with zero features!");
             }
-            // Save the file
-            Transaction transaction = new DefaultTransaction("create");
-            String typeName = datastore.getTypeNames()[0];
-            SimpleFeatureSource featureSource = datastore.getFeatureSource(typeName);
-            // Check that we have read-write access to disk:
-            // http://docs.geotools.org/stable/userguide/library/data/featuresource.html
-            if (featureSource instanceof SimpleFeatureStore) {
-                SimpleFeatureStore featureStore = (SimpleFeatureStore) featureSource;
-                featureStore.setTransaction(transaction);
-                try {
-                    LOG.info("Adding {} features to shapefile.", features.size());
-                    featureStore.addFeatures(features);
-                    transaction.commit();
-                } catch (Exception e)  {
-                    e.printStackTrace();
-                    transaction.rollback();
-                    throw e;
-                } finally {
-                    transaction.close();
-                }
-            } else {
-                // If this is thrown, there could be some other issue unrelated to read/write
-                // access, for example, during development of this feature this error was thrown
-                // when there were no features contained within the shapefile.
-                throw new Exception(typeName + " does not support read/write access (or other "
-                    + "unknown issue).");
-            }
+            LOG.info("Wrote {} features to shapefile {}.", featureCount, outShp.getName());
         }
         catch (Exception e) {
             status.fail("An exception occurred during the shapefile packaging", e);
         } finally {
-            if (connection != null) DbUtils.closeQuietly(connection);
+            if (featureWriter != null) {
+                try {
+                    featureWriter.close();
+                } catch (IOException e) {
+                    LOG.error("Could not close shapefile writer", e);
+                }
+            }
+            if (datastore != null) datastore.dispose();
+        }
+    }
+
+    /**
+     * Write a point feature for each stop in the feed.
+     * @return the number of features written
+     */
+    private static int writeStops(
+        Feed feed,
+        String agencyName,
+        FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter
+    ) throws IOException {
+        int featureCount = 0;
+        for (Stop stop : feed.stops) {
+            Point point = geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat));
+            writeFeature(featureWriter, point, stop.stop_name, stop.stop_code, stop.stop_desc, stop.stop_id, agencyName);
+            featureCount++;
+        }
+        return featureCount;
+    }
+
+    /**
+     * Write a line feature for each pattern in the feed. Note that this will yield several lines for routes that have
+     * multiple patterns. There's no real good way to reconcile the shapes of multiple patterns.
+     * @return the number of features written
+     */
+    private static int writeRoutes(
+        Connection connection,
+        String namespace,
+        Feed feed,
+        String agencyName,
+        FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter
+    ) throws SQLException, IOException {
+        // Routes are looked up for every pattern, so read them all up front rather than querying for each pattern.
+        Map<String, Route> routesById = new HashMap<>();
+        for (Route route : feed.routes) {
+            routesById.put(route.route_id, route);
+        }
+        int featureCount = 0;
+        try (PreparedStatement statement = connection.prepareStatement(String.format(PATTERN_POINTS_SQL, namespace))) {
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet resultSet = statement.executeQuery();
+            // Points are ordered by pattern, so each pattern's line is written once its last point has been read.
+            PatternLine patternLine = null;
+            while (resultSet.next()) {
+                String patternId = resultSet.getString("pattern_id");
+                if (patternLine == null || !patternLine.patternId.equals(patternId)) {
+                    featureCount += writePattern(patternLine, routesById, agencyName, featureWriter);
+                    patternLine = new PatternLine(
+                        patternId,
+                        resultSet.getString("route_id"),
+                        resultSet.getString("name"),
+                        resultSet.getString("shape_id")
+                    );
+                }
+                double lon = resultSet.getDouble("lon");
+                double lat = resultSet.getDouble("lat");
+                // Skip the null point for a pattern without any shape points or stops.
+                if (!resultSet.wasNull()) patternLine.coordinates.add(new Coordinate(lon, lat));
+            }
+            featureCount += writePattern(patternLine, routesById, agencyName, featureWriter);
+        }
+        return featureCount;
+    }
+
+    /**
+     * Write the line feature for a pattern (if its route exists).
+     * @return the number of features written
+     */
+    private static int writePattern(
+        PatternLine patternLine,
+        Map<String, Route> routesById,
+        String agencyName,
+        FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter
+    ) throws IOException {
+        if (patternLine == null) return 0;
+        if (patternLine.shapeId == null) {
+            LOG.info("Building pattern {} from stops", patternLine.patternId);
+        }
+        Route route = routesById.get(patternLine.routeId);
+        if (route == null) {
+            LOG.warn("Route ({}) for pattern {} does not exist. Skipping pattern"
+                , patternLine.routeId, patternLine.patternId);
+            return 0;
+        }
+        LineString shape = geometryFactory.createLineString(patternLine.coordinates.toArray(new Coordinate[0]));
+        writeFeature(
+            featureWriter,
+            shape,
+            patternLine.name,
+            route.route_short_name,
+            route.route_long_name,
+            route.route_desc,
+            String.valueOf(route.route_type),
+            route.route_url,
+            route.route_color,
+            route.route_text_color,
+            patternLine.shapeId,
+            agencyName
+        );
+        return 1;
+    }
+
+    /**
+     * Append a feature with the attribute values (in the order of the feature type's attributes).
+     */
+    private static void writeFeature(
+        FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter,
+        Object... attributes
+    ) throws IOException {
+        SimpleFeature feature = featureWriter.next();
+        feature.setAttributes(attributes);
+        featureWriter.write();
+    }
+
+    /** The points read so far for a pattern's line. */
+    private static class PatternLine {
+        final String patternId;
+        final String routeId;
+        final String name;
+        final String shapeId;
+        final List<Coordinate> coordinates = new ArrayList<>();
+
+        PatternLine(String patternId, String routeId, String name, String shapeId) {
+            this.patternId = patternId;
+            this.routeId = routeId;
+            this.name = name;
+            this.shapeId = shapeId;
         }
     }
 
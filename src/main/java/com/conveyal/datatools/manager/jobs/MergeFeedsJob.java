@@ -18,6 +18,7 @@ import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.ErrorUtils;
 import com.conveyal.gtfs.loader.Feed;
+import com.conveyal.gtfs.loader.Field;
 import com.conveyal.gtfs.loader.Table;
 import com.conveyal.gtfs.model.StopTime;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -27,19 +28,31 @@ import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.REGIONAL;
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeStrategy.CHECK_STOP_TIMES;
@@ -59,7 +72,7 @@ import static com.conveyal.datatools.manager.utils.MergeFeedUtils.*;
  * but in essence, this strategy attempts to merge an active and future feed into
  * a combined file. For certain entities (specifically stops and routes) it uses
  * alternate fields as primary keys (stop_code and route_short_name) if they are
- * available. There is some complexity related to this in {@link #constructMergedTable(Table, List, ZipOutputStream)}.
+ * available. There is some complexity related to this in {@link #constructMergedTable(Table, List, File)}.
  * Another defining characteristic is to prefer entities defined in the "future"
  * file if there are matching entities in the active file.
  * Future merge strategies could be added here. For example, some potential customers have mentioned a desire to
@@ -70,6 +83,8 @@ import static com.conveyal.datatools.manager.utils.MergeFeedUtils.*;
 public class MergeFeedsJob extends FeedSourceJob {
 
     private static final Logger LOG = LoggerFactory.getLogger(MergeFeedsJob.class);
+    /** Maximum number of tables merged at once by a single merge job. */
+    private static final int MERGE_FEEDS_THREADS = Integer.parseInt(getConfigPropertyAsText("MERGE_FEEDS_THREADS", "4"));
     public static final ObjectMapper mapper = new ObjectMapper();
     private final Set<FeedVersion> feedVersions;
     private final FeedSource feedSource;
@@ -184,7 +199,6 @@ public class MergeFeedsJob extends FeedSourceJob {
 
             // Determine which tables to merge (only merge GTFS+ tables for MTC extension).
             final List<Table> tablesToMerge = getTablesToMerge();
-            int numberOfTables = tablesToMerge.size();
 
             // Before initiating the merge process, get the merge strategy to use, which runs some pre-processing to
             // check for id conflicts for certain tables (e.g., trips and calendars).
@@ -204,19 +218,28 @@ public class MergeFeedsJob extends FeedSourceJob {
                 }
             }
 
-            // Loop over GTFS tables and merge each feed one table at a time.
-            for (int i = 0; i < numberOfTables; i++) {
-                Table table = tablesToMerge.get(i);
-                if (shouldSkipTable(table.name)) continue;
-                double percentComplete = Math.round((double) i / numberOfTables * 10000d) / 100d;
-                status.update("Merging " + table.name, percentComplete);
-                // Perform the merge.
-                LOG.info("Writing {} to merged feed", table.name);
-                int mergedLineNumber = constructMergedTable(table, feedMergeContext.feedsToMerge, out);
-                if (mergedLineNumber == 0) {
-                    LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
-                } else if (mergedLineNumber == -1) {
-                    LOG.error("Merge {} table failed!", table.name);
+            // Merge each table for all feeds into its own temp file, running tables that do not depend on one another
+            // concurrently, then copy the merged tables into the zip file in table order.
+            List<Table> tablesToWrite = tablesToMerge.stream()
+                .filter(table -> !shouldSkipTable(table.name))
+                .collect(Collectors.toList());
+            Map<String, File> mergedTableFiles = new HashMap<>();
+            try {
+                mergeTables(tablesToWrite, mergedTableFiles);
+                status.update("Writing merged feed", 90);
+                for (Table table : tablesToWrite) {
+                    File mergedTableFile = mergedTableFiles.get(table.name);
+                    // Tables without any entries were never written to and are omitted from the merged feed.
+                    if (mergedTableFile.length() == 0) continue;
+                    out.putNextEntry(new ZipEntry(table.name + ".txt"));
+                    Files.copy(mergedTableFile.toPath(), out);
+                    out.closeEntry();
+                }
+            } finally {
+                for (File mergedTableFile : mergedTableFiles.values()) {
+                    if (!mergedTableFile.delete()) {
+                        LOG.warn("Could not delete merged table file {}", mergedTableFile.getAbsolutePath());
+                    }
                 }
             }
         } catch (IOException e) {
@@ -299,9 +322,7 @@ public class MergeFeedsJob extends FeedSourceJob {
      */
     public void failMergeJob(String failureMessage) {
         LOG.error(failureMessage);
-        mergeFeedsResult.failed = true;
-        mergeFeedsResult.errorCount++;
-        mergeFeedsResult.failureReasons.add(failureMessage);
+        mergeFeedsResult.fail(failureMessage);
         // Use generic message for overall job status.
         status.fail("Merging feed versions failed.");
     }
@@ -345,21 +366,96 @@ public class MergeFeedsJob extends FeedSourceJob {
         }
     }
 
+    /**
+     * Merge each table into a temp file (added to mergedTableFiles). Tables are merged on a pool of
+     * MERGE_FEEDS_THREADS threads, but a table is only started once all earlier tables that it shares keys with have
+     * finished (e.g., routes waits for agency and trips waits for calendar, routes and shapes), so that the remapped
+     * and skipped IDs it relies on in {@link #mergeFeedsResult} are exactly those of a sequential merge.
+     */
+    private void mergeTables(List<Table> tables, Map<String, File> mergedTableFiles) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(MERGE_FEEDS_THREADS);
+        List<CompletableFuture<Void>> tableMerges = new ArrayList<>();
+        AtomicInteger tablesMerged = new AtomicInteger();
+        try {
+            for (int i = 0; i < tables.size(); i++) {
+                Table table = tables.get(i);
+                File mergedTableFile = File.createTempFile(table.name, ".txt");
+                mergedTableFiles.put(table.name, mergedTableFile);
+                List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    if (sharesKeys(table, tables.get(j))) dependencies.add(tableMerges.get(j));
+                }
+                tableMerges.add(
+                    CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0])).thenRunAsync(() -> {
+                        // Stop between tables if cancelled. The zip stream, feed merge context and temp files are
+                        // cleaned up in jobLogic.
+                        status.checkCancelled();
+                        LOG.info("Writing {} to merged feed", table.name);
+                        long startNanos = System.nanoTime();
+                        int mergedLineNumber = constructMergedTable(table, feedMergeContext.feedsToMerge, mergedTableFile);
+                        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                        mergeFeedsResult.millisPerTable.put(table.name, millis);
+                        Runtime runtime = Runtime.getRuntime();
+                        LOG.info(
+                            "Merged {} in {} ms ({} IDs tracked, {} MB heap in use)",
+                            table.name,
+                            millis,
+                            mergeFeedsResult.trackedIdCount(),
+                            (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024
+                        );
+                        if (mergedLineNumber == 0) {
+                            LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
+                        } else if (mergedLineNumber == -1) {
+                            LOG.error("Merge {} table failed!", table.name);
+                        }
+                        int merged = tablesMerged.incrementAndGet();
+                        double percentComplete = Math.round((double) merged / tables.size() * 9000d) / 100d;
+                        status.update("Merged " + table.name, percentComplete);
+                    }, executor)
+                );
+            }
+            CompletableFuture.allOf(tableMerges.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // Rethrow the exception thrown by the table merge (e.g., if the job was cancelled).
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether either table references records in the other (by a foreign reference or by containing the other table's
+     * key field, e.g., service_id for calendar and calendar_dates), in which case they must be merged in table order.
+     */
+    private static boolean sharesKeys(Table table, Table otherTable) {
+        return referencesKeyOf(table, otherTable) || referencesKeyOf(otherTable, table);
+    }
+
+    private static boolean referencesKeyOf(Table table, Table referencedTable) {
+        String keyFieldName = referencedTable.getKeyFieldName();
+        for (Field field : table.fields) {
+            if (referencedTable.equals(field.referenceTable) || field.name.equals(keyFieldName)) return true;
+        }
+        return false;
+    }
+
     /**
      * Merge the specified table for multiple GTFS feeds.
      *
-     * @param table        table to merge
-     * @param feedsToMerge map of feedSources to zipFiles from which to extract the .txt tables
-     * @param out          output stream to write table into
+     * @param table           table to merge
+     * @param feedsToMerge    map of feedSources to zipFiles from which to extract the .txt tables
+     * @param mergedTableFile file to write merged table into (left empty if the table has no entries)
      * @return number of lines in merged table
      */
-    private int constructMergedTable(Table table, List<FeedToMerge> feedsToMerge, ZipOutputStream out) {
+    private int constructMergedTable(Table table, List<FeedToMerge> feedsToMerge, File mergedTableFile) {
         MergeLineContext ctx = null;
-        try {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(mergedTableFile))) {
             ctx = MergeLineContext.create(this, table, out);
 
             // Iterate over each zip file. For service period merge, the first feed is the future GTFS.
             for (int feedIndex = 0; feedIndex < feedsToMerge.size(); feedIndex++) {
+                status.checkCancelled();
                 ctx.startNewFeed(feedIndex);
                 if (ctx.skipFile) continue;
                 LOG.info("Adding {} table for {}{}", table.name, ctx.feedSource.name, ctx.version.version);
@@ -461,8 +557,8 @@ public class MergeFeedsJob extends FeedSourceJob {
         // (ignoring the other identical one). If they do not match, modify the active trip_id and include.
         List<StopTime> futureStopTimes = Lists.newArrayList(futureFeed.stopTimes.getOrdered(tripId));
         List<StopTime> activeStopTimes = Lists.newArrayList(activeFeed.stopTimes.getOrdered(tripId));
-        String activeServiceId = activeFeed.trips.get(tripId).service_id;
-        String futureServiceId = futureFeed.trips.get(tripId).service_id;
+        String activeServiceId = feedMergeContext.active.getServiceId(tripId);
+        String futureServiceId = feedMergeContext.future.getServiceId(tripId);
         if (!stopTimesMatchSimplified(futureStopTimes, activeStopTimes)) {
             // If stop_times or services do not match, merge will fail and no other action will be taken.
             sharedTripIdsWithInconsistentSignature.add(tripId);
@@ -18,6 +18,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
@@ -34,6 +35,7 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
     private final boolean isNewVersion;
     private static final Logger LOG = LoggerFactory.getLogger(ProcessSingleFeedJob.class);
     private final FeedSource feedSource;
+    private ValidateMobilityDataFeedJob validateMobilityDataFeedJob;
 
     /**
      * Create a job for the given feed version.
@@ -92,8 +94,10 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
             // Run zip transformations before load to handle any operations that must be applied directly to the zip file.
             List<ZipTransformation> zipTransformations = rules.getActiveTransformations(feedVersion, ZipTransformation.class);
             FeedTransformZipTarget zipTarget = new FeedTransformZipTarget(feedVersion.retrieveGtfsFile());
-            for (ZipTransformation transformation : zipTransformations) {
-                ArbitraryTransformJob zipTransform = new ArbitraryTransformJob(owner, zipTarget, transformation);
+            if (!zipTransformations.isEmpty()) {
+                status.checkCancelled();
+                // Apply all zip transformations in a single pass over the zip file.
+                ArbitraryTransformJob zipTransform = new ArbitraryTransformJob(owner, zipTarget, zipTransformations);
                 // Run transform job in line so we can monitor the error status before load/validate begins.
                 zipTransform.run();
                 // Short circuit the feed load/validate if a pre-load transform fails.
@@ -103,12 +107,14 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
             feedVersion.feedTransformResult = zipTarget.feedTransformResult;
         }
 
+        validateMobilityDataFeedJob = new ValidateMobilityDataFeedJob(feedVersion, owner, isNewVersion);
+
         // First, load the feed into database. During this stage, the GTFS file will be uploaded to S3 (and deleted locally).
         addNextJob(new LoadFeedJob(feedVersion, owner, isNewVersion));
 
         // Next, validate the feed.
         addNextJob(new ValidateFeedJob(feedVersion, owner, isNewVersion));
-        addNextJob(new ValidateMobilityDataFeedJob(feedVersion, owner, isNewVersion));
+        addNextJob(validateMobilityDataFeedJob);
 
         // We only need to snapshot the feed if there are transformations at the database level. In the case that there
         // are, the snapshot namespace will be the target of these modifications. If we were to apply the modifications
@@ -162,6 +168,15 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
         ) {
             addNextJob(new AutoPublishJob(feedSource, owner));
         }
+
+        // MobilityData validation only needs the (transformed) zip file, so start it now (once no further steps here can
+        // fail) to run alongside the load and gtfs-lib validation. Its sub-job waits for the result, which is also joined
+        // before the version is stored.
+        try {
+            validateMobilityDataFeedJob.startInParallel();
+        } catch (IOException e) {
+            status.fail("Could not start MobilityData validation", e);
+        }
     }
 
     /**
@@ -172,6 +187,9 @@ public class ProcessSingleFeedJob extends FeedVersionJob {
         if (!status.error) {
             status.completeSuccessfully("New version saved.");
         } else {
+            // If the load or validation failed (or the job was cancelled), the sub-job waiting for the MobilityData
+            // validation never ran, so stop the validation rather than leave it running for a version that failed.
+            if (validateMobilityDataFeedJob != null) validateMobilityDataFeedJob.cancelInParallel();
             LOG.warn("Error processing version {} because of {}.", feedVersion.id, getErrorReasonMessage());
         }
         // Send notification to those subscribed to feed version updates.
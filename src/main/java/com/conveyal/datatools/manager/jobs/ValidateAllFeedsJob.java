@@ -0,0 +1,251 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.BulkValidationCheckpoint;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobUtils;
+import com.mongodb.client.model.Sorts;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+
+/**
+ * Validates (or reloads and validates) all feed versions, or all versions of a single feed source, e.g., after a fresh
+ * database copy has been loaded or a new validation stage has been added. Only VALIDATE_ALL_THREADS versions are
+ * processed at once, so that the job does not crowd out other jobs (e.g., user uploads). Progress is stored in a
+ * {@link BulkValidationCheckpoint} after each version, so that if the server restarts, the job resumes after the last
+ * version processed (see {@link #resumeIncompleteJobs()}).
+ */
+public class ValidateAllFeedsJob extends MonitorableJob {
+    private static final Logger LOG = LoggerFactory.getLogger(ValidateAllFeedsJob.class);
+    /** Maximum number of feed versions processed at once by each job. */
+    private static final int VALIDATE_ALL_THREADS = Integer.parseInt(getConfigPropertyAsText("VALIDATE_ALL_THREADS", "1"));
+    private final BulkValidationCheckpoint checkpoint;
+    /** The jobs processing versions right now, which are asked to stop if this job stops early. */
+    private final Set<MonitorableJob> jobsInProgress = ConcurrentHashMap.newKeySet();
+    /** Set once this job stops early (i.e., is cancelled or fails), so that no further versions are processed. */
+    private volatile boolean stopping = false;
+
+    /**
+     * Create a job that continues from the checkpoint (see {@link #create} to start a new job).
+     */
+    public ValidateAllFeedsJob(Auth0UserProfile owner, BulkValidationCheckpoint checkpoint) {
+        super(owner, "Validating all feed versions", JobType.VALIDATE_ALL_FEEDS);
+        this.checkpoint = checkpoint;
+        // Run behind any interactive or scheduled jobs.
+        this.priority = JobPriority.BULK;
+    }
+
+    /**
+     * Create a job (and its checkpoint) to validate all feed versions.
+     * @param load          whether to reload versions before validating them
+     * @param force         whether to include versions that failed with a fatal exception when last validated
+     * @param feedSourceId  if not null, only validate versions of this feed source
+     */
+    public static ValidateAllFeedsJob create(Auth0UserProfile owner, boolean load, boolean force, String feedSourceId) {
+        BulkValidationCheckpoint checkpoint = new BulkValidationCheckpoint();
+        checkpoint.load = load;
+        checkpoint.force = force;
+        checkpoint.feedSourceId = feedSourceId;
+        checkpoint.userId = owner.getUser_id();
+        Persistence.bulkValidationCheckpoints.create(checkpoint);
+        return new ValidateAllFeedsJob(owner, checkpoint);
+    }
+
+    /**
+     * Restart the jobs that were running (or queued) when the server last stopped.
+     */
+    public static void resumeIncompleteJobs() {
+        for (BulkValidationCheckpoint checkpoint : Persistence.bulkValidationCheckpoints.getAll()) {
+            LOG.info(
+                "Resuming validation of all feed versions ({} processed, last version {})",
+                checkpoint.processedCount,
+                checkpoint.lastVersionId
+            );
+            JobUtils.heavyExecutor.execute(new ValidateAllFeedsJob(Auth0UserProfile.createSystemUser(), checkpoint));
+        }
+    }
+
+    @Override
+    public void jobLogic() {
+        // Only collect the IDs of the versions to process up front. Each version is then fetched when it is processed,
+        // so that memory use does not depend on the size of the collection (and no cursor is held open for the
+        // duration of the job).
+        List<String> versionIds;
+        try (Stream<FeedVersion> versions = Persistence.feedVersions.streamFiltered(
+            getFilter(), Sorts.ascending("_id"), 1000, "_id"
+        )) {
+            versionIds = versions.map(version -> version.id).collect(Collectors.toList());
+        }
+        int total = checkpoint.processedCount + versionIds.size();
+        LOG.info("Validating {} feed versions ({} already processed)", versionIds.size(), checkpoint.processedCount);
+        // Versions finish out of order, but the checkpoint may only move past a version once all earlier versions are
+        // done. So, results are recorded in the order the versions were started.
+        Map<String, CompletableFuture<Boolean>> versionsInProgress = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(VALIDATE_ALL_THREADS);
+        boolean finishedAllVersions = false;
+        try {
+            for (String versionId : versionIds) {
+                status.checkCancelled();
+                if (versionsInProgress.size() >= VALIDATE_ALL_THREADS) recordOldestResult(versionsInProgress, total);
+                versionsInProgress.put(versionId, CompletableFuture.supplyAsync(() -> process(versionId), executor));
+            }
+            while (!versionsInProgress.isEmpty()) {
+                status.checkCancelled();
+                recordOldestResult(versionsInProgress, total);
+            }
+            finishedAllVersions = true;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        } finally {
+            if (!finishedAllVersions) stopJobsInProgress();
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        status.completeSuccessfully(String.format(
+            "Validated %d feed versions (%d failed).",
+            checkpoint.processedCount,
+            checkpoint.failedCount
+        ));
+    }
+
+    /**
+     * Ask the jobs processing versions to stop at their next cancellation check (rather than interrupting them, which
+     * could leave a version half loaded or saved with a failed validation result). Versions that have not started yet
+     * are skipped.
+     */
+    private void stopJobsInProgress() {
+        stopping = true;
+        for (MonitorableJob job : jobsInProgress) job.requestCancellation();
+    }
+
+    /**
+     * Wait for the versions in progress to finish (or stop), so that none are still being processed once the job has
+     * finished.
+     */
+    private void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.info("Waiting for feed versions in progress to finish");
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for feed versions in progress to finish");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The versions to process, i.e., those after the last version processed.
+     */
+    private Bson getFilter() {
+        List<Bson> filters = new ArrayList<>();
+        if (!checkpoint.force) {
+            // If the force option is not true, skip versions whose validation result has a fatal exception.
+            filters.add(eq("validationResult.fatalException", null));
+        }
+        if (checkpoint.feedSourceId != null) {
+            // Skip all feeds except the filtered feed source.
+            filters.add(eq("feedSourceId", checkpoint.feedSourceId));
+        }
+        if (checkpoint.lastVersionId != null) {
+            filters.add(gt("_id", checkpoint.lastVersionId));
+        }
+        return filters.isEmpty() ? null : and(filters);
+    }
+
+    /**
+     * Wait for the oldest version in progress to finish, then record its result in the checkpoint and status.
+     */
+    private void recordOldestResult(Map<String, CompletableFuture<Boolean>> versionsInProgress, int total) {
+        Iterator<Map.Entry<String, CompletableFuture<Boolean>>> iterator = versionsInProgress.entrySet().iterator();
+        Map.Entry<String, CompletableFuture<Boolean>> oldest = iterator.next();
+        boolean succeeded = oldest.getValue().join();
+        iterator.remove();
+        checkpoint.lastVersionId = oldest.getKey();
+        checkpoint.processedCount++;
+        if (!succeeded) checkpoint.failedCount++;
+        Persistence.bulkValidationCheckpoints.replace(checkpoint.id, checkpoint);
+        status.update(
+            String.format(
+                "Validated %d of %d feed versions (%d failed)",
+                checkpoint.processedCount,
+                total,
+                checkpoint.failedCount
+            ),
+            checkpoint.processedCount * 100.0 / total
+        );
+    }
+
+    /**
+     * Run the jobs for the version on the current thread.
+     * @return whether all of the jobs succeeded
+     */
+    private boolean process(String versionId) {
+        if (stopping) return false;
+        FeedVersion version = Persistence.feedVersions.getById(versionId);
+        // The version may have been deleted since the job started.
+        if (version == null) return true;
+        List<MonitorableJob> jobs = checkpoint.load
+            ? Collections.singletonList(new ProcessSingleFeedJob(version, owner, false))
+            : Arrays.asList(
+                new ValidateFeedJob(version, owner, false),
+                new ValidateMobilityDataFeedJob(version, owner, false)
+            );
+        boolean succeeded = true;
+        for (MonitorableJob job : jobs) {
+            jobsInProgress.add(job);
+            // Stopping may have begun before the job was added, in which case stopJobsInProgress did not see it.
+            if (stopping) job.requestCancellation();
+            try {
+                job.run();
+            } finally {
+                jobsInProgress.remove(job);
+            }
+            if (job.status.error) {
+                LOG.warn("{} failed for feed version {}: {}", job.getClass().getSimpleName(), versionId, job.status.message);
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+
+    /** The ID of the checkpoint that stores the job's progress. */
+    String getCheckpointId() {
+        return checkpoint.id;
+    }
+
+    /**
+     * Delete the checkpoint once the job has finished or been cancelled (including while queued, see
+     * {@link JobUtils#cancelJob}), so that it is not resumed. (If the job fails with an unexpected exception, the
+     * checkpoint is kept and the job resumes on the next restart.)
+     */
+    @Override
+    public void jobFinished() {
+        Persistence.bulkValidationCheckpoints.removeById(checkpoint.id);
+    }
+}
@@ -3,19 +3,26 @@ package com.conveyal.datatools.manager.jobs;
 import com.conveyal.datatools.common.status.FeedVersionJob;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.utils.JobUtils;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * This job handles the MobilityData validation of a given feed version. If the version is not new, it will simply
  * replace the existing version with the version object that has updated validation info.
+ *
+ * As part of a {@link ProcessSingleFeedJob}, the validation is started early (see {@link #startInParallel()}) so that it
+ * runs alongside the load and gtfs-lib validation, and this job (run as a sub-job after those) waits for it to finish.
  */
 public class ValidateMobilityDataFeedJob extends FeedVersionJob {
     public static final Logger LOG = LoggerFactory.getLogger(ValidateMobilityDataFeedJob.class);
 
     private final FeedVersion feedVersion;
     private final boolean isNewVersion;
+    private boolean startedInParallel;
 
     public ValidateMobilityDataFeedJob(FeedVersion version, Auth0UserProfile owner, boolean isNewVersion) {
         super(owner, "Validating Feed using MobilityData", JobType.VALIDATE_FEED);
@@ -24,10 +31,35 @@ public class ValidateMobilityDataFeedJob extends FeedVersionJob {
         status.update("Waiting to begin MobilityData validation...", 0);
     }
 
+    /**
+     * Start the validation now on the MobilityData validation executor rather than when this job is run.
+     */
+    public void startInParallel() throws IOException {
+        LOG.info("Starting MobilityData validation for {}", feedVersion.id);
+        feedVersion.startMobilityValidation(status, JobUtils.mobilityValidationExecutor);
+        startedInParallel = true;
+    }
+
+    /**
+     * Stop a validation started with {@link #startInParallel()} because this job will not run to wait for it (e.g., the
+     * load failed or the parent job was cancelled). A validation still queued on the executor exits as soon as it is
+     * picked up and one that is already running discards its report once the validator returns.
+     */
+    public void cancelInParallel() {
+        if (!startedInParallel) return;
+        LOG.info("Cancelling MobilityData validation for {}", feedVersion.id);
+        requestCancellation();
+    }
+
     @Override
     public void jobLogic () {
-        LOG.info("Running ValidateMobilityDataFeedJob for {}", feedVersion.id);
-        feedVersion.validateMobility(status);
+        if (startedInParallel) {
+            LOG.info("Waiting for MobilityData validation of {}", feedVersion.id);
+            feedVersion.awaitMobilityValidation();
+        } else {
+            LOG.info("Running ValidateMobilityDataFeedJob for {}", feedVersion.id);
+            feedVersion.validateMobility(status);
+        }
     }
 
     @Override
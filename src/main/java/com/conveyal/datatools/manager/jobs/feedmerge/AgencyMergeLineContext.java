@@ -6,15 +6,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.UUID;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
 
 public class AgencyMergeLineContext extends MergeLineContext {
     private static final Logger LOG = LoggerFactory.getLogger(AgencyMergeLineContext.class);
 
-    public AgencyMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public AgencyMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -7,8 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.hasDuplicateError;
 
@@ -18,7 +18,7 @@ import static com.conveyal.datatools.manager.utils.MergeFeedUtils.hasDuplicateEr
 public class CalendarAttributesMergeLineContext extends MergeLineContext {
     private static final Logger LOG = LoggerFactory.getLogger(CalendarAttributesMergeLineContext.class);
 
-    public CalendarAttributesMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public CalendarAttributesMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -49,8 +49,7 @@ public class CalendarAttributesMergeLineContext extends MergeLineContext {
         }
 
         // Skip record (based on remapped id if necessary) if it was skipped in the calendar table.
-        String keyInCalendarTable = getTableScopedValue(Table.CALENDAR, keyValue);
-        if (mergeFeedsResult.skippedIds.contains(keyInCalendarTable)) {
+        if (mergeFeedsResult.skippedIds.contains(getTableScopePrefix(Table.CALENDAR), keyValue)) {
             LOG.warn(
                 "Skipping calendar entry {} because it was skipped in the merged calendar table.",
                 keyValue);
@@ -9,13 +9,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
 import static com.conveyal.gtfs.loader.DateField.GTFS_DATE_FORMATTER;
@@ -29,7 +29,7 @@ public class CalendarDatesMergeLineContext extends MergeLineContext {
     /** Holds the date used to check calendar validity */
     private LocalDate futureFeedFirstDateForCalendarValidity;
 
-    public CalendarDatesMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public CalendarDatesMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -59,21 +59,19 @@ public class CalendarDatesMergeLineContext extends MergeLineContext {
             // not before the first date of the future feed,
             // or for corresponding calendar entries that have been dropped.
             LocalDate date = getCsvDate("date");
-            String calendarKey = getTableScopedValue(Table.CALENDAR, keyValue);
             if (
                 isHandlingActiveFeed() &&
                     (
-                        job.mergeFeedsResult.skippedIds.contains(calendarKey) ||
+                        job.mergeFeedsResult.skippedIds.contains(getTableScopePrefix(Table.CALENDAR), keyValue) ||
                         !isBeforeFutureFeedStartDate(date)
                     )
             ) {
-                String key = getTableScopedValue(keyValue);
                 LOG.warn(
                     "Skipping calendar_dates entry {} because it operates in the time span of future feed (i.e., after or on {}).",
                     keyValue,
                     futureFeedFirstDateForCalendarValidity
                 );
-                mergeFeedsResult.skippedIds.add(key);
+                mergeFeedsResult.skippedIds.add(getTableScopePrefix(table), keyValue);
                 shouldSkipRecord = true;
             }
 
@@ -7,10 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.hasDuplicateError;
 import static com.conveyal.gtfs.loader.DateField.GTFS_DATE_FORMATTER;
@@ -21,7 +21,7 @@ import static com.conveyal.gtfs.loader.DateField.GTFS_DATE_FORMATTER;
 public class CalendarMergeLineContext extends MergeLineContext {
     private static final Logger LOG = LoggerFactory.getLogger(CalendarMergeLineContext.class);
 
-    public CalendarMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public CalendarMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -37,8 +37,6 @@ public class CalendarMergeLineContext extends MergeLineContext {
 
     private boolean checkCalendarIds(Set<NewGTFSError> idErrors, FieldContext fieldContext) throws IOException {
         boolean shouldSkipRecord = false;
-        String key = getTableScopedValue(keyValue);
-
         if (isHandlingActiveFeed()) {
             LocalDate startDate = getCsvDate("start_date");
             if (!startDate.isBefore(feedMergeContext.future.getFeedFirstDate())) {
@@ -51,7 +49,7 @@ public class CalendarMergeLineContext extends MergeLineContext {
                 LOG.warn(
                     "Skipping active calendar entry {} because it operates fully within the time span of future feed.",
                     keyValue);
-                mergeFeedsResult.skippedIds.add(key);
+                mergeFeedsResult.skippedIds.add(getTableScopePrefix(table), keyValue);
                 shouldSkipRecord = true;
             } else {
                 // In the MTC revised feed merge logic:
@@ -66,7 +66,14 @@ public class FeedContext {
      */
     public Set<String> getServiceIds(Set<String> tripIds) {
         return tripIds.stream()
-            .map(tripId -> feed.trips.get(tripId).service_id)
+            .map(feedToMerge::getServiceId)
             .collect(Collectors.toSet());
     }
+
+    /**
+     * Obtains the service id of the provided trip id (from the index built by {@link FeedToMerge}).
+     */
+    public String getServiceId(String tripId) {
+        return feedToMerge.getServiceId(tripId);
+    }
 }
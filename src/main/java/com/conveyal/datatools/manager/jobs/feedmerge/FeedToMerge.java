@@ -8,12 +8,14 @@ import com.google.common.collect.Sets;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
 
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.getIdsForTable;
+import static com.conveyal.datatools.manager.utils.MergeFeedUtils.getServiceIdsForTrips;
 
 /**
  * Helper class that collects the feed version and its zip file. Note: this class helps with sorting versions to
@@ -25,32 +27,38 @@ public class FeedToMerge implements Closeable {
     public SetMultimap<Table, String> idsForTable = HashMultimap.create();
     public Set<String> serviceIds = new HashSet<>();
     public Set<String> serviceIdsInUse;
-    private static final Set<Table> tablesToCheck = Sets.newHashSet(Table.TRIPS, Table.CALENDAR, Table.CALENDAR_DATES);
+    /** Index of trip_id to service_id for the trips table, populated by {@link #collectTripAndServiceIds()}. */
+    private Map<String, String> serviceIdsForTrips = new HashMap<>();
+    private static final Set<Table> tablesToCheck = Sets.newHashSet(Table.CALENDAR, Table.CALENDAR_DATES);
 
     public FeedToMerge(FeedVersion version) throws IOException {
         this.version = version;
         this.zipFile = new ZipFile(version.retrieveGtfsFile());
     }
 
-    /** Collects all trip/service IDs (tables noted in {@link #tablesToCheck}) for comparing feeds during merge. */
+    /**
+     * Collects all trip IDs (with their service IDs) and the service IDs in the tables noted in {@link #tablesToCheck}
+     * for comparing feeds during merge.
+     */
     public void collectTripAndServiceIds() throws IOException {
+        // Index the service ID of every trip in one pass over the trips table, which also provides the trip IDs.
+        serviceIdsForTrips = getServiceIdsForTrips(zipFile);
+        idsForTable.get(Table.TRIPS).addAll(serviceIdsForTrips.keySet());
         for (Table table : tablesToCheck) {
             idsForTable.get(table).addAll(getIdsForTable(zipFile, table));
         }
         serviceIds.addAll(idsForTable.get(Table.CALENDAR));
         serviceIds.addAll(idsForTable.get(Table.CALENDAR_DATES));
 
-        serviceIdsInUse = getServiceIdsInUse(idsForTable.get(Table.TRIPS));
+        // All trips are in use, so the service IDs in use are those of every trip.
+        serviceIdsInUse = new HashSet<>(serviceIdsForTrips.values());
     }
 
     /**
-     * Obtains the service ids corresponding to the provided trip ids.
-     * FIXME: Duplicate of MergeFeedsJob.
+     * @return the service ID of the given trip (or null if the trip is not in this feed)
      */
-    private Set<String> getServiceIdsInUse(Set<String> tripIds) {
-        return tripIds.stream()
-            .map(tripId -> version.retrieveFeed().trips.get(tripId).service_id)
-            .collect(Collectors.toSet());
+    public String getServiceId(String tripId) {
+        return serviceIdsForTrips.get(tripId);
     }
 
     public void close() throws IOException {
@@ -0,0 +1,128 @@
+package com.conveyal.datatools.manager.jobs.feedmerge;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interns the IDs tracked during a feed merge, assigning each distinct string a dense int index. This allows the sets
+ * and maps of IDs in {@link MergeFeedsResult} to be stored as primitives (see {@link ScopedIdSet} and
+ * {@link ScopedIdMap}) and each ID string to be held once, however many tables and feeds it appears in.
+ *
+ * Scoped IDs of the form table:scope:id are stored as a pair of indexes packed into a long: one for the table:scope:
+ * prefix (of which there are only a few) and one for the ID itself.
+ */
+public class IdDictionary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /** Returned by {@link #findKey} if the scoped ID has never been interned. */
+    public static final long NO_KEY = -1L;
+    private static final int NO_INDEX = -1;
+    private static final int NULL_INDEX = 0;
+
+    private final TObjectIntMap<String> indexes = new TObjectIntHashMap<>(
+        Constants.DEFAULT_CAPACITY,
+        Constants.DEFAULT_LOAD_FACTOR,
+        NO_INDEX
+    );
+    private final List<String> values = new ArrayList<>();
+
+    public IdDictionary() {
+        // Reserve the first index for null (e.g., a missing route ID).
+        values.add(null);
+    }
+
+    /**
+     * @return the index of the value, adding the value to the dictionary if it is not already present
+     */
+    public synchronized int intern(String value) {
+        if (value == null) return NULL_INDEX;
+        int index = indexes.get(value);
+        if (index == NO_INDEX) {
+            index = values.size();
+            values.add(value);
+            indexes.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of the value or -1 if the value is not in the dictionary
+     */
+    public synchronized int indexOf(String value) {
+        return value == null ? NULL_INDEX : indexes.get(value);
+    }
+
+    public synchronized String get(int index) {
+        return values.get(index);
+    }
+
+    /** Number of distinct values interned. */
+    public synchronized int size() {
+        return values.size() - 1;
+    }
+
+    /**
+     * @return the key for the scoped ID (prefix + id), interning the prefix and ID if needed
+     */
+    public long key(String prefix, String id) {
+        return pack(intern(prefix), intern(id));
+    }
+
+    /**
+     * @return the key for the scoped ID (prefix + id) or {@link #NO_KEY} if either part has never been interned (in
+     * which case no set or map can contain it)
+     */
+    public long findKey(String prefix, String id) {
+        int prefixIndex = indexOf(prefix);
+        int idIndex = indexOf(id);
+        return prefixIndex == NO_INDEX || idIndex == NO_INDEX ? NO_KEY : pack(prefixIndex, idIndex);
+    }
+
+    /**
+     * @return the scoped ID for a key obtained from {@link #key}
+     */
+    public String scopedId(long key) {
+        String prefix = get((int) (key >>> 32));
+        String id = get((int) key);
+        return prefix.isEmpty() ? id : prefix + id;
+    }
+
+    /**
+     * Length of the table:scope: prefix of a scoped ID (i.e., up to and including the second colon) or zero if the ID
+     * is not scoped. Scopes never contain colons (see {@link com.conveyal.datatools.manager.utils.StringUtils#getCleanName}),
+     * but IDs may, which is why the ID is everything after the second colon.
+     */
+    public static int prefixLength(String scopedId) {
+        if (scopedId == null) return 0;
+        int firstColon = scopedId.indexOf(':');
+        if (firstColon == -1) return 0;
+        int secondColon = scopedId.indexOf(':', firstColon + 1);
+        return secondColon == -1 ? 0 : secondColon + 1;
+    }
+
+    /** Key for a scoped ID given as a single string, interning its parts if needed. */
+    long key(String scopedId) {
+        int prefixLength = prefixLength(scopedId);
+        return prefixLength == 0
+            ? key("", scopedId)
+            : key(scopedId.substring(0, prefixLength), scopedId.substring(prefixLength));
+    }
+
+    /** Key for a scoped ID given as a single string, or {@link #NO_KEY} if it has never been interned. */
+    long findKey(Object scopedId) {
+        if (scopedId != null && !(scopedId instanceof String)) return NO_KEY;
+        String value = (String) scopedId;
+        int prefixLength = prefixLength(value);
+        return prefixLength == 0
+            ? findKey("", value)
+            : findKey(value.substring(0, prefixLength), value.substring(prefixLength));
+    }
+
+    private static long pack(int prefixIndex, int idIndex) {
+        return ((long) prefixIndex << 32) | (idIndex & 0xFFFFFFFFL);
+    }
+}
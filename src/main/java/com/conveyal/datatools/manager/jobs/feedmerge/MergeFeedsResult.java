@@ -3,6 +3,7 @@ package com.conveyal.datatools.manager.jobs.feedmerge;
 import com.conveyal.datatools.manager.jobs.MergeFeedsJob;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,7 +11,8 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * Contains the result of {@link MergeFeedsJob}.
+ * Contains the result of {@link MergeFeedsJob}. Independent tables are merged concurrently, so the collections below
+ * are synchronized and the counters must be incremented with the methods provided.
  */
 public class MergeFeedsResult implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -18,33 +20,62 @@ public class MergeFeedsResult implements Serializable {
     /** Type of merge operation performed */
     public MergeFeedsType type;
     public MergeStrategy mergeStrategy = MergeStrategy.DEFAULT;
+    /**
+     * Interns the IDs tracked below, which can number in the millions for large regional merges, so that they are
+     * held once and tracked as primitive keys.
+     */
+    private final IdDictionary ids = new IdDictionary();
     /** Contains the set of IDs for records that were excluded in the merged feed */
-    public Set<String> skippedIds = new HashSet<>();
+    public ScopedIdSet skippedIds = new ScopedIdSet(ids);
     /**
      * Track the set of service IDs to end up in the merged feed in order to determine which calendar_dates and trips
      * records should be retained in the merged result.
      */
-    public Set<String> serviceIds  = new HashSet<>();
+    public ScopedIdSet serviceIds = new ScopedIdSet(ids);
     /**
      * Track the set of route IDs to end up in the merged feed in order to determine which route_attributes
      * records should be retained in the merged result.
      */
-    public Set<String> routeIds  = new HashSet<>();
+    public ScopedIdSet routeIds = new ScopedIdSet(ids);
     /** Contains the set of IDs that had their values remapped during the merge */
-    public Map<String, String> remappedIds = new HashMap<>();
+    public ScopedIdMap remappedIds = new ScopedIdMap(ids);
     /** Mapping of table name to line count in merged file */
-    public Map<String, Integer> linesPerTable = new HashMap<>();
+    public Map<String, Integer> linesPerTable = Collections.synchronizedMap(new HashMap<>());
+    /** Mapping of table name to time taken to merge the table (in milliseconds) */
+    public Map<String, Long> millisPerTable = Collections.synchronizedMap(new HashMap<>());
     public int remappedReferences;
     public int recordsSkipCount;
     public Date startTime;
     public boolean failed;
     public int errorCount;
     /** Set of reasons explaining why merge operation failed */
-    public Set<String> failureReasons = new HashSet<>();
+    public Set<String> failureReasons = Collections.synchronizedSet(new HashSet<>());
     public Set<String> tripIdsToCheck = new HashSet<>();
 
     public MergeFeedsResult (MergeFeedsType type) {
         this.type = type;
         this.startTime = new Date();
     }
+
+    /** Number of distinct IDs (and table scopes) tracked by the sets and maps above. */
+    public int trackedIdCount() {
+        return ids.size();
+    }
+
+    public synchronized void incrementRemappedReferences() {
+        remappedReferences++;
+    }
+
+    public synchronized void incrementRecordsSkipCount() {
+        recordsSkipCount++;
+    }
+
+    /**
+     * Record a failure reason, marking the merge as failed.
+     */
+    public synchronized void fail(String failureReason) {
+        failed = true;
+        errorCount++;
+        failureReasons.add(failureReason);
+    }
 }
@@ -14,6 +14,7 @@ import org.supercsv.io.CsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -24,8 +25,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.REGIONAL;
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
@@ -43,12 +42,11 @@ public class MergeLineContext {
     protected static final String ROUTE_SHORT_NAME = "route_short_name";
     private static final Logger LOG = LoggerFactory.getLogger(MergeLineContext.class);
     protected final MergeFeedsJob job;
-    private final ZipOutputStream out;
     private final Set<Field> allFields;
     private boolean handlingActiveFeed;
     private boolean handlingFutureFeed;
     private String idScope;
-    // CSV writer used to write to zip file.
+    // CSV writer used to write the merged table (see MergeFeedsJob for how tables are assembled into the zip file).
     private final CsvListWriter writer;
     private CsvReader csvReader;
     private boolean skipRecord;
@@ -70,7 +68,18 @@ public class MergeLineContext {
     // Set up objects for tracking the rows encountered
     private final Map<String, String[]> rowValuesForStopOrRouteId = new HashMap<>();
     private final Set<String> rowStrings = new HashSet<>();
-    private List<Field> sharedSpecFields;
+    // Column plan for the merged table: the spec fields shared by the feeds being merged (recomputed if a field is
+    // added, see addField), a reusable field context for each, and the index of each field's column in the current
+    // feed's CSV file. This avoids re-filtering the spec fields and searching the found fields for every row.
+    private Field[] sharedSpecFields;
+    private FieldContext[] fieldContexts;
+    private int[] csvColumnIndexes;
+    private int sharedKeyFieldIndex;
+    private boolean sharedSpecFieldsChanged = true;
+    // Row values for stops and routes are retained in rowValuesForStopOrRouteId, so cannot be reused between rows.
+    private final boolean retainsRowValues;
+    // Table-scoped prefixes (see getTableScopePrefix) for the current feed, keyed by table name.
+    private final Map<String, String> tableScopePrefixes = new HashMap<>();
     private int feedIndex;
 
     public FeedVersion version;
@@ -79,7 +88,7 @@ public class MergeLineContext {
     public int mergedLineNumber = 0;
     private boolean headersWritten = false;
 
-    public static MergeLineContext create(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public static MergeLineContext create(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         switch (table.name) {
             case "agency":
                 return new AgencyMergeLineContext(job, table, out);
@@ -106,7 +115,7 @@ public class MergeLineContext {
         }
     }
 
-    protected MergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    protected MergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         this.job = job;
         this.table = table;
         this.feedMergeContext = job.getFeedMergeContext();
@@ -115,7 +124,8 @@ public class MergeLineContext {
         allFields = getAllFields(feedMergeContext.feedsToMerge, table);
         this.mergeFeedsResult = job.mergeFeedsResult;
         this.writer = new CsvListWriter(new OutputStreamWriter(out), CsvPreference.STANDARD_PREFERENCE);
-        this.out = out;
+        retainsRowValues = table.name.equals("stops") || table.name.equals("routes");
+        planSharedSpecFields();
     }
 
     public void startNewFeed(int feedIndex) throws IOException {
@@ -131,6 +141,7 @@ public class MergeLineContext {
         keyFieldMissing = false;
 
         idScope = makeIdScope(version);
+        tableScopePrefixes.clear();
         csvReader = table.getCsvReader(feed.zipFile, null);
         // If csv reader is null, the table was not found in the zip file. There is no need
         // to handle merging this table for this zip file.
@@ -144,6 +155,7 @@ public class MergeLineContext {
         }
         fieldsFoundInZip = table.getFieldsFromFieldHeaders(csvReader.getHeaders(), null);
         fieldsFoundList = Arrays.asList(fieldsFoundInZip);
+        planCsvColumns();
         // Determine the index of the key field for this version's table.
         keyFieldIndex = getFieldIndex(keyField);
         if (keyFieldIndex == -1) {
@@ -229,18 +241,47 @@ public class MergeLineContext {
 
     public void startNewRow() throws IOException {
         keyValue = csvReader.get(keyFieldIndex);
-        // Get the spec fields to export
-        List<Field> specFields = table.specFields();
-        // Filter the spec fields on the set of fields found in all feeds to be merged.
-        sharedSpecFields = specFields.stream()
+        // Update the spec fields to export if a field was added while handling the previous row.
+        if (sharedSpecFieldsChanged) {
+            planSharedSpecFields();
+            planCsvColumns();
+        }
+    }
+
+    /**
+     * Filter the spec fields on the set of fields found in all feeds to be merged and set up the field contexts and
+     * row buffers used for each row.
+     */
+    private void planSharedSpecFields() {
+        sharedSpecFields = table.specFields().stream()
             .filter(f -> containsField(allFields, f.name))
-            .collect(Collectors.toList());
+            .toArray(Field[]::new);
+        fieldContexts = new FieldContext[sharedSpecFields.length];
+        for (int i = 0; i < sharedSpecFields.length; i++) {
+            fieldContexts[i] = new FieldContext(sharedSpecFields[i], null);
+        }
+        rowValues = new String[sharedSpecFields.length];
+        originalRowValues = new String[sharedSpecFields.length];
+        sharedSpecFieldsChanged = false;
+    }
+
+    /**
+     * Find the column in the current feed's CSV file for each shared spec field (-1 if the column is missing, which
+     * the CSV reader treats as empty).
+     */
+    private void planCsvColumns() {
+        csvColumnIndexes = new int[sharedSpecFields.length];
+        for (int i = 0; i < sharedSpecFields.length; i++) {
+            csvColumnIndexes[i] = fieldsFoundList.indexOf(sharedSpecFields[i]);
+        }
+        sharedKeyFieldIndex = Field.getFieldIndex(sharedSpecFields, keyField);
     }
 
     public boolean checkForeignReferences(FieldContext fieldContext) throws IOException {
         Field field = fieldContext.getField();
         if (field.isForeignReference()) {
-            String key = getTableScopedValue(field.referenceTable, fieldContext.getValue());
+            String referencePrefix = getTableScopePrefix(field.referenceTable);
+            String referenceId = fieldContext.getValue();
             // Check if we're performing a service period merge, this ref field is a service_id, and it
             // is not found in the list of service_ids (e.g., it was removed).
             boolean isValidServiceId = mergeFeedsResult.serviceIds.contains(fieldContext.getValueToWrite());
@@ -249,37 +290,43 @@ public class MergeLineContext {
             // been skipped or is a ref to a non-existent service_id during a service period merge, skip
             // this record and add its primary key to the list of skipped IDs (so that other references
             // can be properly omitted).
-            if (serviceIdHasKeyOrShouldBeSkipped(fieldContext, key, isValidServiceId)) {
+            if (serviceIdHasKeyOrShouldBeSkipped(fieldContext, referencePrefix, referenceId, isValidServiceId)) {
                 // If a calendar#service_id has been skipped (it's listed in skippedIds), but there were
                 // valid service_ids found in calendar_dates, do not skip that record for both the
                 // calendar_date and any related trips.
                 if (fieldContext.nameEquals(SERVICE_ID) && isValidServiceId) {
                     LOG.warn("Not skipping valid service_id {} for {} {}", fieldContext.getValueToWrite(), table.name, keyValue);
                 } else {
-                    String skippedKey = getTableScopedValue(keyValue);
+                    String skippedId = keyValue;
                     if (orderField != null) {
-                        skippedKey = String.join(":", skippedKey, getCsvValue(orderField));
+                        skippedId = String.join(":", skippedId, getCsvValue(orderField));
                     }
-                    mergeFeedsResult.skippedIds.add(skippedKey);
+                    mergeFeedsResult.skippedIds.add(getTableScopePrefix(table), skippedId);
                     return false;
                 }
             }
             // If the field is a foreign reference, check to see whether the reference has been
             // remapped due to a conflicting ID from another feed (e.g., calendar#service_id).
-            if (mergeFeedsResult.remappedIds.containsKey(key)) {
-                mergeFeedsResult.remappedReferences++;
+            String remappedId = mergeFeedsResult.remappedIds.get(referencePrefix, referenceId);
+            if (remappedId != null) {
+                mergeFeedsResult.incrementRemappedReferences();
                 // If the value has been remapped update the value to write.
-                fieldContext.setValueToWrite(mergeFeedsResult.remappedIds.get(key));
+                fieldContext.setValueToWrite(remappedId);
             }
         }
         return true;
     }
 
-    private boolean serviceIdHasKeyOrShouldBeSkipped(FieldContext fieldContext, String key, boolean isValidServiceId) {
+    private boolean serviceIdHasKeyOrShouldBeSkipped(
+        FieldContext fieldContext,
+        String referencePrefix,
+        String referenceId,
+        boolean isValidServiceId
+    ) {
         boolean serviceIdShouldBeSkipped = job.mergeType.equals(SERVICE_PERIOD) &&
             fieldContext.nameEquals(SERVICE_ID) &&
             !isValidServiceId;
-        return mergeFeedsResult.skippedIds.contains(key) || serviceIdShouldBeSkipped;
+        return mergeFeedsResult.skippedIds.contains(referencePrefix, referenceId) || serviceIdShouldBeSkipped;
     }
 
 
@@ -341,9 +388,6 @@ public class MergeLineContext {
                 // ID index is always zero because we're
                 // iterating over the spec fields).
                 String currentPrimaryKey = rowValues[0];
-                // Get unique key to check for remapped ID when
-                // writing values to file.
-                String key = getTableScopedValue(currentPrimaryKey);
                 // Extract the route/stop ID value used for the
                 // route/stop with already encountered matching
                 // short name/stop code.
@@ -355,7 +399,7 @@ public class MergeLineContext {
                     // Remap this row's route_id/stop_id to ensure
                     // that referencing entities (trips, stop_times)
                     // have their references updated.
-                    mergeFeedsResult.remappedIds.put(key, keyForMatchingAltId);
+                    mergeFeedsResult.remappedIds.put(getTableScopePrefix(table), currentPrimaryKey, keyForMatchingAltId);
                 }
                 shouldSkipRecord = true;
             }
@@ -387,8 +431,7 @@ public class MergeLineContext {
             if (handlingFutureFeed) {
                 mergeFeedsResult.routeIds.add(primaryKeyValue);
             } else {
-                String scopedKey = getTableScopedValue(primaryKeyValue);
-                String mergedRouteId = mergeFeedsResult.remappedIds.get(scopedKey);
+                String mergedRouteId = mergeFeedsResult.remappedIds.get(getTableScopePrefix(table), primaryKeyValue);
                 mergeFeedsResult.routeIds.add(mergedRouteId);
             }
         }
@@ -455,7 +498,6 @@ public class MergeLineContext {
     }
 
     public boolean storeRowAndStopValues() {
-        String newLine = String.join(",", rowValues);
         switch (table.name) {
             // Store row values for route or stop ID (or alternative ID field) in order
             // to check for ID conflicts. NOTE: This is only intended to be used for
@@ -470,14 +512,13 @@ public class MergeLineContext {
                 // defined above, we will be using the found fields index, which will
                 // cause major issues when trying to put and get values into the
                 // below map.
-                int fieldIndex = Field.getFieldIndex(sharedSpecFields.toArray(new Field[0]), keyField);
-                String key = String.join(":", keyField, rowValues[fieldIndex]);
+                String key = keyField + ":" + rowValues[sharedKeyFieldIndex];
                 rowValuesForStopOrRouteId.put(key, rowValues);
                 break;
             case "transfers":
             case "fare_rules":
             case "directions": // GTFS+ table
-                if (!rowStrings.add(newLine)) {
+                if (!rowStrings.add(String.join(",", rowValues))) {
                     // The line already exists in the output file, do not append it again. This prevents duplicate
                     // entries for certain files that do not contain primary keys (e.g., fare_rules and transfers) and
                     // do not otherwise have convenient ways to track uniqueness (like an order field).
@@ -485,7 +526,7 @@ public class MergeLineContext {
                     //  Perhaps it makes sense to include all unique fare rules rows, but transfers that share the
                     //  same from/to stop IDs but different transfer times or other values should not both be
                     //  included in the merged feed (yet this strategy would fail to filter those out).
-                    mergeFeedsResult.recordsSkipCount++;
+                    mergeFeedsResult.incrementRecordsSkipCount();
                     return true;
                 }
                 break;
@@ -539,8 +580,12 @@ public class MergeLineContext {
         // Re-initialize skipRecord to false for next row.
         skipRecord = false;
         // Reset the row values (this must happen after the first line is checked).
-        rowValues = new String[sharedSpecFields.size()];
-        originalRowValues = new String[sharedSpecFields.size()];
+        if (retainsRowValues) {
+            rowValues = new String[sharedSpecFields.length];
+        } else {
+            Arrays.fill(rowValues, null);
+        }
+        Arrays.fill(originalRowValues, null);
     }
 
     public void writeValuesToTable(String[] values, boolean incrementLineNumbers) throws IOException {
@@ -553,15 +598,11 @@ public class MergeLineContext {
 
     public void flushAndClose() throws IOException {
         writer.flush();
-        out.closeEntry();
     }
 
     private void writeHeaders() throws IOException {
-        // Create entry for zip file.
-        ZipEntry tableEntry = new ZipEntry(table.name + ".txt");
-        out.putNextEntry(tableEntry);
         // Write headers to table.
-        String[] headers = sharedSpecFields.stream()
+        String[] headers = Arrays.stream(sharedSpecFields)
             .map(f -> f.name)
             .toArray(String[]::new);
         writeValuesToTable(headers, false);
@@ -577,15 +618,12 @@ public class MergeLineContext {
         boolean result = true;
         // Piece together the row to write, which should look practically identical to the original
         // row except for the identifiers receiving a prefix to avoid ID conflicts.
-        for (int specFieldIndex = 0; specFieldIndex < sharedSpecFields.size(); specFieldIndex++) {
-            Field field = sharedSpecFields.get(specFieldIndex);
+        for (int specFieldIndex = 0; specFieldIndex < sharedSpecFields.length; specFieldIndex++) {
             // Default value to write is unchanged from value found in csv (i.e. val). Note: if looking to
             // modify the value that is written in the merged file, you must update valueToWrite (e.g.,
             // updating this feed's end_date or accounting for cases where IDs conflict).
-            FieldContext fieldContext = new FieldContext(
-                field,
-                csvReader.get(fieldsFoundList.indexOf(field))
-            );
+            FieldContext fieldContext = fieldContexts[specFieldIndex];
+            fieldContext.resetValue(csvReader.get(csvColumnIndexes[specFieldIndex]));
             originalRowValues[specFieldIndex] = fieldContext.getValueToWrite();
             if (!skipRecord) {
                 // Handle filling in agency_id if missing when merging regional feeds. If false is returned,
@@ -641,7 +679,7 @@ public class MergeLineContext {
         boolean shouldWriteCurrentRow = true;
         // Do not write rows that are designated to be skipped.
         if (skipRecord && job.mergeType.equals(SERVICE_PERIOD)) {
-            mergeFeedsResult.recordsSkipCount++;
+            mergeFeedsResult.incrementRecordsSkipCount();
             shouldWriteCurrentRow = false;
         }
         // Store row and stop values. If the return value is true, the record has been skipped and we
@@ -689,7 +727,7 @@ public class MergeLineContext {
     }
 
     protected int getFieldIndexFromSharedSpecs(String fieldName) {
-        return Field.getFieldIndex(sharedSpecFields.toArray(new Field[0]), fieldName);
+        return Field.getFieldIndex(sharedSpecFields, fieldName);
     }
 
     /**
@@ -699,19 +737,17 @@ public class MergeLineContext {
         return getCleanName(feedSource.name) + version.version;
     }
 
-    /** Get table-scoped value used for key when remapping references for a particular feed. */
-    protected String getTableScopedValue(Table table, String id) {
-        return String.join(
-            ":",
-            table.name,
-            idScope,
-            id
-        );
-    }
-
-    /** Shorthand for above using ambient table. */
-    protected String getTableScopedValue(String id) {
-        return getTableScopedValue(table, id);
+    /**
+     * Get the table:scope: prefix used (along with an ID) as the key when tracking skipped and remapped IDs for a
+     * particular feed. See {@link ScopedIdSet} and {@link ScopedIdMap}.
+     */
+    protected String getTableScopePrefix(Table table) {
+        String prefix = tableScopePrefixes.get(table.name);
+        if (prefix == null) {
+            prefix = String.join(":", table.name, idScope, "");
+            tableScopePrefixes.put(table.name, prefix);
+        }
+        return prefix;
     }
 
     /**
@@ -755,10 +791,7 @@ public class MergeLineContext {
         if (updateKeyValue) {
             keyValue = valueToWrite;
         }
-        mergeFeedsResult.remappedIds.put(
-            getTableScopedValue(value),
-            valueToWrite
-        );
+        mergeFeedsResult.remappedIds.put(getTableScopePrefix(table), value, valueToWrite);
     }
 
     /**
@@ -777,6 +810,10 @@ public class MergeLineContext {
         fieldsFoundInZip = fieldsList.toArray(fieldsFoundInZip);
         allFields.add(field);
         fieldsFoundList = Arrays.asList(fieldsFoundInZip);
+        // The current row keeps the shared spec fields it started with, but reads from the updated columns. The new
+        // field is included from the next row on.
+        planCsvColumns();
+        sharedSpecFieldsChanged = true;
     }
 
     /**
@@ -803,7 +840,7 @@ public class MergeLineContext {
                 keyValue
             );
 
-            mergeFeedsResult.skippedIds.add(getTableScopedValue(keyValue));
+            mergeFeedsResult.skippedIds.add(getTableScopePrefix(table), keyValue);
 
             isUnused = true;
         }
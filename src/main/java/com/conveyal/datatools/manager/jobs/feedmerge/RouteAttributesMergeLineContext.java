@@ -5,15 +5,15 @@ import com.conveyal.gtfs.error.NewGTFSError;
 import com.conveyal.gtfs.loader.Table;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 public class RouteAttributesMergeLineContext extends MergeLineContext {
     // Track route_ids found in future feed in order to check for conflicts with active feed (MTC only).
     private final Set<String> routeIdsInFutureFeed = new HashSet<>();
 
-    public RouteAttributesMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public RouteAttributesMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -32,8 +32,7 @@ public class RouteAttributesMergeLineContext extends MergeLineContext {
                 // In the active feed, if a route of a given short name
                 // has been assigned a new route_id, then the route_id of
                 // the active record in route_attributes.txt should be remapped.
-                String scopedRouteId = getTableScopedValue(Table.ROUTES, keyValue);
-                String remappedRouteId = mergeFeedsResult.remappedIds.get(scopedRouteId);
+                String remappedRouteId = mergeFeedsResult.remappedIds.get(getTableScopePrefix(Table.ROUTES), keyValue);
                 // Modify route_id and ensure that referencing trips
                 // have route_id updated.
                 if (remappedRouteId != null) {
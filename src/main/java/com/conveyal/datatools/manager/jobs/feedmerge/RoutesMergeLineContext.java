@@ -5,11 +5,11 @@ import com.conveyal.gtfs.error.NewGTFSError;
 import com.conveyal.gtfs.loader.Table;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 public class RoutesMergeLineContext extends MergeLineContext {
-    public RoutesMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public RoutesMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
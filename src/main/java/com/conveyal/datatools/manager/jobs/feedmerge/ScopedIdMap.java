@@ -0,0 +1,97 @@
+package com.conveyal.datatools.manager.jobs.feedmerge;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map of (optionally scoped) IDs to IDs, with keys and values stored as primitive indexes from an
+ * {@link IdDictionary}. Methods are synchronized because tables are merged concurrently. Iteration (e.g., when
+ * serializing the merge result) is over a snapshot.
+ */
+public class ScopedIdMap extends AbstractMap<String, String> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int NO_VALUE = -1;
+    private final IdDictionary dictionary;
+    private final TLongIntMap valueIndexes = new TLongIntHashMap(
+        Constants.DEFAULT_CAPACITY,
+        Constants.DEFAULT_LOAD_FACTOR,
+        IdDictionary.NO_KEY,
+        NO_VALUE
+    );
+
+    public ScopedIdMap(IdDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /** Map the ID with the given table:scope: prefix, without concatenating the two. */
+    public synchronized String put(String prefix, String id, String value) {
+        return valueOf(valueIndexes.put(dictionary.key(prefix, id), dictionary.intern(value)));
+    }
+
+    /** Get the value for the ID with the given table:scope: prefix, without concatenating the two. */
+    public synchronized String get(String prefix, String id) {
+        return valueOf(valueIndexes.get(dictionary.findKey(prefix, id)));
+    }
+
+    /** Remove the ID with the given table:scope: prefix, without concatenating the two. */
+    public synchronized String remove(String prefix, String id) {
+        long key = dictionary.findKey(prefix, id);
+        return key == IdDictionary.NO_KEY ? null : valueOf(valueIndexes.remove(key));
+    }
+
+    @Override
+    public synchronized String put(String scopedId, String value) {
+        return valueOf(valueIndexes.put(dictionary.key(scopedId), dictionary.intern(value)));
+    }
+
+    @Override
+    public synchronized String get(Object scopedId) {
+        return valueOf(valueIndexes.get(dictionary.findKey(scopedId)));
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object scopedId) {
+        long key = dictionary.findKey(scopedId);
+        return key != IdDictionary.NO_KEY && valueIndexes.containsKey(key);
+    }
+
+    @Override
+    public synchronized String remove(Object scopedId) {
+        long key = dictionary.findKey(scopedId);
+        return key == IdDictionary.NO_KEY ? null : valueOf(valueIndexes.remove(key));
+    }
+
+    @Override
+    public synchronized void clear() {
+        valueIndexes.clear();
+    }
+
+    @Override
+    public synchronized int size() {
+        return valueIndexes.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        Set<Map.Entry<String, String>> entries;
+        synchronized (this) {
+            entries = new LinkedHashSet<>(valueIndexes.size());
+            for (long key : valueIndexes.keys()) {
+                entries.add(new SimpleImmutableEntry<>(dictionary.scopedId(key), valueOf(valueIndexes.get(key))));
+            }
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    private String valueOf(int valueIndex) {
+        return valueIndex == NO_VALUE ? null : dictionary.get(valueIndex);
+    }
+}
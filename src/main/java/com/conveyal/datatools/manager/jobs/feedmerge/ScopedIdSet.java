@@ -0,0 +1,73 @@
+package com.conveyal.datatools.manager.jobs.feedmerge;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Set of (optionally scoped) IDs stored as primitive keys from an {@link IdDictionary}. Methods are synchronized
+ * because tables are merged concurrently. Iteration (e.g., when serializing the merge result) is over a snapshot.
+ */
+public class ScopedIdSet extends AbstractSet<String> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final IdDictionary dictionary;
+    private final TLongSet keys = new TLongHashSet();
+
+    public ScopedIdSet(IdDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /** Add the ID with the given table:scope: prefix, without concatenating the two. */
+    public synchronized boolean add(String prefix, String id) {
+        return keys.add(dictionary.key(prefix, id));
+    }
+
+    /** Check for the ID with the given table:scope: prefix, without concatenating the two. */
+    public synchronized boolean contains(String prefix, String id) {
+        long key = dictionary.findKey(prefix, id);
+        return key != IdDictionary.NO_KEY && keys.contains(key);
+    }
+
+    @Override
+    public synchronized boolean add(String scopedId) {
+        return keys.add(dictionary.key(scopedId));
+    }
+
+    @Override
+    public synchronized boolean contains(Object scopedId) {
+        long key = dictionary.findKey(scopedId);
+        return key != IdDictionary.NO_KEY && keys.contains(key);
+    }
+
+    @Override
+    public synchronized boolean remove(Object scopedId) {
+        long key = dictionary.findKey(scopedId);
+        return key != IdDictionary.NO_KEY && keys.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        keys.clear();
+    }
+
+    @Override
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        List<String> scopedIds;
+        synchronized (this) {
+            scopedIds = new ArrayList<>(keys.size());
+            for (long key : keys.toArray()) scopedIds.add(dictionary.scopedId(key));
+        }
+        return Collections.unmodifiableList(scopedIds).iterator();
+    }
+}
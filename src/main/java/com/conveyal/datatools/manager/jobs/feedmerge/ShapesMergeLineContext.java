@@ -5,9 +5,9 @@ import com.conveyal.gtfs.error.NewGTFSError;
 import com.conveyal.gtfs.loader.Table;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.hasDuplicateError;
 
@@ -15,7 +15,7 @@ public class ShapesMergeLineContext extends MergeLineContext {
     // Track shape_ids found in future feed in order to check for conflicts with active feed (MTC only).
     private final Set<String> shapeIdsInFutureFeed = new HashSet<>();
 
-    public ShapesMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public ShapesMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -9,8 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.stopCodeFailureMessage;
@@ -20,7 +20,7 @@ public class StopsMergeLineContext extends MergeLineContext {
 
     private boolean stopCodeMissingFromFutureFeed = false;
 
-    public StopsMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public StopsMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -5,14 +5,14 @@ import com.conveyal.gtfs.error.NewGTFSError;
 import com.conveyal.gtfs.loader.Table;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 import static com.conveyal.datatools.manager.jobs.feedmerge.MergeFeedsType.SERVICE_PERIOD;
 import static com.conveyal.datatools.manager.utils.MergeFeedUtils.hasDuplicateError;
 
 public class TripsMergeLineContext extends MergeLineContext {
-    public TripsMergeLineContext(MergeFeedsJob job, Table table, ZipOutputStream out) throws IOException {
+    public TripsMergeLineContext(MergeFeedsJob job, Table table, OutputStream out) throws IOException {
         super(job, table, out);
     }
 
@@ -40,9 +40,7 @@ public class TripsMergeLineContext extends MergeLineContext {
         // (the remapped id is already listed under the calendar/calendar_dates tables,
         // so there is no need to add that foreign key again).
         if (fieldContext.nameEquals(SERVICE_ID)) {
-            mergeFeedsResult.remappedIds.remove(
-                getTableScopedValue(fieldContext.getValue())
-            );
+            mergeFeedsResult.remappedIds.remove(getTableScopePrefix(table), fieldContext.getValue());
         }
 
         return !shouldSkipRecord;
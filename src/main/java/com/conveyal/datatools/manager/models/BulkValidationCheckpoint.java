@@ -0,0 +1,28 @@
+package com.conveyal.datatools.manager.models;
+
+/**
+ * The progress of a {@link com.conveyal.datatools.manager.jobs.ValidateAllFeedsJob}, stored so that the job can resume
+ * where it stopped if the server restarts. Feed versions are processed in ID order, so the checkpoint only needs to
+ * record the ID of the last version processed. The checkpoint is deleted once the job finishes.
+ */
+public class BulkValidationCheckpoint extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** Whether feed versions are reloaded before being validated (rather than only validated). */
+    public boolean load;
+
+    /** Whether feed versions that failed with a fatal exception when last validated are included. */
+    public boolean force;
+
+    /** If not null, only versions of this feed source are validated. */
+    public String feedSourceId;
+
+    /** ID of the last feed version processed (all versions with lower IDs have also been processed). */
+    public String lastVersionId;
+
+    /** Number of feed versions processed so far. */
+    public int processedCount;
+
+    /** Number of feed versions processed so far whose validation failed. */
+    public int failedCount;
+}
@@ -5,6 +5,7 @@ import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.EC2Utils;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.jobs.DeployJob;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.StringUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
@@ -26,15 +27,17 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -45,6 +48,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -59,12 +68,16 @@ import static com.mongodb.client.model.Filters.eq;
  */
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({"projectId", "-lastUpdated"})
 public class Deployment extends Model implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Logger LOG = LoggerFactory.getLogger(Deployment.class);
 
     public String name;
 
+    /** Maximum number of files (GTFS feeds and the OSM extract) retrieved at once when creating a bundle. */
+    private static final int BUNDLE_DOWNLOAD_THREADS =
+        Integer.parseInt(getConfigPropertyAsText("BUNDLE_DOWNLOAD_THREADS", "4"));
     //OTP v1.4 is a historical version that was previously used as a fallback. Only use if application default not configured.
     public static final String DEFAULT_OTP_VERSION = getConfigPropertyAsText("application.default_otp_version", "otp-v1.4.0");
 
@@ -315,93 +328,145 @@ public class Deployment extends Model implements Serializable {
 
     /**
      * Dump this deployment to the given output file.
+     *
+     * The GTFS files (which may need to be downloaded from S3) and the OSM extract are retrieved in parallel and then
+     * written to the bundle in order. They are already compressed, so they are stored in the bundle as is rather than
+     * compressed again.
+     *
      * @param output the output file
      * @param includeOsm should an osm.pbf file be included in the dump?
      * @param includeOtpConfig should OTP build-config.json and router-config.json be included?
      */
     public void dump (File output, boolean includeManifest, boolean includeOsm, boolean includeOtpConfig) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(BUNDLE_DOWNLOAD_THREADS);
+        CompletableFuture<BundleFile> osmFile = null;
         // Create the zipfile.
-        ZipOutputStream out;
-        try {
-            out = new ZipOutputStream(new FileOutputStream(output));
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        }
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(output))) {
+            List<CompletableFuture<BundleFile>> gtfsFiles = new ArrayList<>();
+            for (FeedVersion v : this.retrieveFullFeedVersions()) {
+                gtfsFiles.add(CompletableFuture.supplyAsync(() -> {
+                    File gtfsFile = v.retrieveGtfsFile();
+                    if (gtfsFile == null || !gtfsFile.exists()) {
+                        LOG.error("Could not retrieve file for {}", v.name);
+                        throw new RuntimeException(String.format("GTFS file for feed version %s not found", v.id));
+                    }
+                    return new BundleFile(gtfsFile.getName(), gtfsFile);
+                }, executor));
+            }
+            if (includeOsm) {
+                // Extract OSM (to a temp file) to insert it into the deployment bundle
+                osmFile = CompletableFuture.supplyAsync(
+                    () -> new BundleFile("osm.pbf", downloadOsmExtractToTempFile()),
+                    executor
+                );
+            }
 
-        if (includeManifest) {
-            // save the manifest at the beginning of the file, for read/seek efficiency
-            ZipEntry manifestEntry = new ZipEntry("manifest.json");
-            out.putNextEntry(manifestEntry);
-            // create the json manifest
-            JsonManager<Deployment> jsonManifest = new JsonManager<>(Deployment.class, JsonViews.UserInterface.class);
-            // this mixin gives us full feed validation results, not summarized
-            jsonManifest.addMixin(Deployment.class, DeploymentFullFeedVersionMixin.class);
-            byte[] manifest = jsonManifest.write(this).getBytes();
-            // Write manifest and close entry.
-            out.write(manifest);
-            out.closeEntry();
-        }
+            if (includeManifest) {
+                // save the manifest at the beginning of the file, for read/seek efficiency
+                ZipEntry manifestEntry = new ZipEntry("manifest.json");
+                out.putNextEntry(manifestEntry);
+                // create the json manifest
+                JsonManager<Deployment> jsonManifest = new JsonManager<>(Deployment.class, JsonViews.UserInterface.class);
+                // this mixin gives us full feed validation results, not summarized
+                jsonManifest.addMixin(Deployment.class, DeploymentFullFeedVersionMixin.class);
+                byte[] manifest = jsonManifest.write(this).getBytes();
+                // Write manifest and close entry.
+                out.write(manifest);
+                out.closeEntry();
+            }
 
-        // Write each of the feed version GTFS files into the zip.
-        for (FeedVersion v : this.retrieveFullFeedVersions()) {
-            File gtfsFile = v.retrieveGtfsFile();
-            FileInputStream in;
-            try {
-                in = new FileInputStream(gtfsFile);
-            } catch (FileNotFoundException e1) {
-                LOG.error("Could not retrieve file for {}", v.name);
-                throw new RuntimeException(e1);
+            // Write each of the feed version GTFS files into the zip.
+            for (CompletableFuture<BundleFile> gtfsFile : gtfsFiles) {
+                gtfsFile.join().write(out);
             }
-            ZipEntry e = new ZipEntry(gtfsFile.getName());
-            out.putNextEntry(e);
-            ByteStreams.copy(in, out);
-            try {
-                in.close();
-            } catch (IOException e1) {
-                LOG.warn("Could not close GTFS file input stream {}", gtfsFile.getName());
-                e1.printStackTrace();
+
+            if (osmFile != null) {
+                osmFile.join().write(out);
             }
-            out.closeEntry();
+
+            if (includeOtpConfig) {
+                // Write build-config.json and router-config.json into zip file.
+                // Use custom build config if it is not null, otherwise default to project build config.
+                byte[] buildConfigAsBytes = generateBuildConfig();
+                if (buildConfigAsBytes != null) {
+                    // Include build config if not null.
+                    ZipEntry buildConfigEntry = new ZipEntry("build-config.json");
+                    out.putNextEntry(buildConfigEntry);
+                    out.write(buildConfigAsBytes);
+                    out.closeEntry();
+                }
+                // Use custom router config if it is not null, otherwise default to project router config.
+                byte[] routerConfigAsBytes = generateRouterConfig();
+                if (routerConfigAsBytes != null) {
+                    // Include router config if not null.
+                    ZipEntry routerConfigEntry = new ZipEntry("router-config.json");
+                    out.putNextEntry(routerConfigEntry);
+                    out.write(routerConfigAsBytes);
+                    out.closeEntry();
+                }
+            }
+            // The zip output stream is closed here. The dump file is now complete.
+        } catch (CompletionException e) {
+            // Rethrow the exception thrown while retrieving a file.
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            // Delete the OSM temp file (once downloaded, if the dump failed before then).
+            if (osmFile != null) osmFile.thenAccept(bundleFile -> bundleFile.file.delete());
         }
+    }
 
-        if (includeOsm) {
-            // Extract OSM and insert it into the deployment bundle
-            ZipEntry e = new ZipEntry("osm.pbf");
-            out.putNextEntry(e);
-            InputStream is = downloadOsmExtract();
-            ByteStreams.copy(is, out);
-            try {
-                is.close();
-            } catch (IOException e1) {
-                LOG.warn("Could not close OSM input stream");
-                e1.printStackTrace();
+    /**
+     * A file to be included in a deployment bundle. The file's CRC (which must be known before writing a stored zip
+     * entry) is computed up front, so that this happens in parallel with retrieving other files.
+     */
+    private static class BundleFile {
+        private final String name;
+        private final File file;
+        private final long crc;
+
+        private BundleFile(String name, File file) {
+            this.name = name;
+            this.file = file;
+            CRC32 crc32 = new CRC32();
+            try (InputStream in = new CheckedInputStream(new FileInputStream(file), crc32)) {
+                ByteStreams.exhaust(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+            this.crc = crc32.getValue();
+        }
+
+        /** Write the file to the zip as a stored (i.e., uncompressed) entry. */
+        private void write(ZipOutputStream out) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(file.length());
+            entry.setCompressedSize(file.length());
+            entry.setCrc(crc);
+            out.putNextEntry(entry);
+            Files.copy(file.toPath(), out);
             out.closeEntry();
         }
+    }
 
-        if (includeOtpConfig) {
-            // Write build-config.json and router-config.json into zip file.
-            // Use custom build config if it is not null, otherwise default to project build config.
-            byte[] buildConfigAsBytes = generateBuildConfig();
-            if (buildConfigAsBytes != null) {
-                // Include build config if not null.
-                ZipEntry buildConfigEntry = new ZipEntry("build-config.json");
-                out.putNextEntry(buildConfigEntry);
-                out.write(buildConfigAsBytes);
-                out.closeEntry();
-            }
-            // Use custom router config if it is not null, otherwise default to project router config.
-            byte[] routerConfigAsBytes = generateRouterConfig();
-            if (routerConfigAsBytes != null) {
-                // Include router config if not null.
-                ZipEntry routerConfigEntry = new ZipEntry("router-config.json");
-                out.putNextEntry(routerConfigEntry);
-                out.write(routerConfigAsBytes);
-                out.closeEntry();
+    /**
+     * Download the OSM extract for the deployment to a temp file (which the caller must delete).
+     */
+    private File downloadOsmExtractToTempFile() {
+        File osmFile = null;
+        try {
+            osmFile = File.createTempFile("osm", ".pbf");
+            try (InputStream is = downloadOsmExtract()) {
+                Files.copy(is, osmFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            return osmFile;
+        } catch (IOException e) {
+            if (osmFile != null) osmFile.delete();
+            throw new UncheckedIOException(e);
         }
-        // Finally close the zip output stream. The dump file is now complete.
-        out.close();
     }
 
     /** Generate build config for deployment as byte array (for writing to file output stream). */
@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 
@@ -7,6 +8,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * Created by demory on 3/30/16.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({"feedSourceId", "resourceType"})
 public class ExternalFeedSourceProperty extends Model {
     private static final long serialVersionUID = 1L;
 
@@ -4,11 +4,11 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.conveyal.datatools.common.status.FeedSourceJob;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.common.utils.aws.CheckedAWSException;
 import com.conveyal.datatools.common.utils.aws.S3Utils;
+import com.conveyal.datatools.editor.utils.CopyOnWriteSnapshots;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.jobs.CreateFeedVersionFromSnapshotJob;
 import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
@@ -16,10 +16,12 @@ import com.conveyal.datatools.manager.jobs.MergeFeedsJob;
 import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.models.transform.FeedTransformRules;
 import com.conveyal.datatools.manager.models.transform.FeedTransformation;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.JobUtils;
 import com.conveyal.datatools.manager.utils.connections.ConnectionResponse;
-import com.conveyal.datatools.manager.utils.connections.HttpURLConnectionResponse;
+import com.conveyal.datatools.manager.utils.connections.DuplicateCheckingInputStream;
+import com.conveyal.datatools.manager.utils.connections.FeedFetchClient;
 import com.conveyal.gtfs.GTFS;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -35,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -59,6 +62,7 @@ import static com.mongodb.client.model.Updates.pull;
  * Created by demory on 3/22/16.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex("projectId")
 public class FeedSource extends Model implements Cloneable {
 
     private static final long serialVersionUID = 1L;
@@ -80,11 +84,32 @@ public class FeedSource extends Model implements Cloneable {
      */
     public boolean preserveStopTimesSequence;
 
+    /**
+     * Prefetched derived properties for this feed source, if it was loaded as part of a batch (e.g., when listing the
+     * feed sources for a project). When present, getters read from this rather than querying MongoDB.
+     */
+    @JsonIgnore
+    @BsonIgnore
+    private transient FeedSourceBatchLoader batchLoader;
+
     /**
      * Get the Project of which this feed is a part
      */
     public Project retrieveProject() {
-        return projectId != null ? Persistence.projects.getById(projectId) : null;
+        if (projectId == null) return null;
+        if (isBatchLoaded()) return batchLoader.getProject(projectId);
+        return Persistence.projects.getById(projectId);
+    }
+
+    /**
+     * Read derived properties from the provided batch loader instead of querying MongoDB for each property.
+     */
+    void useBatchLoader(FeedSourceBatchLoader batchLoader) {
+        this.batchLoader = batchLoader;
+    }
+
+    private boolean isBatchLoaded() {
+        return batchLoader != null && batchLoader.hasLoaded(id);
     }
 
     @JsonProperty("organizationId")
@@ -223,14 +248,25 @@ public class FeedSource extends Model implements Cloneable {
         // Get latest version to check that the fetched version does not duplicate a feed already loaded.
         FeedVersion latest = retrieveLatest();
 
-        HttpURLConnection conn = makeHttpURLConnection(status, optionalUrlOverride, getModifiedThreshold(latest));
-        if (conn == null) return null;
-
+        // build the URL from which to fetch
+        URL fetchUrl;
         try {
-            conn.connect();
-            return processFetchResponse(status, optionalUrlOverride, version, latest, new HttpURLConnectionResponse(conn));
+            // If an optional URL is provided (in the case of a recursive fetch) use that. Otherwise, use the fetch URL
+            fetchUrl = optionalUrlOverride != null ? new URL(optionalUrlOverride) : this.url;
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            status.fail(String.format("Could not connect to bad redirect URL %s", optionalUrlOverride));
+            return null;
+        }
+        LOG.info("Fetching from {}", fetchUrl.toString());
+
+        // make the request, using the proper HTTP caching headers to prevent refetch, if applicable
+        try (
+            ConnectionResponse response = FeedFetchClient.get(fetchUrl, getModifiedThreshold(latest), getETag(latest))
+        ) {
+            return processFetchResponse(status, optionalUrlOverride, version, latest, response);
         } catch (IOException e) {
-            String message = String.format("Unable to connect to %s; not fetching %s feed", conn.getURL(), this.name); // url, this.name);
+            String message = String.format("Unable to connect to %s; not fetching %s feed", fetchUrl, this.name);
             LOG.error(message);
             status.fail(message);
             e.printStackTrace();
@@ -239,56 +275,34 @@ public class FeedSource extends Model implements Cloneable {
     }
 
     /**
-     * Computes the modified time to set to the HttpURLConnection
+     * Whether the latest version can be used to make a conditional fetch request (i.e., it was auto-fetched and there
+     * is a record for the last fetch action).
+     */
+    private boolean canFetchConditionally(FeedVersion latest) {
+        // lastFetched is set to null when the URL changes and when latest feed version is deleted
+        return latest != null && latest.retrievalMethod.equals(FETCHED_AUTOMATICALLY) && this.lastFetched != null;
+    }
+
+    /**
+     * Computes the modified time to set as the If-Modified-Since request header
      * so that if a version has not been published since the last fetch,
      * then download can be skipped.
-     * @return The computed threshold if the latest feed version exists and was auto-fetched
-     *         and there is a record for the last fetch action, null otherwise.
+     * @return The computed threshold if the latest feed version can be used for a conditional fetch, null otherwise.
      */
     private Long getModifiedThreshold(FeedVersion latest) {
-        Long modifiedThreshold = null;
-        // lastFetched is set to null when the URL changes and when latest feed version is deleted
-        if (latest != null && latest.retrievalMethod.equals(FETCHED_AUTOMATICALLY) && this.lastFetched != null) {
-            modifiedThreshold = Math.min(latest.updated.getTime(), this.lastFetched.getTime());
-        }
-        return modifiedThreshold;
+        return canFetchConditionally(latest)
+            ? Math.min(latest.updated.getTime(), this.lastFetched.getTime())
+            : null;
     }
 
     /**
-     * Builds an {@link HttpURLConnection}.
+     * Gets the ETag to set as the If-None-Match request header so that download can be skipped if the server still
+     * holds the latest version.
+     * @return The ETag returned when the latest version was fetched if it can be used for a conditional fetch, null
+     *         otherwise.
      */
-    private HttpURLConnection makeHttpURLConnection(MonitorableJob.Status status, String optionalUrlOverride, Long modifiedThreshold) {
-        // build the URL from which to fetch
-        URL url = null;
-        try {
-            // If an optional URL is provided (in the case of a recursive fetch) use that. Otherwise, use the fetch URL
-            url = optionalUrlOverride != null ? new URL(optionalUrlOverride) : this.url;
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            status.fail(String.format("Could not connect to bad redirect URL %s", optionalUrlOverride));
-        }
-        LOG.info("Fetching from {}", url.toString());
-
-        // make the request, using the proper HTTP caching headers to prevent refetch, if applicable
-        HttpURLConnection conn;
-        try {
-            conn = (HttpURLConnection) url.openConnection();
-            // Set user agent request header in order to avoid 403 Forbidden response from some servers.
-            // https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
-            conn.setRequestProperty(
-                    "User-Agent",
-                    "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11"
-            );
-        } catch (IOException e) {
-            status.fail(String.format("Unable to open connection to %s; not fetching feed %s", url, this.name), e);
-            return null;
-        }
-
-        conn.setDefaultUseCaches(true);
-
-        if (modifiedThreshold != null) conn.setIfModifiedSince(modifiedThreshold);
-
-        return conn;
+    private String getETag(FeedVersion latest) {
+        return canFetchConditionally(latest) ? latest.etag : null;
     }
 
     /**
@@ -318,9 +332,22 @@ public class FeedSource extends Model implements Cloneable {
                     message = String.format("Saving %s feed.", this.name);
                     LOG.info(message);
                     status.update(message, 75.0);
-                    // Create new file from input stream (this also handles hashing the file and other version fields
-                    // calculated from the GTFS file.
-                    newGtfsFile = version.newGtfsFile(response.getInputStream());
+                    InputStream inputStream = response.getInputStream();
+                    Long contentLength = response.getContentLength();
+                    if (latest != null && latest.hash != null && contentLength != null) {
+                        // Check the hash while downloading, so that the download of a duplicate of the latest version
+                        // stops once the bytes that determine its hash have been read.
+                        inputStream = new DuplicateCheckingInputStream(inputStream, contentLength, latest.hash);
+                    }
+                    try {
+                        // Create new file from input stream (this also handles hashing the file and other version
+                        // fields calculated from the GTFS file.
+                        newGtfsFile = version.newGtfsFile(inputStream);
+                    } catch (DuplicateCheckingInputStream.DuplicateFileException e) {
+                        LOG.info("Feed {} matches the latest version; stopping download", this.name);
+                        version.hash = latest.hash;
+                        newGtfsFile = FeedVersion.feedStore.getFeedFile(version.id);
+                    }
                     break;
                 case HttpURLConnection.HTTP_MOVED_TEMP:
                 case HttpURLConnection.HTTP_MOVED_PERM:
@@ -339,6 +366,8 @@ public class FeedSource extends Model implements Cloneable {
                         // to prevent multiple (possibly infinite?) redirects. Any more redirects than one should
                         // probably be met with user action to update the fetch URL.
                         LOG.info("Recursively calling fetch feed with new URL: {}", redirectUrl);
+                        // Release this response (and its host's fetch permit) before fetching from the new URL.
+                        response.close();
                         return fetch(status, redirectUrl);
                     }
                 default:
@@ -359,7 +388,7 @@ public class FeedSource extends Model implements Cloneable {
         if (version.isSameAs(latest)) {
             // If new version hash equals the hash for the latest version, do not error. Simply indicate that server
             // operators should add If-Modified-Since support to avoid wasting bandwidth.
-            String message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since support to avoid wasting bandwidth", this.name);
+            String message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since or ETag support to avoid wasting bandwidth", this.name);
             LOG.warn(message);
             String filePath = newGtfsFile.getAbsolutePath();
             if (newGtfsFile.delete()) {
@@ -367,6 +396,11 @@ public class FeedSource extends Model implements Cloneable {
             } else {
                 LOG.warn("Failed to delete unneeded GTFS file at: {}", filePath);
             }
+            // Record the current ETag so that the next fetch can be conditional.
+            String eTag = response.getETag();
+            if (eTag != null && !eTag.equals(latest.etag)) {
+                Persistence.feedVersions.updateField(latest.id, "etag", eTag);
+            }
             status.completeSuccessfully(message);
             return null;
         } else {
@@ -377,6 +411,7 @@ public class FeedSource extends Model implements Cloneable {
 
             // Set file timestamp according to last modified header from connection
             version.fileTimestamp = response.getLastModified();
+            version.etag = response.getETag();
             String message = String.format("Fetch complete for %s", this.name);
             LOG.info(message);
             status.completeSuccessfully(message);
@@ -421,6 +456,7 @@ public class FeedSource extends Model implements Cloneable {
      */
     @JsonIgnore
     public FeedVersion retrieveLatest() {
+        if (isBatchLoaded()) return batchLoader.getLatestVersion(id);
         return Persistence.feedVersions.getOneFiltered(
             eq("feedSourceId", this.id),
             Sorts.descending("version")
@@ -433,6 +469,7 @@ public class FeedSource extends Model implements Cloneable {
      */
     public FeedVersion retrievePublishedVersion() {
         if (this.publishedVersionId == null) return null;
+        if (isBatchLoaded()) return batchLoader.getPublishedVersion(publishedVersionId);
         FeedVersion publishedVersion = Persistence.feedVersions
             // Sort is unnecessary here.
             .getOneFiltered(eq("namespace", this.publishedVersionId), Sorts.descending("version"));
@@ -516,6 +553,11 @@ public class FeedSource extends Model implements Cloneable {
         if (deployedFeedVersionDefined) {
             return deployedFeedVersion;
         }
+        if (isBatchLoaded()) {
+            deployedFeedVersion = batchLoader.getDeployedVersion(id);
+            deployedFeedVersionDefined = true;
+            return deployedFeedVersion;
+        }
         Project project = Persistence.projects.getById(projectId);
         deployedFeedVersion = (project.pinnedDeploymentId != null && !project.pinnedDeploymentId.isEmpty())
             ? FeedVersionDeployed.getFeedVersionFromPinnedDeployment(projectId, id)
@@ -529,6 +571,7 @@ public class FeedSource extends Model implements Cloneable {
      */
     @BsonIgnore
     public long getVersionCount() {
+        if (isBatchLoaded()) return batchLoader.getVersionCount(id);
         return Persistence.feedVersions.count(eq("feedSourceId", this.id));
     }
 
@@ -573,6 +616,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("externalProperties")
     public Map<String, Map<String, String>> externalProperties() {
+        if (isBatchLoaded()) return batchLoader.getExternalProperties(id);
 
         Map<String, Map<String, String>> resourceTable = new HashMap<>();
 
@@ -742,8 +786,18 @@ public class FeedSource extends Model implements Cloneable {
         try {
             // Remove all feed version records for this feed source
             retrieveFeedVersions().forEach(FeedVersion::delete);
+            // Copy any tables that the editor buffer and snapshots share with other feed sources' namespaces all at once
+            // (rather than as each snapshot is deleted, which would copy shared tables into the next snapshot only for
+            // them to be deleted along with it).
+            Collection<Snapshot> snapshots = retrieveSnapshots();
+            List<String> namespaces = snapshots.stream()
+                .map(snapshot -> snapshot.namespace)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+            if (this.editorNamespace != null) namespaces.add(this.editorNamespace);
+            CopyOnWriteSnapshots.releaseNamespaces(DataManager.GTFS_DATA_SOURCE, namespaces);
             // Remove all snapshot records for this feed source
-            retrieveSnapshots().forEach(Snapshot::delete);
+            snapshots.forEach(snapshot -> snapshot.delete(false));
             // Remove any notes for this feed source
             retrieveNotes(true).forEach(Note::delete);
             // Remove any scheduled job for feed source.
@@ -783,18 +837,12 @@ public class FeedSource extends Model implements Cloneable {
      * occurring at the same time).
      */
     public boolean hasJobsInProgress() {
-        return JobUtils.getAllActiveJobs().stream().anyMatch(job -> {
-            String jobFeedSourceId = null;
-            if (
-                job instanceof FetchSingleFeedJob ||
-                job instanceof ProcessSingleFeedJob ||
-                job instanceof CreateFeedVersionFromSnapshotJob ||
-                job instanceof MergeFeedsJob
-            ) {
-                jobFeedSourceId = ((FeedSourceJob) job).getFeedSourceId();
-            }
-            return this.id.equals(jobFeedSourceId);
-        });
+        return JobUtils.getActiveJobsForFeedSource(this.id).stream().anyMatch(job ->
+            job instanceof FetchSingleFeedJob ||
+            job instanceof ProcessSingleFeedJob ||
+            job instanceof CreateFeedVersionFromSnapshotJob ||
+            job instanceof MergeFeedsJob
+        );
     }
 
     public <T extends FeedTransformation> boolean hasTransformationsOfType(FeedVersion target, Class<T> clazz) {
@@ -0,0 +1,204 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.google.common.collect.Lists;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Accumulators.first;
+import static com.mongodb.client.model.Accumulators.sum;
+import static com.mongodb.client.model.Aggregates.group;
+import static com.mongodb.client.model.Aggregates.match;
+import static com.mongodb.client.model.Aggregates.project;
+import static com.mongodb.client.model.Aggregates.sort;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+
+/**
+ * Prefetches the properties that {@link FeedSource} derives from other collections (latest version, version count,
+ * published version, deployed version, parent project and external properties) for a whole set of feed sources in a handful of
+ * queries. Without this, each of the {@link com.fasterxml.jackson.annotation.JsonProperty} getters on a feed source
+ * issues its own queries during serialization, which adds up to thousands of round trips when listing the feed
+ * sources for a large project.
+ *
+ * A loader is intended to live for the duration of a single request: the feed sources it was loaded for hold a
+ * reference to it and read from it instead of MongoDB. Values are therefore only as fresh as the moment
+ * {@link #load} was called.
+ */
+public class FeedSourceBatchLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(FeedSourceBatchLoader.class);
+
+    private final Set<String> feedSourceIds;
+    private final Map<String, Project> projectsById = new HashMap<>();
+    private final Map<String, FeedVersion> latestVersionsByFeedSourceId = new HashMap<>();
+    private final Map<String, Long> versionCountsByFeedSourceId = new HashMap<>();
+    private final Map<String, FeedVersion> publishedVersionsByNamespace = new HashMap<>();
+    private final Map<String, FeedVersionDeployed> deployedVersionsByFeedSourceId = new HashMap<>();
+    private final Map<String, Map<String, Map<String, String>>> externalPropertiesByFeedSourceId = new HashMap<>();
+    private int queryCount = 0;
+
+    private FeedSourceBatchLoader(Collection<FeedSource> feedSources) {
+        feedSourceIds = feedSources.stream().map(feedSource -> feedSource.id).collect(Collectors.toSet());
+    }
+
+    /**
+     * Prefetch the derived properties for the provided feed sources and attach the loader to each of them so that
+     * their getters read from it.
+     */
+    public static FeedSourceBatchLoader load(Collection<FeedSource> feedSources) {
+        FeedSourceBatchLoader loader = new FeedSourceBatchLoader(feedSources);
+        if (!feedSources.isEmpty()) {
+            loader.loadProjects(feedSources);
+            loader.loadLatestVersions();
+            loader.loadPublishedVersions(feedSources);
+            loader.loadDeployedVersions(feedSources);
+            loader.loadExternalProperties();
+        }
+        for (FeedSource feedSource : feedSources) {
+            feedSource.useBatchLoader(loader);
+        }
+        LOG.info("Loaded derived properties for {} feed sources in {} queries", feedSources.size(), loader.queryCount);
+        return loader;
+    }
+
+    private void loadProjects(Collection<FeedSource> feedSources) {
+        List<String> projectIds = feedSources.stream()
+            .map(feedSource -> feedSource.projectId)
+            .filter(projectId -> projectId != null)
+            .distinct()
+            .collect(Collectors.toList());
+        if (projectIds.isEmpty()) return;
+        Persistence.projects.getByIds(projectIds).forEach(project -> projectsById.put(project.id, project));
+        queryCount++;
+    }
+
+    /**
+     * Find the latest version ID and the number of versions for each feed source with a lightweight aggregation (only
+     * the fields needed to sort are projected) and then fetch the full latest versions by ID.
+     */
+    private void loadLatestVersions() {
+        List<Bson> stages = Lists.newArrayList(
+            match(in("feedSourceId", feedSourceIds)),
+            project(fields(include("feedSourceId", "version"))),
+            sort(Sorts.descending("version")),
+            group("$feedSourceId", first("latestVersionId", "$_id"), sum("versionCount", 1))
+        );
+        List<String> latestVersionIds = new ArrayList<>();
+        Persistence.feedVersions.getMongoCollection()
+            .aggregate(stages, Document.class)
+            .allowDiskUse(true)
+            .forEach(document -> {
+                latestVersionIds.add(document.getString("latestVersionId"));
+                versionCountsByFeedSourceId.put(
+                    document.getString("_id"),
+                    ((Number) document.get("versionCount")).longValue()
+                );
+            });
+        queryCount++;
+        if (latestVersionIds.isEmpty()) return;
+        Persistence.feedVersions.getByIds(latestVersionIds)
+            .forEach(version -> latestVersionsByFeedSourceId.put(version.feedSourceId, version));
+        queryCount++;
+    }
+
+    private void loadPublishedVersions(Collection<FeedSource> feedSources) {
+        Set<String> namespaces = feedSources.stream()
+            .map(feedSource -> feedSource.publishedVersionId)
+            .filter(namespace -> namespace != null)
+            .collect(Collectors.toSet());
+        if (namespaces.isEmpty()) return;
+        Persistence.feedVersions.getFiltered(in("namespace", namespaces), Sorts.descending("version"))
+            .forEach(version -> publishedVersionsByNamespace.putIfAbsent(version.namespace, version));
+        queryCount++;
+    }
+
+    private void loadDeployedVersions(Collection<FeedSource> feedSources) {
+        Map<String, Set<String>> feedSourceIdsByProjectId = new HashMap<>();
+        for (FeedSource feedSource : feedSources) {
+            if (feedSource.projectId == null) continue;
+            feedSourceIdsByProjectId
+                .computeIfAbsent(feedSource.projectId, projectId -> new HashSet<>())
+                .add(feedSource.id);
+        }
+        for (Map.Entry<String, Set<String>> entry : feedSourceIdsByProjectId.entrySet()) {
+            Project project = projectsById.get(entry.getKey());
+            if (project == null) continue;
+            deployedVersionsByFeedSourceId.putAll(FeedVersionDeployed.getDeployedFeedVersions(project, entry.getValue()));
+            queryCount++;
+        }
+    }
+
+    private void loadExternalProperties() {
+        Set<String> resourceTypes = DataManager.feedResources.keySet();
+        for (String feedSourceId : feedSourceIds) {
+            Map<String, Map<String, String>> resourceTable = new HashMap<>();
+            for (String resourceType : resourceTypes) resourceTable.put(resourceType, new HashMap<>());
+            externalPropertiesByFeedSourceId.put(feedSourceId, resourceTable);
+        }
+        if (resourceTypes.isEmpty()) return;
+        Persistence.externalFeedSourceProperties
+            .getFiltered(and(in("feedSourceId", feedSourceIds), in("resourceType", resourceTypes)))
+            .forEach(prop -> externalPropertiesByFeedSourceId
+                .get(prop.feedSourceId)
+                .get(prop.resourceType)
+                .put(prop.name, prop.value)
+            );
+        queryCount++;
+    }
+
+    /**
+     * Whether the derived properties for the feed source have been prefetched by this loader.
+     */
+    public boolean hasLoaded(String feedSourceId) {
+        return feedSourceIds.contains(feedSourceId);
+    }
+
+    public Project getProject(String projectId) {
+        return projectsById.get(projectId);
+    }
+
+    public FeedVersion getLatestVersion(String feedSourceId) {
+        return latestVersionsByFeedSourceId.get(feedSourceId);
+    }
+
+    /**
+     * Number of versions for the feed source (zero if the feed source has no versions).
+     */
+    public long getVersionCount(String feedSourceId) {
+        return versionCountsByFeedSourceId.getOrDefault(feedSourceId, 0L);
+    }
+
+    public FeedVersion getPublishedVersion(String namespace) {
+        return namespace != null ? publishedVersionsByNamespace.get(namespace) : null;
+    }
+
+    public FeedVersionDeployed getDeployedVersion(String feedSourceId) {
+        return deployedVersionsByFeedSourceId.get(feedSourceId);
+    }
+
+    public Map<String, Map<String, String>> getExternalProperties(String feedSourceId) {
+        return externalPropertiesByFeedSourceId.get(feedSourceId);
+    }
+
+    /**
+     * Number of MongoDB queries issued to prefetch the derived properties.
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+}
@@ -7,6 +7,7 @@ import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
 import com.conveyal.datatools.manager.jobs.ValidateMobilityDataFeedJob;
 import com.conveyal.datatools.manager.jobs.validation.RouteTypeValidatorBuilder;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.gtfs.BaseGTFSCache;
@@ -36,6 +37,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -47,6 +49,10 @@ import java.time.LocalDate;
 import java.util.Date;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,6 +70,8 @@ import static com.mongodb.client.model.Updates.pull;
  */
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({"feedSourceId", "-version"})
+@MongoIndex("namespace")
 public class FeedVersion extends Model implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final String VERSION_ID_DATE_FORMAT = "yyyyMMdd'T'HHmmssX";
@@ -239,6 +247,9 @@ public class FeedVersion extends Model implements Serializable {
     /** The last modified timestamp of the original GTFS file uploaded/fetched */
     public Long fileTimestamp;
 
+    /** The ETag returned by the server for the GTFS file fetched (null if not fetched or the server provided none) */
+    public String etag;
+
     /** SQL namespace for GTFS data */
     public String namespace;
 
@@ -264,6 +275,9 @@ public class FeedVersion extends Model implements Serializable {
 
     public Document mobilityDataResult;
 
+    /** MobilityData validation running in parallel with the load and validation of this version (if any). */
+    private transient CompletableFuture<Void> mobilityValidation;
+
     public String formattedTimestamp() {
         SimpleDateFormat format = new SimpleDateFormat(HUMAN_READABLE_TIMESTAMP_FORMAT);
         return format.format(this.updated);
@@ -271,6 +285,7 @@ public class FeedVersion extends Model implements Serializable {
 
     public void load(MonitorableJob.Status status, boolean isNewVersion) {
         File gtfsFile;
+        status.checkCancelled();
         // STEP 1. LOAD GTFS feed into relational database
         try {
             status.update("Unpacking feed...", 15.0);
@@ -306,6 +321,8 @@ public class FeedVersion extends Model implements Serializable {
             return;
         }
 
+        // Skip the upload if the job was cancelled during the load (the version will not be stored).
+        status.checkCancelled();
         // STEP 2. Upload GTFS to S3 (storage on local machine is done when feed is fetched/uploaded)
         if (DataManager.useS3) {
             try {
@@ -354,6 +371,7 @@ public class FeedVersion extends Model implements Serializable {
 
         // Sometimes this method is called when no status object is available.
         if (status == null) status = new MonitorableJob.Status();
+        status.checkCancelled();
 
         // VALIDATE GTFS feed.
         try {
@@ -383,22 +401,27 @@ public class FeedVersion extends Model implements Serializable {
     }
 
     public void validateMobility(MonitorableJob.Status status) {
+        validateMobility(status, this.retrieveGtfsFile());
+    }
+
+    /**
+     * Run the MobilityData validator on the provided GTFS zip file (which must be a copy of this version's file) and
+     * store the resulting report in {@link #mobilityDataResult}.
+     */
+    public void validateMobility(MonitorableJob.Status status, File gtfsZip) {
 
         // Sometimes this method is called when no status object is available.
         if (status == null) status = new MonitorableJob.Status();
+        status.checkCancelled();
 
         // VALIDATE GTFS feed
         try {
             LOG.info("Beginning MobilityData validation...");
             status.update("MobilityData Analysis...", 11);
 
-            // Wait for the file to be entirely copied into the directory.
-            // 5 seconds + ~1 second per 10mb
-            Thread.sleep(5000 + (this.fileSize / 10000));
-            File gtfsZip = this.retrieveGtfsFile();
-            // Namespace based folders avoid clash for validation being run on multiple versions of a feed.
-            // TODO: do we know that there will always be a namespace?
-            String validatorOutputDirectory = "/tmp/datatools_gtfs/" + this.namespace + "/";
+            // Version based folders avoid clash for validation being run on multiple versions of a feed. (The namespace
+            // is not known yet if validation is running in parallel with the load.)
+            String validatorOutputDirectory = "/tmp/datatools_gtfs/" + this.id + "/";
 
             status.update("MobilityData Analysis...", 20);
             // Set up MobilityData validator.
@@ -420,13 +443,63 @@ public class FeedVersion extends Model implements Serializable {
                 json = in.lines().collect(Collectors.joining(System.lineSeparator()));
             }
 
+            // Discard the report if the validation was cancelled while the validator was running (e.g., because the load
+            // it was running alongside failed).
+            if (status.isCancellationRequested()) {
+                LOG.info("Discarding MobilityData validation report for cancelled validation of {}", this.id);
+                return;
+            }
             // This will persist the document to Mongo.
             this.mobilityDataResult = Document.parse(json);
         } catch (Exception e) {
+            // Note: the gtfs-lib validation result is not touched here because that validation may be running at the
+            // same time (a failed status prevents the version from being stored).
             status.fail(String.format("Unable to validate feed %s", this.id), e);
-            // FIXME create validation result with new constructor?
-            validationResult = new ValidationResult();
-            validationResult.fatalException = "failure!";
+        }
+    }
+
+    /**
+     * Start MobilityData validation of this version's GTFS zip file on the provided executor, so that it can run in
+     * parallel with loading the feed into the database and validating it with gtfs-lib (it only needs the zip file,
+     * which must already contain any zip transformations). The validator reads a hard link to (or, failing that, a copy
+     * of) the zip file because the load deletes the local file once it has been uploaded to S3.
+     * {@link #persistFeedVersionAfterValidation} waits for the validation to finish.
+     */
+    public CompletableFuture<Void> startMobilityValidation(MonitorableJob.Status status, Executor executor)
+        throws IOException {
+        Path gtfsZip = retrieveGtfsFile().toPath();
+        Path validatorInput = Files.createTempFile("mobility-validation-" + this.id, ".zip");
+        Files.delete(validatorInput);
+        try {
+            Files.createLink(validatorInput, gtfsZip);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.info("Could not link GTFS file for MobilityData validation (copying instead): {}", e.getMessage());
+            Files.copy(gtfsZip, validatorInput);
+        }
+        mobilityValidation = CompletableFuture.runAsync(() -> {
+            try {
+                validateMobility(status, validatorInput.toFile());
+            } finally {
+                try {
+                    Files.deleteIfExists(validatorInput);
+                } catch (IOException e) {
+                    LOG.warn("Could not delete {}", validatorInput, e);
+                }
+            }
+        }, executor);
+        return mobilityValidation;
+    }
+
+    /**
+     * Wait for MobilityData validation started with {@link #startMobilityValidation} (if any) to finish. Any failure is
+     * reported through the status passed to that method.
+     */
+    public void awaitMobilityValidation() {
+        if (mobilityValidation == null) return;
+        try {
+            mobilityValidation.join();
+        } catch (CompletionException | CancellationException e) {
+            LOG.warn("MobilityData validation for version {} did not complete", id, e);
         }
     }
 
@@ -622,9 +695,11 @@ public class FeedVersion extends Model implements Serializable {
     /**
      * {@link ValidateFeedJob} and {@link ValidateMobilityDataFeedJob} both require to save a feed version after their
      * subsequent validation checks have completed. Either could finish first, therefore this method makes sure that
-     * only one instance is saved (the last to finish updates).
+     * only one instance is saved (the last to finish updates). If MobilityData validation is running in parallel, it is
+     * joined first so that the version is stored with both validation results.
      */
     public void persistFeedVersionAfterValidation(boolean isNewVersion) {
+        awaitMobilityValidation();
         if (isNewVersion && Persistence.feedVersions.getById(id) == null) {
             int count = parentFeedSource().feedVersionCount();
             version = count + 1;
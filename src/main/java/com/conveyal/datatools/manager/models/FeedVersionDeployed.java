@@ -5,13 +5,18 @@ import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.collect.Lists;
+import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.model.Sorts;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.mongodb.client.model.Aggregates.limit;
 import static com.mongodb.client.model.Aggregates.lookup;
@@ -104,7 +109,17 @@ public class FeedVersionDeployed {
             }
             ])
          */
-        List<Bson> stages = Lists.newArrayList(
+        List<Bson> stages = pinnedDeploymentStages(projectId, Collections.singleton(feedSourceId));
+        stages.add(limit(1));
+        return getFeedVersionDeployed(stages);
+    }
+
+    /**
+     * Stages matching the feed versions held against the pinned deployment of a project for the given feed sources,
+     * sorted latest first.
+     */
+    private static List<Bson> pinnedDeploymentStages(String projectId, Collection<String> feedSourceIds) {
+        return Lists.newArrayList(
             match(
                 in("_id", projectId)
             ),
@@ -113,13 +128,11 @@ public class FeedVersionDeployed {
             unwind("$feedVersions"),
             replaceRoot("$feedVersions"),
             match(
-                in("feedSourceId", feedSourceId)
+                in("feedSourceId", feedSourceIds)
             ),
             // If more than one feed version for a feed source is held against a deployment the latest is used.
-            sort(Sorts.descending("lastUpdated")),
-            limit(1)
+            sort(Sorts.descending("lastUpdated"))
         );
-        return getFeedVersionDeployed(stages);
     }
 
     /**
@@ -206,7 +219,17 @@ public class FeedVersionDeployed {
                 }
             ])
          */
-        List<Bson> stages = Lists.newArrayList(
+        List<Bson> stages = latestDeploymentStages(projectId, Collections.singleton(feedSourceId));
+        stages.add(limit(1));
+        return getFeedVersionDeployed(stages);
+    }
+
+    /**
+     * Stages matching the feed versions held against the latest deployment of a project for the given feed sources,
+     * sorted latest first.
+     */
+    private static List<Bson> latestDeploymentStages(String projectId, Collection<String> feedSourceIds) {
+        return Lists.newArrayList(
             match(
                 in("_id", projectId)
             ),
@@ -219,21 +242,47 @@ public class FeedVersionDeployed {
             unwind("$feedVersions"),
             replaceRoot("$feedVersions"),
             match(
-                in("feedSourceId", feedSourceId)
+                in("feedSourceId", feedSourceIds)
             ),
             // If more than one feed version for a feed source is held against a deployment the latest is used.
-            sort(Sorts.descending("lastUpdated")),
-            limit(1)
+            sort(Sorts.descending("lastUpdated"))
         );
-        return getFeedVersionDeployed(stages);
+    }
+
+    /**
+     * Get the deployed feed version for each of the provided feed sources in a single aggregation, keyed by feed
+     * source ID. This follows the same rules as {@link #getFeedVersionFromPinnedDeployment} and
+     * {@link #getFeedVersionFromLatestDeployment} (a pinned deployment takes precedence over the latest one). Feed
+     * sources without a deployed version are absent from the returned map.
+     */
+    public static Map<String, FeedVersionDeployed> getDeployedFeedVersions(
+        Project project,
+        Collection<String> feedSourceIds
+    ) {
+        Map<String, FeedVersionDeployed> deployedVersionsByFeedSourceId = new HashMap<>();
+        if (project == null || feedSourceIds.isEmpty()) return deployedVersionsByFeedSourceId;
+        List<Bson> stages = (project.pinnedDeploymentId != null && !project.pinnedDeploymentId.isEmpty())
+            ? pinnedDeploymentStages(project.id, feedSourceIds)
+            : latestDeploymentStages(project.id, feedSourceIds);
+        for (Document feedVersionDocument : aggregateProjects(stages)) {
+            // Results are sorted latest first, so only the first version found for each feed source is kept.
+            deployedVersionsByFeedSourceId.putIfAbsent(
+                feedVersionDocument.getString("feedSourceId"),
+                new FeedVersionDeployed(feedVersionDocument)
+            );
+        }
+        return deployedVersionsByFeedSourceId;
     }
 
     private static FeedVersionDeployed getFeedVersionDeployed(List<Bson> stages) {
-        Document feedVersionDocument = Persistence
+        Document feedVersionDocument = aggregateProjects(stages).first();
+        return (feedVersionDocument == null) ? null : new FeedVersionDeployed(feedVersionDocument);
+    }
+
+    private static AggregateIterable<Document> aggregateProjects(List<Bson> stages) {
+        return Persistence
             .getMongoDatabase()
             .getCollection("Project")
-            .aggregate(stages)
-            .first();
-        return (feedVersionDocument == null) ? null : new FeedVersionDeployed(feedVersionDocument);
+            .aggregate(stages);
     }
 }
@@ -1,12 +1,14 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@MongoIndex("projectId")
 public class Label extends Model implements Cloneable{
     public static final Logger LOG = LoggerFactory.getLogger(Label.class);
 
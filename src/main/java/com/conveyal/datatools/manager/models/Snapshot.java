@@ -1,6 +1,8 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.editor.utils.CopyOnWriteSnapshots;
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.GTFS;
 import com.conveyal.gtfs.loader.FeedLoadResult;
@@ -19,6 +21,7 @@ import java.util.Date;
  *
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({"feedSourceId", "-version"})
 public class Snapshot extends Model {
     public static final long serialVersionUID = 1L;
     public static final String FEED_SOURCE_REF = "feedSourceId";
@@ -95,8 +98,19 @@ public class Snapshot extends Model {
     }
 
     public void delete () {
+        delete(true);
+    }
+
+    /**
+     * Delete the snapshot's tables and record.
+     * @param releaseNamespace whether to first copy any tables shared with other namespaces. This should only be false
+     *                         if the caller has already released the namespace (see
+     *                         {@link CopyOnWriteSnapshots#releaseNamespaces}).
+     */
+    public void delete (boolean releaseNamespace) {
         try {
-            // Delete snapshot tables in GTFS database
+            // Delete snapshot tables in GTFS database (after copying any tables shared with other snapshots).
+            if (releaseNamespace) CopyOnWriteSnapshots.releaseNamespace(DataManager.GTFS_DATA_SOURCE, this.namespace);
             GTFS.delete(this.namespace, DataManager.GTFS_DATA_SOURCE);
             // If SQL delete is successful, delete Mongo record.
             Persistence.snapshots.removeById(this.id);
@@ -0,0 +1,84 @@
+package com.conveyal.datatools.manager.models.transform;
+
+import org.apache.commons.text.WordUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Restores capitalization exceptions (e.g., acronyms) in title-cased text for {@link NormalizeFieldTransformation}.
+ *
+ * Each exception is equivalent to the substitution of its title-cased form (as a whole word) with the exception, with
+ * the substitutions applied in order. When all of the exceptions are single words, they are instead combined into one
+ * pattern, so that the text is scanned once (rather than once per exception), and each matched word is replaced with
+ * the result of applying the substitutions in order to that word. Exceptions that are not simple words (and could
+ * therefore overlap with one another) fall back to applying the substitutions one at a time.
+ */
+class CapitalizationExceptionMatcher {
+    private static final Pattern SIMPLE_WORD = Pattern.compile("[A-Za-z0-9]+");
+
+    /** Combined pattern matching any exception that changes the text, or null if there are none (or no simple words). */
+    private final Pattern combinedPattern;
+    /** Replacement for each title-cased word matched by the combined pattern. */
+    private final Map<String, String> replacements = new HashMap<>();
+    /** Substitutions applied in order if the exceptions cannot be combined (otherwise null). */
+    private final List<Substitution> substitutions;
+
+    CapitalizationExceptionMatcher(List<String> exceptions) {
+        boolean allSimpleWords = exceptions.stream().allMatch(word -> SIMPLE_WORD.matcher(word).matches());
+        if (!allSimpleWords) {
+            combinedPattern = null;
+            substitutions = exceptions.stream()
+                .map(word -> new Substitution(
+                    // TODO: support other capitalization styles.
+                    String.format("\\b%s\\b", WordUtils.capitalizeFully(word)),
+                    word
+                ))
+                .collect(Collectors.toList());
+            return;
+        }
+        substitutions = null;
+        for (String exception : exceptions) {
+            String titleCaseWord = WordUtils.capitalizeFully(exception);
+            if (replacements.containsKey(titleCaseWord)) continue;
+            // Apply each exception in order, as if they were separate substitutions (a later exception may replace the
+            // result of an earlier one).
+            String replacement = titleCaseWord;
+            for (String other : exceptions) {
+                if (replacement.equals(WordUtils.capitalizeFully(other))) replacement = other;
+            }
+            replacements.put(titleCaseWord, replacement);
+        }
+        replacements.entrySet().removeIf(entry -> entry.getKey().equals(entry.getValue()));
+        combinedPattern = replacements.isEmpty()
+            ? null
+            : Pattern.compile(String.format("\\b(?:%s)\\b", String.join("|", replacements.keySet())));
+    }
+
+    /**
+     * Replaces the title-cased form of each capitalization exception in the input with the exception.
+     */
+    String apply(String input) {
+        if (substitutions != null) {
+            String result = input;
+            for (Substitution substitution : substitutions) {
+                result = substitution.replaceAll(result);
+            }
+            return result;
+        }
+        if (combinedPattern == null) return input;
+        Matcher matcher = combinedPattern.matcher(input);
+        if (!matcher.find()) return input;
+        StringBuilder result = new StringBuilder(input.length());
+        int lastEnd = 0;
+        do {
+            result.append(input, lastEnd, matcher.start()).append(replacements.get(matcher.group()));
+            lastEnd = matcher.end();
+        } while (matcher.find());
+        return result.append(input, lastEnd, input.length()).toString();
+    }
+}
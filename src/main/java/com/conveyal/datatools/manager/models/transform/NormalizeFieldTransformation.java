@@ -7,6 +7,7 @@ import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.conveyal.gtfs.loader.Field;
 import com.conveyal.gtfs.loader.Table;
 import com.csvreader.CsvReader;
+import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.WordUtils;
 import org.slf4j.Logger;
@@ -14,20 +15,15 @@ import org.slf4j.LoggerFactory;
 import org.supercsv.io.CsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.zip.ZipFile;
+import java.util.Map;
 
 import static com.conveyal.datatools.manager.DataManager.getConfigProperty;
 import static com.conveyal.gtfs.loader.Field.getFieldIndex;
@@ -61,6 +57,8 @@ public class NormalizeFieldTransformation extends ZipTransformation {
     );
     // Common separator characters found on the US-English keyboard.
     private static final char[] SEPARATORS = " \t\n`~!@#$%^&*()-_=+[{]}\\|;:'\",<.>/?".toCharArray();
+    // Maximum number of distinct field values whose normalized form is remembered while transforming a table.
+    private static final int MAX_CACHED_VALUES = 10000;
 
     /** The field name in the GTFS table being transformed. */
     public String fieldName;
@@ -84,15 +82,16 @@ public class NormalizeFieldTransformation extends ZipTransformation {
      */
     public List<Substitution> substitutions = DEFAULT_SUBSTITUTIONS;
 
-    // This field is reset when the setter is called
-    // and initialized when executing the transform method.
-    private List<Substitution> capitalizationSubstitutions;
+    // This field is initialized when first needed (e.g., when executing the transform method).
+    private transient CapitalizationExceptionMatcher capitalizationExceptionMatcher;
 
-    private List<Substitution> getCapitalizationSubstitutions() {
-        if (capitalizationSubstitutions == null) {
-            initializeCapitalizeSubstitutions();
+    private CapitalizationExceptionMatcher getCapitalizationExceptionMatcher() {
+        if (capitalizationExceptionMatcher == null) {
+            capitalizationExceptionMatcher = new CapitalizationExceptionMatcher(
+                capitalizationExceptions == null ? new ArrayList<>() : capitalizationExceptions
+            );
         }
-        return capitalizationSubstitutions;
+        return capitalizationExceptionMatcher;
     }
 
     /**
@@ -124,21 +123,6 @@ public class NormalizeFieldTransformation extends ZipTransformation {
         return transformation;
     }
 
-    /**
-     * Initializes capitalizeSubstitutions so that it is a non-null list.
-     */
-    private void initializeCapitalizeSubstitutions() {
-        capitalizationSubstitutions = capitalizationExceptions == null
-            ? new ArrayList<>()
-            : capitalizationExceptions.stream()
-                .map(word -> new Substitution(
-                    // TODO: support other capitalization styles.
-                    String.format("\\b%s\\b", WordUtils.capitalizeFully(word)),
-                    word
-                ))
-                .collect(Collectors.toList());
-    }
-
     @Override
     public void validateParameters(MonitorableJob.Status status) {
         // fieldName must not be null
@@ -178,22 +162,25 @@ public class NormalizeFieldTransformation extends ZipTransformation {
     }
 
     @Override
-    public void transform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) {
+    protected TableTransformResult transformTable(
+        InputStream input,
+        OutputStream output,
+        MonitorableJob.Status status
+    ) throws IOException {
         String tableName = table + ".txt";
-        try(
-            // Hold output before writing to ZIP
-            StringWriter stringWriter = new StringWriter();
-            // CSV writer used to write to zip file.
-            CsvListWriter writer = new CsvListWriter(stringWriter, CsvPreference.STANDARD_PREFERENCE)
-        ) {
-            Path tempZipPath = Files.createTempFile("field-normalization", ".zip");
-            Path originalZipPath = Paths.get(zipTarget.gtfsFile.getAbsolutePath());
-
-            // Create a temporary working zip file from original.
-            Files.copy(originalZipPath, tempZipPath, StandardCopyOption.REPLACE_EXISTING);
-
+        if (input == null) {
+            status.fail("Feed does not contain table: " + tableName);
+            return null;
+        }
+        // CSV writer used to write to zip file.
+        try (CsvListWriter writer = new CsvListWriter(
+            new OutputStreamWriter(output, StandardCharsets.UTF_8),
+            CsvPreference.STANDARD_PREFERENCE
+        )) {
             Table gtfsTable = GtfsUtils.getGtfsTable(table);
-            CsvReader csvReader = gtfsTable.getCsvReader(new ZipFile(tempZipPath.toAbsolutePath().toString()), null);
+            // Read the table the same way as Table#getCsvReader (skipping any byte order mark).
+            CsvReader csvReader = new CsvReader(new BOMInputStream(input), ',', StandardCharsets.UTF_8);
+            csvReader.readHeaders();
             final String[] headers = csvReader.getHeaders();
             Field[] fieldsFoundInZip = gtfsTable.getFieldsFromFieldHeaders(headers, null);
             int transformFieldIndex = getFieldIndex(fieldsFoundInZip, fieldName);
@@ -206,23 +193,19 @@ public class NormalizeFieldTransformation extends ZipTransformation {
             }
 
             int modifiedRowCount = 0;
+            // Stop and route names repeat heavily, so remember the normalized form of recent values.
+            Map<String, String> normalizedValues = new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_CACHED_VALUES;
+                }
+            };
 
             while (csvReader.readRecord()) {
                 String originalValue = csvReader.get(transformFieldIndex);
-                String transformedValue = originalValue;
-
-                // Convert to title case, if requested.
-                if (capitalize) {
-                    if (capitalizationStyle == CapitalizationStyle.TITLE_CASE) {
-                        transformedValue = convertToTitleCase(transformedValue);
-                    }
-                    // TODO: Implement other capitalization styles.
-                }
-
-                // Perform substitutions if any.
-                transformedValue = performSubstitutions(transformedValue);
+                String transformedValue = normalizedValues.computeIfAbsent(originalValue, this::normalize);
 
-                // Re-assemble the CSV line and place in buffer.
+                // Re-assemble the CSV line and write to output.
                 String[] csvValues = csvReader.getValues();
 
                 // If the index is -1, this is a new column, and we need to add it accordingly.
@@ -241,31 +224,29 @@ public class NormalizeFieldTransformation extends ZipTransformation {
                 }
             } // End of iteration over each row.
             csvReader.close();
-            writer.flush();
-
-            // Copy csv input stream into the zip file, replacing the existing file.
-            try (
-                // Modify target zip file that we just read.
-                FileSystem targetZipFs = FileSystems.newFileSystem(tempZipPath, (ClassLoader) null);
-                // Stream for file copy operation.
-                InputStream inputStream =  new ByteArrayInputStream(stringWriter.toString().getBytes(StandardCharsets.UTF_8))
-            ) {
-                Path targetTxtFilePath = getTablePathInZip(tableName, targetZipFs);
-                Files.copy(inputStream, targetTxtFilePath, StandardCopyOption.REPLACE_EXISTING);
-                zipTarget.feedTransformResult.tableTransformResults.add(
-                    new TableTransformResult(tableName, 0, modifiedRowCount, 0)
-                );
-            }
-
-            // Replace original zip file with temporary working zip file.
-            // (This should also trigger a system IO update event, so subsequent IO calls pick up the correct file.
-            Files.move(tempZipPath, originalZipPath, StandardCopyOption.REPLACE_EXISTING);
             LOG.info("Field normalization transformation successful, {} row(s) changed.", modifiedRowCount);
-        } catch (Exception e) {
-            status.fail("Unknown error encountered while transforming zip file", e);
+            return new TableTransformResult(tableName, 0, modifiedRowCount, 0);
         }
     }
 
+    /**
+     * Applies the requested capitalization and substitutions to a field value.
+     */
+    private String normalize(String value) {
+        String transformedValue = value;
+
+        // Convert to title case, if requested.
+        if (capitalize) {
+            if (capitalizationStyle == CapitalizationStyle.TITLE_CASE) {
+                transformedValue = convertToTitleCase(transformedValue);
+            }
+            // TODO: Implement other capitalization styles.
+        }
+
+        // Perform substitutions if any.
+        return performSubstitutions(transformedValue);
+    }
+
     /**
      * Converts the provided string to Title Case, accommodating for capitalization exceptions
      * and separator characters that may be immediately precede
@@ -280,11 +261,7 @@ public class NormalizeFieldTransformation extends ZipTransformation {
         String result = WordUtils.capitalizeFully(inputString, SEPARATORS);
 
         // Exceptions should remain as specified (e.g. acronyms).
-        for (Substitution substitution : getCapitalizationSubstitutions()) {
-            result = substitution.replaceAll(result);
-        }
-
-        return result;
+        return getCapitalizationExceptionMatcher().apply(result);
     }
 
     /**
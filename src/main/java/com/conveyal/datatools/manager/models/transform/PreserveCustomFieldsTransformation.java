@@ -8,11 +8,11 @@ import com.conveyal.gtfs.loader.Table;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
@@ -59,80 +59,74 @@ public class PreserveCustomFieldsTransformation extends ZipTransformation {
     }
 
     @Override
-    public void transform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) throws Exception{
+    protected TableTransformResult transformTable(
+        InputStream input,
+        OutputStream output,
+        MonitorableJob.Status status
+    ) {
         String tableName = table + ".txt";
-        Path targetZipPath = Paths.get(zipTarget.gtfsFile.getAbsolutePath());
+        if (input == null) {
+            status.fail("Source version does not contain table: " + tableName);
+            return null;
+        }
         Optional<Table> streamResult = Arrays.stream(Table.tablesInOrder)
                 .filter(t -> t.name.equals(table))
                 .findFirst();
 
         if (!streamResult.isPresent()) {
-            throw new Exception(String.format("could not find specTable for table %s", table));
+            status.fail(String.format("could not find specTable for table %s", table));
+            return null;
         }
         Table specTable = streamResult.get();
-
-        try (FileSystem targetZipFs = FileSystems.newFileSystem(targetZipPath, (ClassLoader) null)) {
-            List<String> specTableFields = specTable.specFields().stream().map(f -> f.name).collect(Collectors.toList());
-            List<String> tablePrimaryKeys = specTable.getPrimaryKeyNames();
-
-            Path targetTxtFilePath = getTablePathInZip(tableName, targetZipFs);
-
-            final File tempFile = File.createTempFile(tableName + "-temp", ".txt");
-            File output = File.createTempFile(tableName + "-output-temp", ".txt");
-            int rowsModified = 0;
-            List<String> customFields;
-
-            try (
-                InputStream is = Files.newInputStream(targetTxtFilePath);
-                CsvMapReader customFileReader = new CsvMapReader(new StringReader(csvData), CsvPreference.STANDARD_PREFERENCE);
-                CsvMapReader editorFileReader = new CsvMapReader(new InputStreamReader(is), CsvPreference.STANDARD_PREFERENCE);
-                CsvMapWriter writer = new CsvMapWriter(new FileWriter(output), CsvPreference.STANDARD_PREFERENCE);
-            ){
-
-                String[] customHeaders = customFileReader.getHeader(true);
-                String[] editorHeaders = editorFileReader.getHeader(true);
-
-                customFields = Arrays.stream(customHeaders).filter(h -> !specTableFields.contains(h)).collect(Collectors.toList());
-                if (customFields.isEmpty()) return;
-                String[] fullHeaders = ArrayUtils.addAll(editorHeaders, customFields.toArray(new String[0]));
-
-                HashMap<String, Map<String, String>> customFieldsLookup = createCsvHashMap(customFileReader, customHeaders, tablePrimaryKeys);
-                writer.writeHeader(fullHeaders);
-
-                Map<String, String> row;
-                while ((row = editorFileReader.read(editorHeaders)) != null) {
-                    List<String> editorCsvPrimaryKeyValues = tablePrimaryKeys.stream()
-                        .map(row::get)
-                        .collect(Collectors.toList());
-
-                    String hashKey = StringUtils.join(editorCsvPrimaryKeyValues, "_");
-                    Map<String, String> customCsvValues = customFieldsLookup.get(hashKey);
-                    Map<String, String> finalRow = row;
-                    customFields.forEach(customField -> {
-                        String value = customCsvValues == null ? null : customCsvValues.get(customField);
-                        finalRow.put(customField, value);
-                    });
-                    if (customCsvValues != null) rowsModified++;
-                    writer.write(finalRow, fullHeaders);
-                }
+        List<String> specTableFields = specTable.specFields().stream().map(f -> f.name).collect(Collectors.toList());
+        List<String> tablePrimaryKeys = specTable.getPrimaryKeyNames();
+
+        int rowsModified = 0;
+        List<String> customFields;
+
+        try (
+            CsvMapReader customFileReader = new CsvMapReader(new StringReader(csvData), CsvPreference.STANDARD_PREFERENCE);
+            CsvMapReader editorFileReader = new CsvMapReader(new InputStreamReader(input, StandardCharsets.UTF_8), CsvPreference.STANDARD_PREFERENCE);
+            CsvMapWriter writer = new CsvMapWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), CsvPreference.STANDARD_PREFERENCE);
+        ){
+
+            String[] customHeaders = customFileReader.getHeader(true);
+            String[] editorHeaders = editorFileReader.getHeader(true);
+
+            customFields = Arrays.stream(customHeaders).filter(h -> !specTableFields.contains(h)).collect(Collectors.toList());
+            if (customFields.isEmpty()) return null;
+            String[] fullHeaders = ArrayUtils.addAll(editorHeaders, customFields.toArray(new String[0]));
+
+            HashMap<String, Map<String, String>> customFieldsLookup = createCsvHashMap(customFileReader, customHeaders, tablePrimaryKeys);
+            writer.writeHeader(fullHeaders);
+
+            Map<String, String> row;
+            while ((row = editorFileReader.read(editorHeaders)) != null) {
+                List<String> editorCsvPrimaryKeyValues = tablePrimaryKeys.stream()
+                    .map(row::get)
+                    .collect(Collectors.toList());
+
+                String hashKey = StringUtils.join(editorCsvPrimaryKeyValues, "_");
+                Map<String, String> customCsvValues = customFieldsLookup.get(hashKey);
+                Map<String, String> finalRow = row;
+                customFields.forEach(customField -> {
+                    String value = customCsvValues == null ? null : customCsvValues.get(customField);
+                    finalRow.put(customField, value);
+                });
+                if (customCsvValues != null) rowsModified++;
+                writer.write(finalRow, fullHeaders);
             }
-            Files.copy(output.toPath(), targetTxtFilePath, StandardCopyOption.REPLACE_EXISTING);
-            tempFile.deleteOnExit();
-            output.deleteOnExit();
-            zipTarget.feedTransformResult.tableTransformResults.add(new TableTransformResult(
-                    tableName,
-                    TransformType.TABLE_MODIFIED,
-                    0,
-                    rowsModified,
-                    0,
-                    customFields.size()
-            ));
-        } catch (NoSuchFileException e) {
-            status.fail("Source version does not contain table: " + tableName, e);
         } catch (IOException e) {
             status.fail("An exception occurred when writing output with custom fields", e);
-        } catch (Exception e) {
-            status.fail("Unknown error encountered while transforming zip file", e);
+            return null;
         }
+        return new TableTransformResult(
+                tableName,
+                TransformType.TABLE_MODIFIED,
+                0,
+                rowsModified,
+                0,
+                customFields.size()
+        );
     }
 }
@@ -8,13 +8,11 @@ import com.conveyal.datatools.manager.persistence.Persistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * This feed transformation will replace a file in the target zip (table) with a file from the source version.
@@ -40,32 +38,32 @@ public class ReplaceFileFromVersionTransformation extends ZipTransformation {
     }
 
     @Override
-    public void transform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) {
+    protected TableTransformResult transformTable(
+        InputStream input,
+        OutputStream output,
+        MonitorableJob.Status status
+    ) throws IOException {
         FeedVersion sourceVersion = getSourceVersion();
         String tableName = table + ".txt";
         // Run the replace transformation
-        Path sourceZipPath = Paths.get(sourceVersion.retrieveGtfsFile().getAbsolutePath());
-        try (FileSystem sourceZipFs = FileSystems.newFileSystem(sourceZipPath, (ClassLoader) null)) {
-            // If the source txt file does not exist, NoSuchFileException will be thrown and caught below.
-            Path sourceTxtFilePath = getTablePathInZip(tableName, sourceZipFs);
-            Path targetZipPath = Paths.get(zipTarget.gtfsFile.getAbsolutePath());
-            LOG.info("Replacing file {} in zip file {} with source {}", tableName, targetZipPath.getFileName(), sourceVersion.id);
-            try (FileSystem targetZipFs = FileSystems.newFileSystem(targetZipPath, (ClassLoader) null)) {
-                Path targetTxtFilePath = getTablePathInZip(tableName, targetZipFs);
-                // Set transform type according to whether target file exists.
-                TransformType type = Files.exists(targetTxtFilePath)
-                    ? TransformType.TABLE_REPLACED
-                    : TransformType.TABLE_ADDED;
-                // Copy a file into the zip file, replacing it if it already exists.
-                Files.copy(sourceTxtFilePath, targetTxtFilePath, StandardCopyOption.REPLACE_EXISTING);
-                zipTarget.feedTransformResult.tableTransformResults.add(new TableTransformResult(tableName, type));
+        try (ZipFile sourceZip = new ZipFile(sourceVersion.retrieveGtfsFile())) {
+            ZipEntry sourceEntry = sourceZip.getEntry(tableName);
+            if (sourceEntry == null) {
+                status.fail("Source version does not contain table: " + tableName);
+                return null;
+            }
+            LOG.info("Replacing file {} with source {}", tableName, sourceVersion.id);
+            // Copy the source file in place of the table, replacing it if it already exists.
+            try (InputStream sourceInput = sourceZip.getInputStream(sourceEntry)) {
+                sourceInput.transferTo(output);
             }
-            LOG.info("File replacement zip transformation successful!");
-        } catch (NoSuchFileException e) {
-            status.fail("Source version does not contain table: " + tableName, e);
-        } catch (Exception e) {
-            status.fail("Unknown error encountered while transforming zip file", e);
         }
+        // Set transform type according to whether target file exists.
+        TransformType type = input != null
+            ? TransformType.TABLE_REPLACED
+            : TransformType.TABLE_ADDED;
+        LOG.info("File replacement zip transformation successful!");
+        return new TableTransformResult(tableName, type);
     }
 
     private FeedVersion getSourceVersion() {
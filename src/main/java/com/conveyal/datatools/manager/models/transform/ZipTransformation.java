@@ -1,15 +1,21 @@
 package com.conveyal.datatools.manager.models.transform;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.models.TableTransformResult;
 
-import java.nio.file.FileSystem;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
 
 /**
  * This is an abstract class that represents a transformation that should apply to a GTFS in zip form. In other
- * words, subclasses will provide a transform override method that acts directly on the zip file. Sample fields
- * csvData and sourceVersionId can be used to reference replacement string or file that should be passed to the target
- * zip file of the transformation.
+ * words, subclasses will provide a {@link #transformTable} override method that rewrites the contents of a single table
+ * in the zip file. Sample fields csvData and sourceVersionId can be used to reference replacement string or file that
+ * should be passed to the target zip file of the transformation.
+ *
+ * Zip transformations are applied by a {@link ZipTransformationPipeline}, which allows several transformations to be
+ * applied with a single pass over (and a single rewrite of) the zip file.
  */
 public abstract class ZipTransformation extends FeedTransformation<FeedTransformZipTarget> {
     public String csvData;
@@ -23,10 +29,24 @@ public abstract class ZipTransformation extends FeedTransformation<FeedTransform
         return FeedTransformZipTarget.class.getSimpleName();
     }
 
+    @Override
+    public void transform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) throws Exception {
+        new ZipTransformationPipeline(Collections.singletonList(this)).transform(zipTarget, status);
+    }
+
     /**
-     * Obtains a {@link Path} object for the specified GTFS table file in a ZIP archive.
+     * Contains the logic for this zip-bound transformation, which is applied to the table's CSV data.
+     * @param input  The current contents of the table (after any previous transformations for the same table), or null
+     *               if the zip file does not contain the table.
+     * @param output Where the transformed table should be written. This may be closed by the transformation.
+     * @param status Used to report failure. Calling status.fail stops any remaining transformations and leaves the zip
+     *               file unchanged.
+     * @return the result to report for the table, or null if the table should be left as is (in which case anything
+     * written to output is discarded).
      */
-    protected Path getTablePathInZip(String tableName, FileSystem targetZipFs) {
-        return targetZipFs.getPath("/" + tableName);
-    }
+    protected abstract TableTransformResult transformTable(
+        InputStream input,
+        OutputStream output,
+        MonitorableJob.Status status
+    ) throws IOException;
 }
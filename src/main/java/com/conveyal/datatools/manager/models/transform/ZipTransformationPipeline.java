@@ -0,0 +1,191 @@
+package com.conveyal.datatools.manager.models.transform;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.models.TableTransformResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Applies a list of {@link ZipTransformation}s to a GTFS zip file in a single pass. Transformations are grouped by the
+ * table they apply to, so that each affected table is read once and passed through its transformations in order, while
+ * all other entries are copied as is. The output is written to a new zip file that replaces the original only once all
+ * transformations have succeeded, so a failed transformation leaves the zip file unchanged.
+ *
+ * Table transform results are reported in the order of the transformations (regardless of the order of the tables in
+ * the zip file), as though the transformations had been applied one after another.
+ */
+public class ZipTransformationPipeline {
+    private static final Logger LOG = LoggerFactory.getLogger(ZipTransformationPipeline.class);
+
+    private final List<? extends ZipTransformation> transformations;
+
+    public ZipTransformationPipeline(List<? extends ZipTransformation> transformations) {
+        this.transformations = transformations;
+    }
+
+    /**
+     * Validates all of the transformations before applying any of them (the equivalent of
+     * {@link FeedTransformation#doTransform} for the whole list).
+     */
+    public void doTransform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) {
+        try {
+            for (ZipTransformation transformation : transformations) {
+                transformation.validateTableName(status);
+                transformation.validateFieldNames(status);
+                transformation.validateParameters(status);
+                if (status.error) {
+                    return;
+                }
+            }
+            transform(zipTarget, status);
+        } catch (Exception e) {
+            status.fail(e.toString());
+        }
+    }
+
+    /**
+     * Applies the (already validated) transformations to the target zip file.
+     */
+    void transform(FeedTransformZipTarget zipTarget, MonitorableJob.Status status) throws IOException {
+        if (transformations.isEmpty()) return;
+        // Group transformations by table file name, keeping the order in which they should be applied.
+        Map<String, List<ZipTransformation>> transformationsByTable = new LinkedHashMap<>();
+        for (ZipTransformation transformation : transformations) {
+            transformationsByTable
+                .computeIfAbsent(transformation.table + ".txt", tableName -> new ArrayList<>())
+                .add(transformation);
+        }
+        Map<ZipTransformation, TableTransformResult> results = new IdentityHashMap<>();
+        File originalZip = zipTarget.gtfsFile;
+        // Write to the same directory so that the original can be replaced with a move rather than a copy.
+        File transformedZip = File.createTempFile("transformed-", ".zip", originalZip.getAbsoluteFile().getParentFile());
+        try {
+            try (
+                ZipFile sourceZip = new ZipFile(originalZip);
+                ZipOutputStream zipOutput = new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(transformedZip))
+                )
+            ) {
+                Enumeration<? extends ZipEntry> entries = sourceZip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    List<ZipTransformation> tableTransformations = transformationsByTable.remove(entry.getName());
+                    if (tableTransformations == null) {
+                        copyEntry(sourceZip, entry, zipOutput);
+                    } else if (!transformTable(sourceZip, entry, tableTransformations, zipOutput, results, status)) {
+                        return;
+                    }
+                }
+                // Any remaining tables are not in the source zip and may be added by their transformations.
+                for (Map.Entry<String, List<ZipTransformation>> tableTransformations : transformationsByTable.entrySet()) {
+                    ZipEntry entry = new ZipEntry(tableTransformations.getKey());
+                    if (!transformTable(null, entry, tableTransformations.getValue(), zipOutput, results, status)) {
+                        return;
+                    }
+                }
+            }
+            // Replace original zip file with the transformed zip file.
+            // (This should also trigger a system IO update event, so subsequent IO calls pick up the correct file.
+            Files.move(transformedZip.toPath(), originalZip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(transformedZip.toPath());
+        }
+        for (ZipTransformation transformation : transformations) {
+            TableTransformResult result = results.get(transformation);
+            if (result != null) zipTarget.feedTransformResult.tableTransformResults.add(result);
+        }
+        LOG.info("Applied {} zip transformation(s) to {}", transformations.size(), originalZip.getName());
+    }
+
+    /**
+     * Passes a table through each of its transformations (using a temp file between transformations) and writes the
+     * final contents to the output zip. If no transformation changes the table, it is copied as is (or left out if the
+     * source zip does not contain it).
+     *
+     * @param sourceZip the zip containing the table, or null if the table is not in the source zip
+     * @return false if a transformation failed
+     */
+    private static boolean transformTable(
+        ZipFile sourceZip,
+        ZipEntry entry,
+        List<ZipTransformation> tableTransformations,
+        ZipOutputStream zipOutput,
+        Map<ZipTransformation, TableTransformResult> results,
+        MonitorableJob.Status status
+    ) throws IOException {
+        // Latest transformed contents of the table (null while the table is unchanged).
+        File current = null;
+        try {
+            for (ZipTransformation transformation : tableTransformations) {
+                File next = File.createTempFile(entry.getName() + "-transformed", ".txt");
+                TableTransformResult result;
+                try (
+                    InputStream input = current != null
+                        ? new FileInputStream(current)
+                        : sourceZip != null ? sourceZip.getInputStream(entry) : null;
+                    OutputStream output = new BufferedOutputStream(new FileOutputStream(next))
+                ) {
+                    result = transformation.transformTable(input, output, status);
+                } catch (Exception e) {
+                    status.fail("Unknown error encountered while transforming zip file", e);
+                    result = null;
+                }
+                if (status.error) {
+                    Files.delete(next.toPath());
+                    return false;
+                }
+                if (result == null) {
+                    // Table is unchanged by this transformation.
+                    Files.delete(next.toPath());
+                    continue;
+                }
+                results.put(transformation, result);
+                if (current != null) Files.delete(current.toPath());
+                current = next;
+            }
+            if (current != null) {
+                zipOutput.putNextEntry(new ZipEntry(entry.getName()));
+                Files.copy(current.toPath(), zipOutput);
+                zipOutput.closeEntry();
+            } else if (sourceZip != null) {
+                copyEntry(sourceZip, entry, zipOutput);
+            }
+            return true;
+        } finally {
+            if (current != null) Files.deleteIfExists(current.toPath());
+        }
+    }
+
+    /**
+     * Copies an entry unchanged to the output zip. Note: the JDK does not support copying the compressed data directly,
+     * so the entry is streamed (decompressed and recompressed) without holding it in memory.
+     */
+    private static void copyEntry(ZipFile sourceZip, ZipEntry entry, ZipOutputStream zipOutput) throws IOException {
+        ZipEntry outputEntry = new ZipEntry(entry.getName());
+        outputEntry.setTime(entry.getTime());
+        zipOutput.putNextEntry(outputEntry);
+        try (InputStream input = sourceZip.getInputStream(entry)) {
+            input.transferTo(zipOutput);
+        }
+        zipOutput.closeEntry();
+    }
+}
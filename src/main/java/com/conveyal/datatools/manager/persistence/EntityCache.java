@@ -0,0 +1,99 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.bson.RawBsonDocument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of the documents in a MongoDB collection keyed on ID, used by {@link TypedPersistence}
+ * for small, frequently read collections (e.g., projects and feed sources). Entries are evicted once the cache exceeds
+ * its maximum size or once they are older than the time to live, which bounds how stale a value can be if the
+ * collection is modified outside of this application instance.
+ *
+ * Documents are stored in their encoded form and decoded on each read, so every caller gets its own copy of the model
+ * object and can modify it freely without affecting other callers.
+ */
+public class EntityCache {
+    private final String collectionName;
+    private final Cache<String, RawBsonDocument> documents;
+    /**
+     * Incremented on every invalidation so that a document read from MongoDB concurrently with a write to it is not
+     * put into the cache after the write has invalidated it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    EntityCache(String collectionName, long maximumSize, long timeToLiveSeconds) {
+        this.collectionName = collectionName;
+        documents = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Get the cached document for the ID or, on a cache miss, load it with the provided function. Missing documents
+     * (i.e., if the loader returns null) are not cached.
+     */
+    RawBsonDocument get(String id, Function<String, RawBsonDocument> loader) {
+        RawBsonDocument document = documents.getIfPresent(id);
+        if (document != null) return document;
+        long generationBeforeLoad = generation.get();
+        document = loader.apply(id);
+        if (document != null) {
+            RawBsonDocument loadedDocument = document;
+            // Check the generation and store the document in one atomic step (invalidate waits on the same lock), so
+            // that an invalidation between the check and the put cannot be lost.
+            documents.asMap().compute(
+                id,
+                (key, cachedDocument) -> generation.get() == generationBeforeLoad ? loadedDocument : cachedDocument
+            );
+        }
+        return document;
+    }
+
+    /** Get the cached document for the ID without loading it on a miss. */
+    RawBsonDocument getIfPresent(String id) {
+        return documents.getIfPresent(id);
+    }
+
+    void invalidate(String id) {
+        generation.incrementAndGet();
+        documents.invalidate(id);
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        documents.invalidateAll();
+    }
+
+    Summary summarize() {
+        return new Summary(collectionName, documents.size(), documents.stats());
+    }
+
+    /**
+     * Hit/miss metrics for a single collection's cache.
+     */
+    public static class Summary {
+        public String collection;
+        public long size;
+        public long hitCount;
+        public long missCount;
+        public double hitRate;
+        public long evictionCount;
+
+        Summary(String collection, long size, CacheStats stats) {
+            this.collection = collection;
+            this.size = size;
+            this.hitCount = stats.hitCount();
+            this.missCount = stats.missCount();
+            this.hitRate = stats.hitRate();
+            this.evictionCount = stats.evictionCount();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index that should exist on the MongoDB collection a model class is stored in. Missing indexes are
+ * created by {@link TypedPersistence#ensureIndexes()} when the application starts up.
+ *
+ * Each value is a field name, optionally prefixed with a minus sign to index the field in descending order. Listing
+ * more than one field defines a compound index, e.g. {@code @MongoIndex({"feedSourceId", "-version"})}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(MongoIndex.List.class)
+public @interface MongoIndex {
+    String[] value();
+
+    /** Container for multiple indexes declared on the same model class. */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        MongoIndex[] value();
+    }
+}
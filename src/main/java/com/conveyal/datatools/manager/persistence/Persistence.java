@@ -4,6 +4,7 @@ import com.conveyal.datatools.manager.codec.FetchFrequencyCodec;
 import com.conveyal.datatools.manager.codec.IntArrayCodec;
 import com.conveyal.datatools.manager.codec.LocalDateCodec;
 import com.conveyal.datatools.manager.codec.URLCodec;
+import com.conveyal.datatools.manager.models.BulkValidationCheckpoint;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
 import com.conveyal.datatools.manager.models.FeedDownloadToken;
@@ -27,6 +28,11 @@ import org.bson.codecs.pojo.PojoCodecProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
 import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
 /**
@@ -40,6 +46,18 @@ public class Persistence {
     private static final String MONGO_USER = getConfigPropertyAsText("MONGO_USER");
     private static final String MONGO_PASSWORD = getConfigPropertyAsText("MONGO_PASSWORD");
     private static final String MONGO_DB_NAME = getConfigPropertyAsText("MONGO_DB_NAME");
+    // If enabled, queries are checked with explain() and any that fall back to a collection scan are logged.
+    private static final boolean MONGO_EXPLAIN_QUERIES =
+        "true".equals(getConfigPropertyAsText("MONGO_EXPLAIN_QUERIES", "false"));
+    // Read-through cache settings for frequently read collections (a time to live of zero disables caching).
+    private static final long MONGO_CACHE_TTL_SECONDS =
+        Long.parseLong(getConfigPropertyAsText("MONGO_CACHE_TTL_SECONDS", "30"));
+    private static final long MONGO_CACHE_MAX_SIZE =
+        Long.parseLong(getConfigPropertyAsText("MONGO_CACHE_MAX_SIZE", "1000"));
+    // If enabled, cached objects are also invalidated by a change stream (requires a replica set). This should be used
+    // if multiple application instances share the same database.
+    private static final boolean MONGO_CACHE_CHANGE_STREAMS =
+        "true".equals(getConfigPropertyAsText("MONGO_CACHE_CHANGE_STREAMS", "false"));
 
     private static MongoClient mongo;
     private static MongoDatabase mongoDatabase;
@@ -57,6 +75,7 @@ public class Persistence {
     public static TypedPersistence<Snapshot> snapshots;
     public static TypedPersistence<FeedDownloadToken> tokens;
     public static TypedPersistence<Label> labels;
+    public static TypedPersistence<BulkValidationCheckpoint> bulkValidationCheckpoints;
 
     public static void initialize () {
 
@@ -121,12 +140,49 @@ public class Persistence {
         snapshots = new TypedPersistence(mongoDatabase, Snapshot.class);
         tokens = new TypedPersistence(mongoDatabase, FeedDownloadToken.class);
         labels = new TypedPersistence(mongoDatabase, Label.class);
+        bulkValidationCheckpoints = new TypedPersistence(mongoDatabase, BulkValidationCheckpoint.class);
+
+        // Create any missing indexes declared on the model classes (see MongoIndex).
+        for (TypedPersistence<?> typedPersistence : Arrays.asList(
+            feedSources,
+            projects,
+            feedVersions,
+            deployments,
+            notes,
+            organizations,
+            externalFeedSourceProperties,
+            servers,
+            snapshots,
+            tokens,
+            labels,
+            bulkValidationCheckpoints
+        )) {
+            typedPersistence.ensureIndexes();
+        }
+        TypedPersistence.setExplainQueries(MONGO_EXPLAIN_QUERIES);
+
+        // Cache the collections that are looked up by ID over and over again (e.g., the parent project of a feed
+        // source) and that are small enough to be held in memory.
+        if (MONGO_CACHE_TTL_SECONDS > 0) {
+            for (TypedPersistence<?> typedPersistence : getCachedCollections()) {
+                typedPersistence.enableCache(MONGO_CACHE_MAX_SIZE, MONGO_CACHE_TTL_SECONDS);
+                if (MONGO_CACHE_CHANGE_STREAMS) typedPersistence.watchForChanges();
+            }
+        }
+    }
 
-        // TODO: Set up indexes on feed versions by feedSourceId, version #? deployments, feedSources by projectId.
-//        deployments.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedSources.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedVersions.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
-//        snapshots.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
+    private static List<TypedPersistence<?>> getCachedCollections() {
+        return Arrays.asList(projects, feedSources, servers);
+    }
+
+    /**
+     * Hit/miss metrics for each collection with a read-through cache enabled.
+     */
+    public static List<EntityCache.Summary> getCacheSummaries() {
+        return getCachedCollections().stream()
+            .map(TypedPersistence::getCacheSummary)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
     }
 
     /**
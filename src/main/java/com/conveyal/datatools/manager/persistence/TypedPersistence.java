@@ -2,21 +2,41 @@ package com.conveyal.datatools.manager.persistence;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Model;
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Filters.in;
@@ -52,16 +72,34 @@ public class TypedPersistence<T extends Model> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TypedPersistence.class);
 
+    /** Number of documents fetched from MongoDB per round trip when streaming results. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long CHANGE_STREAM_RETRY_MILLIS = 5000;
+
+    /**
+     * Whether the query plan for each distinct query shape should be checked with explain() and any query that falls
+     * back to a collection scan logged. This costs an extra round trip per query shape, so it is intended for testing.
+     */
+    private static boolean explainQueries = false;
+
+    private MongoDatabase mongoDatabase;
     private MongoCollection<T> mongoCollection;
+    private Class<T> clazz;
     private Constructor<T> noArgConstructor;
     private String collectionName;
     private final FindOneAndUpdateOptions findOneAndUpdateOptions = new FindOneAndUpdateOptions();
+    /** Query shapes (filter fields and sort) that have already been checked with explain(). */
+    private final Set<String> explainedQueryShapes = ConcurrentHashMap.newKeySet();
+    /** Read-through cache for {@link #getById}, or null if caching has not been enabled for this collection. */
+    private EntityCache cache;
 
     /**
      * Maps a persistence class to a Mongo collection.
      */
     public TypedPersistence(MongoDatabase mongoDatabase, Class<T> clazz, String collectionName) {
+        this.mongoDatabase = mongoDatabase;
         mongoCollection = mongoDatabase.getCollection(collectionName, clazz);
+        this.clazz = clazz;
         this.collectionName = collectionName;
         try {
             noArgConstructor = clazz.getConstructor(new Class<?>[0]);
@@ -82,10 +120,171 @@ public class TypedPersistence<T extends Model> {
         this(mongoDatabase, clazz, clazz.getSimpleName());
     }
 
+    /**
+     * Enable or disable checking query plans with explain() (see {@link #explainQueries}).
+     */
+    public static void setExplainQueries(boolean explainQueries) {
+        TypedPersistence.explainQueries = explainQueries;
+    }
+
+    /**
+     * Enable a read-through cache for {@link #getById} holding up to maximumSize documents for at most
+     * timeToLiveSeconds. Writes made through this class invalidate the affected entries, but writes made by other
+     * application instances sharing the database are only picked up once entries expire unless
+     * {@link #watchForChanges()} is also called.
+     */
+    public void enableCache(long maximumSize, long timeToLiveSeconds) {
+        cache = new EntityCache(collectionName, maximumSize, timeToLiveSeconds);
+        LOG.info("Caching up to {} {} objects for {} seconds", maximumSize, collectionName, timeToLiveSeconds);
+    }
+
+    /**
+     * Invalidate cache entries as documents in the collection change, including changes made by other application
+     * instances. This opens a MongoDB change stream, which is only supported when connected to a replica set or
+     * sharded cluster. If the change stream fails, the whole cache is cleared and the stream is reopened.
+     */
+    public void watchForChanges() {
+        if (cache == null) return;
+        Thread watcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    MongoCollection<Document> documents = mongoCollection.withDocumentClass(Document.class);
+                    for (ChangeStreamDocument<Document> change : documents.watch()) {
+                        BsonDocument documentKey = change.getDocumentKey();
+                        if (documentKey != null && documentKey.isString("_id")) {
+                            cache.invalidate(documentKey.getString("_id").getValue());
+                        } else {
+                            // E.g., the collection was dropped or renamed.
+                            cache.invalidateAll();
+                        }
+                    }
+                } catch (MongoException e) {
+                    LOG.warn("Change stream for {} failed, clearing cache and retrying", collectionName, e);
+                    cache.invalidateAll();
+                    try {
+                        Thread.sleep(CHANGE_STREAM_RETRY_MILLIS);
+                    } catch (InterruptedException interruptedException) {
+                        return;
+                    }
+                }
+            }
+        }, collectionName + "-change-stream");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Hit/miss metrics for this collection's cache, or null if caching is not enabled.
+     */
+    public EntityCache.Summary getCacheSummary() {
+        return cache != null ? cache.summarize() : null;
+    }
+
+    /**
+     * Create any indexes declared with {@link MongoIndex} on the model class that do not yet exist on the collection.
+     */
+    public void ensureIndexes() {
+        MongoIndex[] declaredIndexes = clazz.getAnnotationsByType(MongoIndex.class);
+        if (declaredIndexes.length == 0) return;
+        Set<String> existingIndexKeys = new HashSet<>();
+        for (Document index : mongoCollection.listIndexes()) {
+            existingIndexKeys.add(index.get("key", Document.class).toJson());
+        }
+        for (MongoIndex declaredIndex : declaredIndexes) {
+            Document keys = new Document();
+            for (String field : declaredIndex.value()) {
+                if (field.startsWith("-")) keys.append(field.substring(1), -1);
+                else keys.append(field, 1);
+            }
+            if (existingIndexKeys.contains(keys.toJson())) continue;
+            try {
+                mongoCollection.createIndex(keys);
+                LOG.info("Created index {} on {}", keys.toJson(), collectionName);
+            } catch (MongoException e) {
+                LOG.error("Could not create index {} on {}", keys.toJson(), collectionName, e);
+            }
+        }
+    }
+
+    /**
+     * Check with explain() whether the winning query plan for the provided filter and (optional) sort scans the whole
+     * collection rather than using an index.
+     */
+    public boolean usesCollectionScan(Bson filter, Bson sortBy) {
+        CodecRegistry codecRegistry = mongoCollection.getCodecRegistry();
+        Document findCommand = new Document("find", collectionName)
+            .append("filter", filter.toBsonDocument(clazz, codecRegistry));
+        if (sortBy != null) findCommand.append("sort", sortBy.toBsonDocument(clazz, codecRegistry));
+        Document explanation = mongoDatabase.runCommand(
+            new Document("explain", findCommand).append("verbosity", "queryPlanner")
+        );
+        Document queryPlanner = explanation.get("queryPlanner", Document.class);
+        return queryPlanner != null && containsStage(queryPlanner.get("winningPlan"), "COLLSCAN");
+    }
+
+    /**
+     * If {@link #explainQueries} is enabled, log a warning the first time a query shape falls back to a collection scan.
+     */
+    private void checkQueryPlan(Bson filter, Bson sortBy) {
+        if (!explainQueries || filter == null) return;
+        CodecRegistry codecRegistry = mongoCollection.getCodecRegistry();
+        String queryShape = getQueryShape(filter.toBsonDocument(clazz, codecRegistry));
+        if (sortBy != null) queryShape += " sort " + sortBy.toBsonDocument(clazz, codecRegistry).toJson();
+        // Only explain each query shape once.
+        if (!explainedQueryShapes.add(queryShape)) return;
+        try {
+            if (usesCollectionScan(filter, sortBy)) {
+                LOG.warn("Query on {} falls back to COLLSCAN: {}", collectionName, queryShape);
+            }
+        } catch (MongoException e) {
+            LOG.warn("Could not explain query on {}: {}", collectionName, queryShape, e);
+        }
+    }
+
+    /**
+     * Reduce a query to its shape, i.e., the structure of fields and operators with all values replaced by '?'.
+     */
+    private static String getQueryShape(BsonValue value) {
+        if (value.isDocument()) {
+            return value.asDocument().entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + getQueryShape(entry.getValue()))
+                .collect(Collectors.joining(", ", "{", "}"));
+        } else if (value.isArray()) {
+            return value.asArray().stream()
+                .map(TypedPersistence::getQueryShape)
+                .distinct()
+                .collect(Collectors.joining(", ", "[", "]"));
+        }
+        return "?";
+    }
+
+    /**
+     * Recursively search an explain() query plan for the given stage.
+     */
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Map) {
+            Map<?, ?> planStage = (Map<?, ?>) plan;
+            if (stage.equals(planStage.get("stage"))) return true;
+            return planStage.values().stream().anyMatch(value -> containsStage(value, stage));
+        } else if (plan instanceof List) {
+            return ((List<?>) plan).stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    private Codec<T> getCodec() {
+        return mongoCollection.getCodecRegistry().get(clazz);
+    }
+
+    private void invalidateCache(String id) {
+        if (cache != null) cache.invalidate(id);
+    }
+
     /**
      * Count the documents matching the provided filter.
      */
     public long count (Bson filter) {
+        checkQueryPlan(filter, null);
         return mongoCollection.countDocuments(filter);
     }
 
@@ -111,8 +310,17 @@ public class TypedPersistence<T extends Model> {
         mongoCollection.insertOne(newObject);
     }
 
+    /**
+     * Insert the objects with a single bulk write (e.g., when restoring a database dump).
+     */
+    public void createMany (List<T> newObjects) {
+        if (newObjects.isEmpty()) return;
+        mongoCollection.insertMany(newObjects);
+    }
+
     public void replace (String id, T replaceObject) {
         mongoCollection.replaceOne(eq(id), replaceObject);
+        invalidateCache(id);
     }
 
     /**
@@ -121,7 +329,13 @@ public class TypedPersistence<T extends Model> {
     public T update (String id, Document updateDocument) {
         // Set last updated.
         updateDocument.put("lastUpdated", new Date());
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedObject = mongoCollection.findOneAndUpdate(
+            eq(id),
+            new Document("$set", updateDocument),
+            findOneAndUpdateOptions
+        );
+        invalidateCache(id);
+        return updatedObject;
     }
 
     /**
@@ -141,17 +355,46 @@ public class TypedPersistence<T extends Model> {
     public T updateUser (String id, Auth0UserProfile profile) {
         String updateJson = String.format("{userId: %s, userEmail: %s}", profile.getUser_id(), profile.getEmail());
         Document updateDocument = Document.parse(updateJson);
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedObject = mongoCollection.findOneAndUpdate(
+            eq(id),
+            new Document("$set", updateDocument),
+            findOneAndUpdateOptions
+        );
+        invalidateCache(id);
+        return updatedObject;
+    }
+
+    /**
+     * Apply the update to the Mongo object referenced by ID.
+     */
+    public UpdateResult updateOne (String id, Bson update) {
+        UpdateResult result = mongoCollection.updateOne(eq(id), update);
+        invalidateCache(id);
+        return result;
     }
 
     public T getById (String id) {
-        return mongoCollection.find(eq(id)).first();
+        if (cache == null) return mongoCollection.find(eq(id)).first();
+        RawBsonDocument document = cache.get(
+            id,
+            key -> mongoCollection.withDocumentClass(RawBsonDocument.class).find(eq(key)).first()
+        );
+        return document != null ? document.decode(getCodec()) : null;
     }
 
     /**
-     * Get first matching object populating only the included fields.
+     * Get first matching object populating only the included fields (and the ID). If the object is cached and all of
+     * the included fields are top-level fields, the fields are copied from the cached object rather than queried.
      */
     public T getByIdLimitedFields (String id, String... includedFields) {
+        RawBsonDocument cachedDocument = cache != null ? cache.getIfPresent(id) : null;
+        if (cachedDocument != null && Arrays.stream(includedFields).noneMatch(field -> field.contains("."))) {
+            BsonDocument limitedDocument = new BsonDocument("_id", cachedDocument.get("_id"));
+            for (String field : includedFields) {
+                if (cachedDocument.containsKey(field)) limitedDocument.put(field, cachedDocument.get(field));
+            }
+            return getCodec().decode(limitedDocument.asBsonReader(), DecoderContext.builder().build());
+        }
         return mongoCollection
             .find(eq(id))
             .projection(fields(include(includedFields)))
@@ -159,8 +402,8 @@ public class TypedPersistence<T extends Model> {
     }
 
     /**
-     * This is not memory efficient.
-     * TODO: Always use iterators / streams, always perform selection of subsets on the Mongo server side ("where clause").
+     * This is not memory efficient. For collections that can grow without bound (e.g., feed versions) use
+     * {@link #streamAll()} or {@link #streamFiltered} instead.
      */
     public List<T> getAll () {
         return mongoCollection.find().into(new ArrayList<>());
@@ -188,6 +431,7 @@ public class TypedPersistence<T extends Model> {
      * Get all objects satisfying the supplied Mongo filter and sort by.
      */
     public List<T> getFiltered (Bson filter, Bson sortBy) {
+        checkQueryPlan(filter, sortBy);
         return (sortBy != null)
         ? mongoCollection.find(filter).sort(sortBy).into(new ArrayList<>())
         : mongoCollection.find(filter).into(new ArrayList<>());
@@ -197,6 +441,7 @@ public class TypedPersistence<T extends Model> {
      * Get all objects populating only the included fields satisfying the supplied Mongo filter and sort by.
      */
     public List<T> getFilteredLimitedFields(Bson filter, Bson sortBy, String... includedFields) {
+        checkQueryPlan(filter, sortBy);
         return mongoCollection
             .find(filter)
             .projection(fields(include(includedFields)))
@@ -204,6 +449,42 @@ public class TypedPersistence<T extends Model> {
             .into(new ArrayList<>());
     }
 
+    /**
+     * Stream all objects in the collection, fetching them from MongoDB in batches of {@link #DEFAULT_BATCH_SIZE}.
+     * The returned stream holds an open cursor, so it must be closed (e.g., with try-with-resources).
+     */
+    public Stream<T> streamAll () {
+        return streamFiltered(null, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Stream all objects satisfying the supplied Mongo filter. See {@link #streamFiltered(Bson, Bson, int, String...)}.
+     */
+    public Stream<T> streamFiltered (Bson filter) {
+        return streamFiltered(filter, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Stream objects satisfying the supplied Mongo filter (null matches all objects) and sort by (may be null). Unlike
+     * {@link #getFiltered}, only one batch of objects is held in memory at a time. If included fields are provided, only
+     * those fields are populated (i.e., the projection is performed server side).
+     *
+     * The returned stream holds an open cursor and must be closed, which is best done with try-with-resources.
+     * Short-circuiting operations (e.g., {@link Stream#anyMatch} or {@link Stream#limit}) stop fetching further batches,
+     * and closing the stream kills the cursor on the server.
+     */
+    public Stream<T> streamFiltered (Bson filter, Bson sortBy, int batchSize, String... includedFields) {
+        checkQueryPlan(filter, sortBy);
+        FindIterable<T> results = filter != null ? mongoCollection.find(filter) : mongoCollection.find();
+        results.batchSize(batchSize);
+        if (sortBy != null) results.sort(sortBy);
+        if (includedFields.length > 0) results.projection(fields(include(includedFields)));
+        MongoCursor<T> cursor = results.iterator();
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(cursor::close);
+    }
+
     /**
      * Expose the internal MongoCollection to the caller.
      * This ties our persistence directly to Mongo for now but is expedient.
@@ -220,6 +501,7 @@ public class TypedPersistence<T extends Model> {
      * We should really have a bit more abstraction here.
      */
     public T getOneFiltered (Bson filter, Bson sortBy) {
+        checkQueryPlan(filter, sortBy);
         if (sortBy != null)
             return mongoCollection.find(filter).sort(sortBy).first();
         else
@@ -233,6 +515,7 @@ public class TypedPersistence<T extends Model> {
 
     public boolean removeById (String id) {
         DeleteResult result = mongoCollection.deleteOne(eq(id));
+        invalidateCache(id);
         if (result.getDeletedCount() == 1) {
             LOG.info("Deleted object id={} type={}", id, collectionName);
             return true;
@@ -256,11 +539,15 @@ public class TypedPersistence<T extends Model> {
      * Apply update filter to documents that match query.
      */
     public UpdateResult updateMany(Bson query, Bson update) {
-        return mongoCollection.updateMany(query, update);
+        UpdateResult result = mongoCollection.updateMany(query, update);
+        // The IDs of the updated documents are not known, so clear the entire cache.
+        if (cache != null) cache.invalidateAll();
+        return result;
     }
 
     public boolean removeFiltered (Bson filter) {
         DeleteResult result = mongoCollection.deleteMany(filter);
+        if (cache != null) cache.invalidateAll();
         long count = result.getDeletedCount();
         if (count >= 1) {
             LOG.info("Deleted {} objects of type {}", count, collectionName);
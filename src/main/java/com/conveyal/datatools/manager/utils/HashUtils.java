@@ -10,6 +10,7 @@ import java.io.FileInputStream;
 import java.nio.ByteBuffer;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
 public class HashUtils {
@@ -50,4 +51,58 @@ public class HashUtils {
             return "";
         }
     }
+
+    /**
+     * Computes the same hash as {@link #hashFile} for a file of known length from the file's bytes as they are read in
+     * order (e.g., while the file is downloaded). {@link #hashFile} only samples the start and middle of large files, so
+     * the hash is known once {@link #isComplete} (well before the whole file has been read).
+     */
+    public static class SampledHash {
+        /** Bytes hashed from the start of a large file (the 8 byte buffer plus 1001 single byte reads). */
+        private static final int HEAD_LENGTH = 1009;
+        /** Bytes hashed from the middle of a large file (5001 single byte reads). */
+        private static final int MIDDLE_LENGTH = 5001;
+        private final MessageDigest md;
+        private final long headEnd;
+        private final long middleStart;
+        private final long end;
+        private long position;
+
+        public SampledHash(long length) throws NoSuchAlgorithmException {
+            md = MessageDigest.getInstance("MD5");
+            if (length > 10000) {
+                headEnd = HEAD_LENGTH;
+                middleStart = HEAD_LENGTH + length / 2;
+                end = Math.min(length, middleStart + MIDDLE_LENGTH);
+            } else {
+                // Small files are hashed in full.
+                headEnd = length;
+                middleStart = length;
+                end = length;
+            }
+        }
+
+        /** Update the hash with the next bytes of the file. */
+        public void update(byte[] bytes, int offset, int length) {
+            updateRange(bytes, offset, length, 0, headEnd);
+            updateRange(bytes, offset, length, middleStart, end);
+            position += length;
+        }
+
+        private void updateRange(byte[] bytes, int offset, int length, long rangeStart, long rangeEnd) {
+            long start = Math.max(position, rangeStart);
+            long stop = Math.min(position + length, rangeEnd);
+            if (start < stop) md.update(bytes, offset + (int) (start - position), (int) (stop - start));
+        }
+
+        /** Whether all of the bytes that determine the hash have been read. */
+        public boolean isComplete() {
+            return position >= end;
+        }
+
+        /** Get the hash (this should only be called once the hash {@link #isComplete}). */
+        public String getHash() {
+            return new String(Hex.encodeHex(md.digest()));
+        }
+    }
 }
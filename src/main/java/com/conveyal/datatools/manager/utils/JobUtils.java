@@ -1,55 +1,120 @@
 package com.conveyal.datatools.manager.utils;
 
+import com.conveyal.datatools.common.status.JobExecutor;
+import com.conveyal.datatools.common.status.JobRegistry;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.jobs.DeployJob;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.OtpServer;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.google.common.collect.Sets;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.mongodb.client.FindIterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigProperty;
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 
 public class JobUtils {
     private static final Logger LOG = LoggerFactory.getLogger(JobUtils.class);
 
     // Heavy executor should contain long-lived CPU-intensive tasks (e.g., feed loading/validation)
-    public static Executor heavyExecutor = Executors.newFixedThreadPool(4);
+    public static JobExecutor heavyExecutor = new JobExecutor(
+        "heavy-executor",
+        Integer.parseInt(getConfigPropertyAsText("HEAVY_EXECUTOR_THREADS", "4")),
+        Integer.parseInt(getConfigPropertyAsText("BULK_JOB_QUEUE_CAPACITY", "100")),
+        getMaxConcurrentJobsByType()
+    );
 
     // light executor is for tasks for things that should finish quickly (e.g., email notifications)
-    public static Executor lightExecutor = Executors.newSingleThreadExecutor();
+    public static JobExecutor lightExecutor = new JobExecutor(
+        "light-executor",
+        Integer.parseInt(getConfigPropertyAsText("LIGHT_EXECUTOR_THREADS", "1")),
+        Integer.parseInt(getConfigPropertyAsText("BULK_JOB_QUEUE_CAPACITY", "100")),
+        new EnumMap<>(JobType.class)
+    );
+
+    // MobilityData validation executor runs validations started by feed processing jobs (which run on the heavy executor
+    // and wait for the result), so it must be separate from the heavy executor to avoid starving those jobs.
+    public static JobExecutor mobilityValidationExecutor = new JobExecutor(
+        "mobility-validation-executor",
+        Integer.parseInt(getConfigPropertyAsText("MOBILITY_VALIDATION_THREADS", "2")),
+        Integer.parseInt(getConfigPropertyAsText("BULK_JOB_QUEUE_CAPACITY", "100")),
+        new EnumMap<>(JobType.class)
+    );
+
+    // Fetch executor runs the downloads for project-wide fetches (which are mostly waiting on the network), so that
+    // downloads are not held up by feed processing on the heavy executor (and vice versa).
+    public static JobExecutor fetchExecutor = new JobExecutor(
+        "fetch-executor",
+        Integer.parseInt(getConfigPropertyAsText("FEED_FETCH_THREADS", "8")),
+        Integer.parseInt(getConfigPropertyAsText("BULK_JOB_QUEUE_CAPACITY", "100")),
+        new EnumMap<>(JobType.class)
+    );
 
     /**
-     * Stores jobs underway by user ID. NOTE: any set created and stored here must be created with
-     * {@link Sets#newConcurrentHashSet()} or similar thread-safe Set.
+     * Tracks all jobs by job ID, owner, type and feed source. Finished jobs are retained until their owner fetches them
+     * via the status API or until they are evicted after JOB_RETENTION_MINUTES (or once more than JOB_HISTORY_CAPACITY
+     * finished jobs are retained).
      */
-    public static Map<String, Set<MonitorableJob>> userJobsMap = new ConcurrentHashMap<>();
+    public static final JobRegistry jobRegistry = new JobRegistry(
+        Long.parseLong(getConfigPropertyAsText("JOB_RETENTION_MINUTES", "60")),
+        Integer.parseInt(getConfigPropertyAsText("JOB_HISTORY_CAPACITY", "1000"))
+    );
 
     private static final Map<String, DeployJob> deploymentJobsByServer = new HashMap<>();
 
+    /**
+     * Read the maximum number of jobs of each type that may run at once on the heavy executor from the
+     * MAX_CONCURRENT_JOBS config property (e.g., {@code MAX_CONCURRENT_JOBS: {PROCESS_FEED: 2}}).
+     */
+    private static Map<JobType, Integer> getMaxConcurrentJobsByType() {
+        Map<JobType, Integer> maxConcurrentJobsByType = new EnumMap<>(JobType.class);
+        JsonNode limits = getConfigProperty("MAX_CONCURRENT_JOBS");
+        if (limits == null) return maxConcurrentJobsByType;
+        Iterator<Map.Entry<String, JsonNode>> fields = limits.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> limit = fields.next();
+            try {
+                maxConcurrentJobsByType.put(JobType.valueOf(limit.getKey()), limit.getValue().asInt());
+            } catch (IllegalArgumentException e) {
+                LOG.error("Unknown job type {} in MAX_CONCURRENT_JOBS config", limit.getKey());
+            }
+        }
+        return maxConcurrentJobsByType;
+    }
+
+    /**
+     * Queue depths, running jobs and wait times for each executor.
+     */
+    public static List<JobExecutor.Summary> getExecutorSummaries() {
+        return Arrays.asList(
+            heavyExecutor.summarize(),
+            lightExecutor.summarize(),
+            mobilityValidationExecutor.summarize(),
+            fetchExecutor.summarize()
+        );
+    }
+
     public static Set<MonitorableJob> getAllJobs() {
-        return userJobsMap.values().stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        return jobRegistry.getAllJobs();
     }
 
     /** Shorthand method for getting a single job by job ID. */
     public static MonitorableJob getJobByJobId(String jobId) {
-        for (MonitorableJob job : getAllJobs()) {
-            if (job.jobId.equals(jobId)) return job;
-        }
-        return null;
+        return jobRegistry.getJob(jobId);
     }
 
     /**
@@ -57,22 +122,14 @@ public class JobUtils {
      * @param clearCompleted if true, remove requested job if it has completed or errored
      */
     public static MonitorableJob getJobById(String userId, String jobId, boolean clearCompleted) {
-        // Get jobs set directly from userJobsMap because we may remove an element from it below.
-        Set<MonitorableJob> userJobs = userJobsMap.get(userId);
-        if (userJobs == null) {
-            return null;
-        }
-        for (MonitorableJob job : userJobs) {
-            if (job.jobId.equals(jobId)) {
-                if (clearCompleted && (job.status.completed || job.status.error)) {
-                    // remove job if completed or errored
-                    userJobs.remove(job);
-                }
-                return job;
-            }
+        MonitorableJob job = jobRegistry.getJob(jobId);
+        // Job is not found (because it doesn't exist or was completed) or belongs to another user.
+        if (job == null || !job.retrieveUserId().equals(userId)) return null;
+        if (clearCompleted && (job.status.completed || job.status.error)) {
+            // remove job if completed or errored
+            jobRegistry.remove(job);
         }
-        // if job is not found (because it doesn't exist or was completed).
-        return null;
+        return job;
     }
 
     /**
@@ -81,58 +138,69 @@ public class JobUtils {
     public static Set<MonitorableJob> getJobsForUser(Auth0UserProfile user) {
         if (user == null) {
             LOG.warn("Null user passed to getJobsForUser!");
-            return Sets.newConcurrentHashSet();
+            return Collections.emptySet();
         }
         return getJobsByUserId(user.getUser_id(), false);
     }
 
     /**
-     * Get set of active jobs by user ID. If there are no active jobs, return a new set.
-     *
-     * NOTE: this should be a concurrent hash set so that it is threadsafe.
+     * Get set of jobs by user ID. If there are no jobs, return an empty set.
      *
      * @param clearCompleted if true, remove all completed and errored jobs for this user.
      */
     public static Set<MonitorableJob> getJobsByUserId(String userId, boolean clearCompleted) {
-        Set<MonitorableJob> allJobsForUser = userJobsMap.get(userId);
-        if (allJobsForUser == null) {
-            return Sets.newConcurrentHashSet();
-        }
+        Set<MonitorableJob> allJobsForUser = jobRegistry.getJobsForOwner(userId);
         if (clearCompleted) {
             // Any staged jobs will still have their status updated, so they need to be retrieved again with any status
             // updates. All completed or errored jobs are in their final state and will not be updated any longer, so we
             // remove them once the client has seen them.
-            userJobsMap.put(userId, filterStagedAndActiveJobs(allJobsForUser));
+            jobRegistry.removeFinishedJobsForOwner(userId);
         }
         return allJobsForUser;
     }
 
     /**
-     * Filter all jobs based on the active state. A job is only active once running. Note: this excludes "staged" jobs,
-     * i.e., those which have not yet started.
+     * Get all jobs that are currently running. Note: this excludes "staged" jobs, i.e., those which have not yet
+     * started.
      */
     public static Set<MonitorableJob> getAllActiveJobs() {
-        return filterJobs(getAllJobs(), job -> job.active);
+        return jobRegistry.getActiveJobs();
     }
 
     /**
-     * Filter the input set of jobs with the provided filter.
+     * Get all running jobs that act on the feed source.
      */
-    private static Set<MonitorableJob> filterJobs(Set<MonitorableJob> jobs, Predicate<MonitorableJob> filter) {
-        // Note: this must be a thread-safe set in case it is placed into the DataManager#userJobsMap.
-        Set<MonitorableJob> filteredJobs = Sets.newConcurrentHashSet();
-        jobs.stream()
-            .filter(filter)
-            .forEach(filteredJobs::add);
-        return filteredJobs;
+    public static Set<MonitorableJob> getActiveJobsForFeedSource(String feedSourceId) {
+        return jobRegistry.getActiveJobsForFeedSource(feedSourceId);
     }
 
     /**
-     * Filter jobs based on status. Once a job has been created the status values are available for review. A staged job
-     * may or may not be active.
+     * Cancel the job. A queued job is removed from its executor, failed and cleaned up (see
+     * {@link MonitorableJob#jobFinished()}) straight away. A running job (and any of its sub-jobs) stops at its next
+     * cancellation check, after which its status is updated by the thread running it.
      */
-    public static Set<MonitorableJob> filterStagedAndActiveJobs(Set<MonitorableJob> jobs) {
-        return filterJobs(jobs, job -> !job.status.completed && !job.status.error);
+    public static void cancelJob(MonitorableJob job) {
+        job.requestCancellation();
+        if (
+            heavyExecutor.remove(job) ||
+            lightExecutor.remove(job) ||
+            mobilityValidationExecutor.remove(job) ||
+            fetchExecutor.remove(job)
+        ) {
+            LOG.info("Removed queued job {} (jobId={})", job.name, job.jobId);
+            List<MonitorableJob> jobs = new ArrayList<>(job.getSubJobs());
+            jobs.add(job);
+            for (MonitorableJob cancelledJob : jobs) {
+                cancelledJob.status.fail("Job cancelled before it started.");
+                jobRegistry.markFinished(cancelledJob);
+            }
+            // Give the job a chance to clean up (e.g., delete a stored checkpoint), as for jobs cancelled while running.
+            try {
+                job.jobFinished();
+            } catch (Exception e) {
+                LOG.error("Error cleaning up cancelled job {}", job.jobId, e);
+            }
+        }
     }
 
     /**
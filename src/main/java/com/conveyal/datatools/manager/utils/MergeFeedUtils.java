@@ -23,8 +23,10 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -63,6 +65,31 @@ public class MergeFeedUtils {
         return ids;
     }
 
+    /**
+     * Get the service_id for each trip_id in the zipfile's trips table, read in a single pass (rather than looking up
+     * each trip in the database). If a trip_id is repeated, the first service_id found is kept.
+     */
+    public static Map<String, String> getServiceIdsForTrips(ZipFile zipFile) throws IOException {
+        Map<String, String> serviceIdsForTrips = new HashMap<>();
+        Table table = Table.TRIPS;
+        CsvReader csvReader = table.getCsvReader(zipFile, null);
+        if (csvReader == null) {
+            LOG.warn("Table {} not found in zip file: {}", table.name, zipFile.getName());
+            return serviceIdsForTrips;
+        }
+        try {
+            Field[] fieldsFoundInZip = table.getFieldsFromFieldHeaders(csvReader.getHeaders(), null);
+            int tripIdIndex = getFieldIndex(fieldsFoundInZip, table.getKeyFieldName());
+            int serviceIdIndex = getFieldIndex(fieldsFoundInZip, "service_id");
+            while (csvReader.readRecord()) {
+                serviceIdsForTrips.putIfAbsent(csvReader.get(tripIdIndex), csvReader.get(serviceIdIndex));
+            }
+        } finally {
+            csvReader.close();
+        }
+        return serviceIdsForTrips;
+    }
+
     /**
      * Construct stop_code failure message for {@link com.conveyal.datatools.manager.jobs.MergeFeedsJob} in the case of
      * incomplete stop_code values for all records.
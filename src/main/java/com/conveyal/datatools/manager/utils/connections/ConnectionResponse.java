@@ -1,12 +1,13 @@
 package com.conveyal.datatools.manager.utils.connections;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
  * An interface for getting HTTP connection response data.
  */
-public interface ConnectionResponse {
+public interface ConnectionResponse extends Closeable {
     int getResponseCode() throws IOException;
 
     String getResponseMessage() throws IOException;
@@ -16,4 +17,17 @@ public interface ConnectionResponse {
     InputStream getInputStream() throws IOException;
 
     Long getLastModified();
+
+    /** The ETag header (or null if the server did not provide one). */
+    default String getETag() {
+        return null;
+    }
+
+    /** The Content-Length header (or null if the length of the response body is unknown). */
+    default Long getContentLength() {
+        return null;
+    }
+
+    /** Release the connection (this may be called more than once). */
+    default void close() {}
 }
@@ -0,0 +1,80 @@
+package com.conveyal.datatools.manager.utils.connections;
+
+import com.conveyal.datatools.manager.utils.HashUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Wraps the input stream for a GTFS file of known length (e.g., a fetch response body) and hashes the file as it is
+ * read. If the hash matches the hash of the file to compare against, reading fails with a
+ * {@link DuplicateFileException} as soon as the sampled bytes that determine the hash (see {@link HashUtils#hashFile})
+ * have been read, so that the rest of a duplicate file need not be downloaded.
+ */
+public class DuplicateCheckingInputStream extends FilterInputStream {
+    private final HashUtils.SampledHash sampledHash;
+    private final String hashToMatch;
+    private boolean checked;
+
+    public DuplicateCheckingInputStream(InputStream in, long length, String hashToMatch) throws IOException {
+        super(in);
+        try {
+            this.sampledHash = new HashUtils.SampledHash(length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        this.hashToMatch = hashToMatch;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) update(new byte[] {(byte) b}, 0, 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead = super.read(b, off, len);
+        if (bytesRead > 0) update(b, off, bytesRead);
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes must still be hashed, so read them instead.
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int bytesRead = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (bytesRead == -1) break;
+            skipped += bytesRead;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void update(byte[] b, int off, int len) throws DuplicateFileException {
+        if (checked) return;
+        sampledHash.update(b, off, len);
+        if (sampledHash.isComplete()) {
+            checked = true;
+            if (sampledHash.getHash().equals(hashToMatch)) throw new DuplicateFileException();
+        }
+    }
+
+    /**
+     * Thrown while reading once the file is known to have the hash to match.
+     */
+    public static class DuplicateFileException extends IOException {
+        DuplicateFileException() {
+            super("File has the same hash as the file compared against.");
+        }
+    }
+}
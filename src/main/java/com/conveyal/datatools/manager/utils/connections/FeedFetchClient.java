@@ -0,0 +1,88 @@
+package com.conveyal.datatools.manager.utils.connections;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
+
+/**
+ * Sends the requests for fetching feeds. A single HTTP client is shared by all fetches so that connections are pooled
+ * and reused (and HTTP/2 is used where servers support it). The number of fetches from any one host at once is limited
+ * so that a project-wide fetch running many fetches concurrently does not overwhelm an agency's server.
+ */
+public class FeedFetchClient {
+    private static final int CONNECT_TIMEOUT_SECONDS =
+        Integer.parseInt(getConfigPropertyAsText("FEED_FETCH_CONNECT_TIMEOUT_SECONDS", "30"));
+    /** Maximum time to wait for the response headers once connected. */
+    private static final int RESPONSE_TIMEOUT_SECONDS =
+        Integer.parseInt(getConfigPropertyAsText("FEED_FETCH_RESPONSE_TIMEOUT_SECONDS", "120"));
+    private static final int MAX_FETCHES_PER_HOST =
+        Integer.parseInt(getConfigPropertyAsText("FEED_FETCH_MAX_PER_HOST", "2"));
+    // Set user agent request header in order to avoid 403 Forbidden response from some servers.
+    // https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
+    private static final String USER_AGENT =
+        "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11";
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+        // Redirects to a less secure protocol (https to http) are not followed and are handled by the caller.
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+    private static final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+    /**
+     * Request the URL, blocking until a fetch permit for the URL's host is available. If a last modified time or ETag
+     * from a previous fetch is provided, the request is conditional (i.e., the server may respond with 304 Not
+     * Modified). The permit is held until the returned response is closed, so the caller must close it.
+     */
+    public static ConnectionResponse get(URL url, Long ifModifiedSince, String eTag) throws IOException {
+        Semaphore permits = permitsByHost.computeIfAbsent(
+            url.getHost().toLowerCase(Locale.ROOT),
+            host -> new Semaphore(MAX_FETCHES_PER_HOST, true)
+        );
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to fetch from " + url.getHost());
+        }
+        boolean sent = false;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(url.toURI())
+                .timeout(Duration.ofSeconds(RESPONSE_TIMEOUT_SECONDS))
+                .header("User-Agent", USER_AGENT)
+                .GET();
+            if (ifModifiedSince != null) {
+                request.header(
+                    "If-Modified-Since",
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(ifModifiedSince).atZone(ZoneOffset.UTC))
+                );
+            }
+            if (eTag != null) request.header("If-None-Match", eTag);
+            HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            sent = true;
+            return new HttpClientResponse(response, permits::release);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid fetch URL %s", url), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching from " + url);
+        } finally {
+            if (!sent) permits.release();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.conveyal.datatools.manager.utils.connections;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds a {@link ConnectionResponse} instance sent to FeedSource from a {@link HttpResponse} returned by
+ * {@link FeedFetchClient}. Closing the response releases the host's fetch permit.
+ */
+public class HttpClientResponse implements ConnectionResponse {
+    private final HttpResponse<InputStream> response;
+    private final Runnable releasePermit;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    HttpClientResponse(HttpResponse<InputStream> response, Runnable releasePermit) {
+        this.response = response;
+        this.releasePermit = releasePermit;
+    }
+
+    public int getResponseCode() {
+        return response.statusCode();
+    }
+
+    public InputStream getInputStream() {
+        return response.body();
+    }
+
+    /**
+     * HTTP/2 responses have no reason phrase, so describe the response instead.
+     */
+    public String getResponseMessage() {
+        return String.format("%s response from %s", response.version(), response.uri().getHost());
+    }
+
+    public String getRedirectUrl() {
+        // The location may be relative to the request URL.
+        return response.headers().firstValue("Location")
+            .map(location -> response.uri().resolve(location).toString())
+            .orElse(null);
+    }
+
+    /**
+     * Get the Last-Modified header in milliseconds since the epoch (or 0 if the header is missing or invalid, matching
+     * {@link java.net.URLConnection#getLastModified}).
+     */
+    public Long getLastModified() {
+        return response.headers().firstValue("Last-Modified")
+            .map(lastModified -> {
+                try {
+                    return ZonedDateTime.parse(lastModified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    return 0L;
+                }
+            })
+            .orElse(0L);
+    }
+
+    @Override
+    public String getETag() {
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+
+    @Override
+    public Long getContentLength() {
+        try {
+            long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            return contentLength >= 0 ? contentLength : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            // Closing the body before it has been read in full abandons the rest of the download.
+            response.body().close();
+        } catch (IOException e) {
+            // The connection is discarded either way.
+        } finally {
+            releasePermit.run();
+        }
+    }
+}
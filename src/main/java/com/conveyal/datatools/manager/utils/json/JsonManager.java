@@ -2,6 +2,8 @@ package com.conveyal.datatools.manager.utils.json;
 
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -19,6 +21,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -61,7 +64,8 @@ public class JsonManager<T> {
 //        om.registerModule(new JavaTimeModule());
         SimpleFilterProvider filters = new SimpleFilterProvider();
         filters.addFilter("bbox", SimpleBeanPropertyFilter.filterOutAllExcept("west", "east", "south", "north"));
-        this.ow = om.writer(filters).withView(view);
+        // Objects written to a generator are flushed when the generator is (not after each object).
+        this.ow = om.writer(filters).withView(view).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     private Class<T> theClass;
@@ -100,6 +104,30 @@ public class JsonManager<T> {
         return ow.writeValueAsString(map);
     }
 
+    /**
+     * Create a JSON generator that writes to the provided output stream, for use with {@link #write(JsonGenerator, Object)}
+     * when a response is too large to build as a single string.
+     */
+    public JsonGenerator createGenerator (OutputStream outputStream) throws IOException {
+        return ow.getFactory().createGenerator(outputStream);
+    }
+
+    /**
+     * Write an object's JSON representation (using this manager's view) to the provided generator. The generator is
+     * not closed so that further values can be written to it.
+     */
+    public void write (JsonGenerator generator, Object o) throws IOException {
+        ow.writeValue(generator, o);
+    }
+
+    /**
+     * Create a JSON parser that reads from the provided input stream, for use with {@link #read(JsonParser, Class)}
+     * when a request is too large to read as a single string.
+     */
+    public JsonParser createParser (InputStream inputStream) throws IOException {
+        return om.getFactory().createParser(inputStream);
+    }
+
     public T read (String s) throws JsonParseException, JsonMappingException, IOException {
         return om.readValue(s, theClass);
     }
@@ -108,6 +136,13 @@ public class JsonManager<T> {
         return om.readValue(p, theClass);
     }
 
+    /**
+     * Read the next value from the provided parser as an object of the given class (rather than this manager's class).
+     */
+    public <V> V read (JsonParser p, Class<V> valueClass) throws IOException {
+        return om.readValue(p, valueClass);
+    }
+
     public T read(JsonNode asJson) {
         return om.convertValue(asJson, theClass);
     }
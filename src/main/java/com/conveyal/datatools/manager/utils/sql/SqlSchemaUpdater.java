@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.utils.sql;
 
+import com.conveyal.datatools.editor.utils.CopyOnWriteSnapshots;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Snapshot;
@@ -182,6 +183,11 @@ public class SqlSchemaUpdater implements AutoCloseable {
             }
 
             for (TableCheck tableCheck : ns.checkedTables) {
+                if (!tableCheck.missingColumns.isEmpty() || !tableCheck.columnsWithWrongType.isEmpty()) {
+                    // Views cannot be altered (and columns used by views cannot change type), so copy any table
+                    // shared with an editor snapshot first.
+                    CopyOnWriteSnapshots.prepareTableForWrite(connection, namespace, tableCheck.table.name);
+                }
                 // Fix column issues for a table, if any.
                 if (!tableCheck.missingColumns.isEmpty()) {
                     try (Statement alterStatement = connection.createStatement()) {
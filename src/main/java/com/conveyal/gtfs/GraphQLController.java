@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.GraphQL;
 import graphql.introspection.IntrospectionQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,34 +14,49 @@ import spark.Response;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
 import static spark.Spark.get;
 import static spark.Spark.post;
 
 /**
  * This Spark Controller contains methods to provide HTTP responses to GraphQL queries, including a query for the
  * GraphQL schema.
+ *
+ * Queries may also be sent as persisted queries following Apollo's automatic persisted query protocol: the client
+ * sends the SHA-256 hash of the query in extensions.persistedQuery.sha256Hash in place of the query text and, if the
+ * hash is not yet known, receives a PersistedQueryNotFound error and sends the query again along with its hash.
  */
 public class GraphQLController {
     private static final Logger LOG = LoggerFactory.getLogger(GraphQLController.class);
     private static final ObjectMapper mapper = new ObjectMapper();
+    /** Parsed and validated documents and persisted queries (see {@link GraphQLQueryCache}). */
+    private static final GraphQLQueryCache queryCache = new GraphQLQueryCache(
+        Long.parseLong(getConfigPropertyAsText("GRAPHQL_QUERY_CACHE_MAX_SIZE", "500"))
+    );
+    /** The GTFS GraphQL instance, which looks up previously parsed and validated queries in the query cache. */
+    private static GraphQL graphQL;
 
     /**
      * A Spark Controller that responds to a GraphQL query in HTTP GET query parameters.
      */
     public static Map<String, Object> getGraphQL (Request request, Response response) {
         JsonNode varsJson = null;
+        JsonNode extensionsJson = null;
         try {
             varsJson = mapper.readTree(request.queryParams("variables"));
+            String extensions = request.queryParams("extensions");
+            if (extensions != null) extensionsJson = mapper.readTree(extensions);
         } catch (IOException e) {
             LOG.warn("Error processing variables", e);
             logMessageAndHalt(request, 400, "Malformed JSON");
         }
         String queryJson = request.queryParams("query");
-        return doQuery(varsJson, queryJson, response);
+        return doQuery(varsJson, queryJson, extensionsJson, request);
     }
 
     /**
@@ -55,18 +71,40 @@ public class GraphQLController {
             logMessageAndHalt(req, 400, "Malformed JSON");
         }
         JsonNode vars = node.get("variables");
-        String query = node.get("query").asText();
-        return doQuery(vars, query, response);
+        String query = node.hasNonNull("query") ? node.get("query").asText() : null;
+        return doQuery(vars, query, node.get("extensions"), req);
     }
 
     /**
      * Execute a GraphQL query and return result that fully complies with the GraphQL specification.
      */
-    private static Map<String, Object> doQuery (JsonNode varsJson, String queryJson, Response response) {
+    private static Map<String, Object> doQuery (
+        JsonNode varsJson,
+        String queryJson,
+        JsonNode extensionsJson,
+        Request request
+    ) {
         long startTime = System.currentTimeMillis();
+        JsonNode persistedQuery = extensionsJson != null ? extensionsJson.get("persistedQuery") : null;
+        if (persistedQuery != null && persistedQuery.hasNonNull("sha256Hash")) {
+            String hash = persistedQuery.get("sha256Hash").asText().toLowerCase();
+            if (queryJson == null) {
+                queryJson = queryCache.getPersistedQuery(hash);
+                // Ask the client to send the query text along with the hash so that the query can be persisted.
+                if (queryJson == null) return persistedQueryNotFound();
+            } else {
+                if (!hash.equals(GraphQLQueryCache.hash(queryJson))) {
+                    logMessageAndHalt(request, 400, "Persisted query hash does not match query");
+                }
+                queryCache.persistQuery(hash, queryJson);
+            }
+        }
         if (varsJson == null && queryJson == null) {
             return getSchema(null, null);
         }
+        if (queryJson == null) {
+            logMessageAndHalt(request, 400, "Query must be provided");
+        }
         // The graphiql app sends over this unparseable string while doing an introspection query.  Therefore this code
         // checks for it and sends an empty map in that case.
         Map<String, Object> variables = varsJson == null || varsJson.toString().equals("\"{}\"")
@@ -76,18 +114,27 @@ public class GraphQLController {
                 .query(queryJson)
                 .variables(variables)
                 .build();
-        ExecutionResult result = GTFSGraphQL.getGraphQl().execute(executionInput);
+        ExecutionResult result = graphQL.execute(executionInput);
         long endTime = System.currentTimeMillis();
         LOG.info("Query took {} msec", endTime - startTime);
         return result.toSpecification();
     }
 
+    /**
+     * @return the error that tells clients using automatic persisted queries to retry with the full query text.
+     */
+    private static Map<String, Object> persistedQueryNotFound() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("message", "PersistedQueryNotFound");
+        error.put("extensions", Collections.singletonMap("code", "PERSISTED_QUERY_NOT_FOUND"));
+        return Collections.singletonMap("errors", Collections.singletonList(error));
+    }
 
     /**
      * A Spark Controller that returns the GraphQL schema.
      */
     static Map<String, Object> getSchema(Request req, Response res) {
-        return GTFSGraphQL.getGraphQl().execute(IntrospectionQuery.INTROSPECTION_QUERY).toSpecification();
+        return graphQL.execute(IntrospectionQuery.INTROSPECTION_QUERY).toSpecification();
     }
 
 
@@ -100,6 +147,7 @@ public class GraphQLController {
             throw new RuntimeException("Cannot initialize GraphQL endpoints. Data source must not be null.");
         }
         GTFSGraphQL.initialize(dataSource);
+        graphQL = GTFSGraphQL.getGraphQl().transform(builder -> builder.preparsedDocumentProvider(queryCache));
         get(apiPrefix + "graphql", GraphQLController::getGraphQL, mapper::writeValueAsString);
         post(apiPrefix + "graphql", GraphQLController::postGraphQL, mapper::writeValueAsString);
         get(apiPrefix + "graphql/schema", GraphQLController::getSchema, mapper::writeValueAsString);
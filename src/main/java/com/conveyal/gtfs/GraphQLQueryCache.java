@@ -0,0 +1,60 @@
+package com.conveyal.gtfs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of GraphQL queries keyed on their SHA-256 hash, used by {@link GraphQLController}. This holds:
+ *
+ * 1. the parsed and validated document for each query, so that repeated queries skip parsing and validation (the
+ *    result of validating a query only depends on the schema, which does not change once the server is running), and
+ * 2. the text of persisted queries, so that clients can send the hash of a query they have sent before in place of
+ *    the full query text (see https://github.com/apollographql/apollo-link-persisted-queries#protocol).
+ */
+class GraphQLQueryCache implements PreparsedDocumentProvider {
+    private final Cache<String, PreparsedDocumentEntry> documents;
+    private final Cache<String, String> persistedQueries;
+
+    GraphQLQueryCache(long maximumSize) {
+        documents = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        persistedQueries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Get the parsed and validated document for the query, or parse and validate the query with the provided function
+     * on a cache miss. Queries that fail to parse or validate are cached too, along with their errors.
+     */
+    @Override
+    public PreparsedDocumentEntry get(String query, Function<String, PreparsedDocumentEntry> compute) {
+        try {
+            return documents.get(hash(query), () -> compute.apply(query));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // Rethrow the exception thrown while parsing or validating the query.
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Get the text of a persisted query, or null if no query has been persisted with the hash. */
+    String getPersistedQuery(String hash) {
+        return persistedQueries.getIfPresent(hash);
+    }
+
+    /** Persist a query so that later requests can refer to it by its hash. */
+    void persistQuery(String hash, String query) {
+        persistedQueries.put(hash, query);
+    }
+
+    /** @return the SHA-256 hash of the query as a lower case hex string. */
+    static String hash(String query) {
+        return Hashing.sha256().hashString(query, StandardCharsets.UTF_8).toString();
+    }
+}
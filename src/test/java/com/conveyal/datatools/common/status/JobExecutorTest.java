@@ -0,0 +1,120 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.common.status.MonitorableJob.JobPriority;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the ordering and limits applied by {@link JobExecutor}.
+ */
+public class JobExecutorTest extends UnitTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        DatatoolsTest.setUp();
+    }
+
+    @Test
+    public void shouldStartQueuedJobsInPriorityOrder() throws InterruptedException {
+        JobExecutor executor = new JobExecutor("test-priority", 1, 10, Collections.emptyMap());
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> completedJobs = new CopyOnWriteArrayList<>();
+        // Occupy the only thread so that the jobs below are queued.
+        executor.execute(new TestJob("blocker", JobType.SYSTEM_JOB, JobPriority.INTERACTIVE, release, completedJobs));
+        // Queued jobs do not need to wait once they start.
+        CountDownLatch noWait = new CountDownLatch(0);
+        executor.execute(new TestJob("bulk", JobType.SYSTEM_JOB, JobPriority.BULK, noWait, completedJobs));
+        executor.execute(new TestJob("scheduled", JobType.SYSTEM_JOB, JobPriority.SCHEDULED, noWait, completedJobs));
+        executor.execute(new TestJob("interactive", JobType.SYSTEM_JOB, JobPriority.INTERACTIVE, noWait, completedJobs));
+        assertEquals(1, executor.summarize().queues.get(JobPriority.BULK).queuedJobs);
+        release.countDown();
+        assertTrue(waitForCompletion(completedJobs, 4), "All jobs should complete.");
+        assertEquals(Arrays.asList("blocker", "interactive", "scheduled", "bulk"), completedJobs);
+    }
+
+    @Test
+    public void shouldLimitConcurrentJobsByType() throws InterruptedException {
+        Map<JobType, Integer> limits = new EnumMap<>(JobType.class);
+        limits.put(JobType.VALIDATE_FEED, 1);
+        JobExecutor executor = new JobExecutor("test-limits", 2, 10, limits);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> completedJobs = new CopyOnWriteArrayList<>();
+        executor.execute(new TestJob("first", JobType.VALIDATE_FEED, JobPriority.INTERACTIVE, release, completedJobs));
+        executor.execute(new TestJob("second", JobType.VALIDATE_FEED, JobPriority.INTERACTIVE, release, completedJobs));
+        JobExecutor.Summary summary = executor.summarize();
+        assertEquals(1, summary.runningJobs, "Only one job of a limited type should run at once.");
+        assertEquals(1, summary.queues.get(JobPriority.INTERACTIVE).queuedJobs);
+        release.countDown();
+        assertTrue(waitForCompletion(completedJobs, 2), "Queued job should run once the first job completes.");
+    }
+
+    @Test
+    public void shouldStopCancelledJobs() throws InterruptedException {
+        JobExecutor executor = new JobExecutor("test-cancel", 1, 10, Collections.emptyMap());
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> completedJobs = new CopyOnWriteArrayList<>();
+        TestJob running = new TestJob("running", JobType.SYSTEM_JOB, JobPriority.INTERACTIVE, release, completedJobs);
+        TestJob queued = new TestJob("queued", JobType.SYSTEM_JOB, JobPriority.INTERACTIVE, release, completedJobs);
+        executor.execute(running);
+        executor.execute(queued);
+        // A queued job can be removed before it starts.
+        assertTrue(executor.remove(queued));
+        assertFalse(executor.remove(queued), "Job should only be removed once.");
+        // A running job stops at its next cancellation check.
+        running.requestCancellation();
+        release.countDown();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!running.status.completed && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(running.status.error, "Cancelled job should fail.");
+        assertTrue(completedJobs.isEmpty(), "Cancelled job should not run to completion.");
+    }
+
+    private static boolean waitForCompletion(List<String> completedJobs, int expectedJobs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (completedJobs.size() < expectedJobs && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return completedJobs.size() == expectedJobs;
+    }
+
+    /**
+     * Job that waits on a latch and then records its name as completed.
+     */
+    private static class TestJob extends MonitorableJob {
+        private final CountDownLatch latch;
+        private final List<String> completedJobs;
+
+        TestJob(String name, JobType type, JobPriority priority, CountDownLatch latch, List<String> completedJobs) {
+            super(user, name, type);
+            this.priority = priority;
+            this.latch = latch;
+            this.completedJobs = completedJobs;
+        }
+
+        @Override
+        public void jobLogic() throws Exception {
+            latch.await();
+            status.checkCancelled();
+            completedJobs.add(name);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.utils.JobUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the indexes and eviction of {@link JobRegistry}.
+ */
+public class JobRegistryTest extends UnitTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        DatatoolsTest.setUp();
+    }
+
+    @Test
+    public void shouldIndexRunningJobsByFeedSource() {
+        JobRegistry registry = new JobRegistry(60, 10);
+        TestFeedSourceJob job = new TestFeedSourceJob("feed-source-id");
+        registry.register(job);
+        assertSame(job, registry.getJob(job.jobId));
+        assertTrue(registry.getJobsForOwner(user.getUser_id()).contains(job));
+        assertTrue(registry.getActiveJobsForFeedSource("feed-source-id").isEmpty(), "Staged job is not active.");
+        registry.markStarted(job);
+        assertTrue(registry.getActiveJobsForFeedSource("feed-source-id").contains(job));
+        registry.markFinished(job);
+        assertTrue(registry.getActiveJobsForFeedSource("feed-source-id").isEmpty(), "Finished job is not active.");
+        assertSame(job, registry.getJob(job.jobId), "Finished job should be retained until evicted.");
+    }
+
+    @Test
+    public void shouldEvictFinishedJobsBeyondHistoryCapacity() {
+        JobRegistry registry = new JobRegistry(60, 1);
+        TestFeedSourceJob firstJob = new TestFeedSourceJob("first");
+        TestFeedSourceJob secondJob = new TestFeedSourceJob("second");
+        registry.register(firstJob);
+        registry.register(secondJob);
+        registry.markFinished(firstJob);
+        registry.markFinished(secondJob);
+        assertNull(registry.getJob(firstJob.jobId), "Oldest finished job should be evicted.");
+        assertSame(secondJob, registry.getJob(secondJob.jobId));
+        assertEquals(1, registry.getJobsOfType(JobType.UNKNOWN_TYPE).size());
+    }
+
+    @Test
+    public void shouldNotifyListenersOfStatusChanges() {
+        List<String> messages = new ArrayList<>();
+        TestFeedSourceJob job = new TestFeedSourceJob("feed-source-id");
+        // Ignore changes to any other jobs running at the same time.
+        JobStatusListener listener = changedJob -> {
+            if (changedJob == job) messages.add(changedJob.status.message);
+        };
+        JobUtils.jobRegistry.subscribe(listener);
+        try {
+            job.status.update("Working", 50);
+            job.status.completeSuccessfully("Done");
+        } finally {
+            JobUtils.jobRegistry.unsubscribe(listener);
+        }
+        job.status.update("Not heard", 100);
+        assertEquals(Arrays.asList("Working", "Done"), messages);
+        assertTrue(job.status.duration >= 0);
+    }
+
+    private static class TestFeedSourceJob extends FeedSourceJob {
+        private final String feedSourceId;
+
+        TestFeedSourceJob(String feedSourceId) {
+            super(user, "Test job", JobType.UNKNOWN_TYPE);
+            this.feedSourceId = feedSourceId;
+        }
+
+        @Override
+        public String getFeedSourceId() {
+            return feedSourceId;
+        }
+
+        @Override
+        public void jobLogic() {
+            // Not run by these tests.
+        }
+    }
+}
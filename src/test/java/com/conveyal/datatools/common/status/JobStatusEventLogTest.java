@@ -0,0 +1,64 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.common.status.MonitorableJob.JobType;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the coalescing and resuming of job status events by {@link JobStatusEventLog}.
+ */
+public class JobStatusEventLogTest extends UnitTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        DatatoolsTest.setUp();
+    }
+
+    @Test
+    public void shouldCoalesceChangesAndResumeFromLastEvent() throws InterruptedException {
+        // Use a long publish interval so that events are only published when the test calls publishChangedJobs.
+        JobStatusEventLog eventLog = new JobStatusEventLog(2, 1, 60000, job -> job.status.message);
+        TestJob job = new TestJob();
+        job.status.update("First", 10);
+        eventLog.jobStatusChanged(job);
+        job.status.update("Second", 20);
+        eventLog.jobStatusChanged(job);
+        eventLog.publishChangedJobs();
+        JobStatusEventLog.Batch batch = eventLog.awaitEvents(user.getUser_id(), 0, 0);
+        assertEquals(1, batch.events.size(), "Repeated changes to a job should be published once.");
+        assertEquals("Second", batch.events.get(0).json);
+        assertTrue(eventLog.canResumeFrom(batch.lastEventId));
+        // Once the events following the first event have been dropped, the first event can no longer be resumed from.
+        for (int i = 0; i < 3; i++) {
+            eventLog.jobStatusChanged(job);
+            eventLog.publishChangedJobs();
+        }
+        assertFalse(eventLog.canResumeFrom(batch.lastEventId));
+        assertTrue(eventLog.awaitEvents("other-user", eventLog.getLastEventId(), 0).events.isEmpty());
+        // Only the configured number of streams can be open at once.
+        assertTrue(eventLog.tryOpenStream());
+        assertFalse(eventLog.tryOpenStream());
+        eventLog.closeStream();
+    }
+
+    private static class TestJob extends MonitorableJob {
+        TestJob() {
+            super(user, "Test job", JobType.UNKNOWN_TYPE);
+        }
+
+        @Override
+        public void jobLogic() {
+            // Not run by this test.
+        }
+    }
+}
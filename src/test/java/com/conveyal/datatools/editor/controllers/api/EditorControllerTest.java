@@ -14,6 +14,9 @@ import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.restassured.http.Method;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -25,6 +28,8 @@ import org.slf4j.LoggerFactory;
 import spark.utils.IOUtils;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.stream.Stream;
@@ -45,6 +50,7 @@ public class EditorControllerTest extends UnitTest {
     private static Project project;
     private static FeedSource feedSource;
     private static FeedSource feedSourceCascadeDelete;
+    private static FeedSource feedSourceCopyOnWrite;
     private static FeedVersion feedVersion;
     private static FeedVersion feedVersionCascadeDelete;
     private static final ObjectMapper mapper = new ObjectMapper();
@@ -72,12 +78,18 @@ public class EditorControllerTest extends UnitTest {
         feedSourceCascadeDelete.projectId = project.id;
         Persistence.feedSources.create(feedSourceCascadeDelete);
 
+        feedSourceCopyOnWrite = new FeedSource("COPY_ON_WRITE");
+        feedSourceCopyOnWrite.projectId = project.id;
+        Persistence.feedSources.create(feedSourceCopyOnWrite);
+
         feedVersion = createFeedVersionFromGtfsZip(feedSource, "bart_old.zip");
         feedVersionCascadeDelete = createFeedVersionFromGtfsZip(feedSourceCascadeDelete, "bart_old.zip");
+        FeedVersion feedVersionCopyOnWrite = createFeedVersionFromGtfsZip(feedSourceCopyOnWrite, "bart_old.zip");
 
         // Create and run snapshot jobs
         crateAndRunSnapshotJob(feedVersion.name, feedSource.id, feedVersion.namespace);
         crateAndRunSnapshotJob(feedVersionCascadeDelete.name, feedSourceCascadeDelete.id, feedVersionCascadeDelete.namespace);
+        crateAndRunSnapshotJob(feedVersionCopyOnWrite.name, feedSourceCopyOnWrite.id, feedVersionCopyOnWrite.namespace);
         LOG.info("{} setup completed in {} ms", EditorControllerTest.class.getSimpleName(), System.currentTimeMillis() - startTime);
     }
 
@@ -86,6 +98,7 @@ public class EditorControllerTest extends UnitTest {
         project.delete();
         feedSource.delete();
         feedSourceCascadeDelete.delete();
+        feedSourceCopyOnWrite.delete();
     }
 
     /**
@@ -203,6 +216,239 @@ public class EditorControllerTest extends UnitTest {
         assertThatSqlCountQueryYieldsExpectedCount(patternStopsCountSql, 0);
     }
 
+    /**
+     * Confirm that a snapshot of the editor buffer shares the buffer's tables until they are edited, and that editing
+     * the buffer does not change the snapshot.
+     */
+    @Test
+    void canEditBufferWithoutChangingSnapshot() throws IOException, SQLException {
+        // Get a fresh feed source so that the editor namespace was updated after snapshot.
+        FeedSource freshFeedSource = Persistence.feedSources.getById(feedVersion.feedSourceId);
+        String bufferNamespace = freshFeedSource.editorNamespace;
+        Snapshot snapshot = createSavePoint(freshFeedSource);
+        String sharedStopsSql = getViewCountSql(snapshot.namespace, "stops");
+        assertThatSqlCountQueryYieldsExpectedCount(sharedStopsSql, 1);
+
+        String stopUrl = "http://www.example.com/copy-on-write";
+        ObjectNode jsonBody = mapper.createObjectNode();
+        jsonBody.put("stop_url", stopUrl);
+        int count = patchTableRequest("stop", freshFeedSource.id, "stop_id=eq.12TH", jsonBody);
+        assertThat(count, equalTo(1));
+
+        // The snapshot should now have its own copy of the stops table, without the edit.
+        assertThatSqlCountQueryYieldsExpectedCount(sharedStopsSql, 0);
+        String stopUrlCountSql = "SELECT count(*) FROM %s.stops WHERE stop_url = '" + stopUrl + "'";
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(stopUrlCountSql, bufferNamespace), 1);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(stopUrlCountSql, snapshot.namespace), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "stops", "12TH"), 1);
+    }
+
+    /**
+     * Confirm that creating, updating (with a key change that is applied to referencing tables) and deleting (along
+     * with child records) records in the buffer does not change a snapshot that shares the buffer's tables.
+     */
+    @Test
+    void canCreateUpdateAndDeleteWithoutChangingSnapshot() throws IOException, SQLException {
+        // Get a fresh feed source so that the editor namespace was updated after snapshot.
+        FeedSource freshFeedSource = Persistence.feedSources.getById(feedSourceCopyOnWrite.id);
+        String bufferNamespace = freshFeedSource.editorNamespace;
+        Snapshot snapshot = createSavePoint(freshFeedSource);
+
+        // Create a stop.
+        ObjectNode newStop = getRecordJson(bufferNamespace, "stops", "stop_id", "MONT");
+        newStop.remove("id");
+        newStop.put("stop_id", "NEW_STOP");
+        JsonNode createdStop = editorRequest(Method.POST, "stop", null, freshFeedSource.id, newStop);
+        assertThat(createdStop.get("stop_id").asText(), equalTo("NEW_STOP"));
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "stops", "NEW_STOP"), 1);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "stops", "NEW_STOP"), 0);
+
+        // Update a stop's ID, which also updates the stop times and pattern stops that reference the stop.
+        int stopTimeCount = queryForInt(getCountSql(bufferNamespace, "stop_times", "MONT"));
+        int patternStopCount = queryForInt(getCountSql(bufferNamespace, "pattern_stops", "MONT"));
+        ObjectNode updatedStop = getRecordJson(bufferNamespace, "stops", "stop_id", "MONT");
+        updatedStop.put("stop_id", "MONT_UPDATED");
+        editorRequest(Method.PUT, "stop", updatedStop.get("id").asInt(), freshFeedSource.id, updatedStop);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "stop_times", "MONT_UPDATED"), stopTimeCount);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "pattern_stops", "MONT_UPDATED"), patternStopCount);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "stops", "MONT"), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "stops", "MONT"), 1);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "stop_times", "MONT"), stopTimeCount);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "pattern_stops", "MONT"), patternStopCount);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "stop_times", "MONT_UPDATED"), 0);
+
+        // Delete a trip, which also deletes its stop times.
+        String tripId = "3650800SUN";
+        int tripStopTimeCount = queryForInt(getCountSql(bufferNamespace, "stop_times", "trip_id", tripId));
+        assertThat(tripStopTimeCount > 0, is(true));
+        int tripRecordId = queryForInt(String.format(
+            "SELECT id FROM %s.trips WHERE trip_id = '%s'",
+            bufferNamespace,
+            tripId
+        ));
+        editorRequest(Method.DELETE, "trip", tripRecordId, freshFeedSource.id, null);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "trips", "trip_id", tripId), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(bufferNamespace, "stop_times", "trip_id", tripId), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getCountSql(snapshot.namespace, "trips", "trip_id", tripId), 1);
+        assertThatSqlCountQueryYieldsExpectedCount(
+            getCountSql(snapshot.namespace, "stop_times", "trip_id", tripId),
+            tripStopTimeCount
+        );
+    }
+
+    /**
+     * Confirm that deleting a snapshot whose copy of a table is shared with another snapshot first gives the other
+     * snapshot its own copy of the table.
+     */
+    @Test
+    void canDeleteSnapshotSharedWithOtherSnapshot() throws IOException, SQLException {
+        // Get a fresh feed source so that the editor namespace was updated after snapshot.
+        FeedSource freshFeedSource = Persistence.feedSources.getById(feedSourceCopyOnWrite.id);
+        String bufferNamespace = freshFeedSource.editorNamespace;
+        Snapshot firstSnapshot = createSavePoint(freshFeedSource);
+        Snapshot secondSnapshot = createSavePoint(freshFeedSource);
+        int routeCount = queryForInt(String.format("SELECT count(*) FROM %s.routes", bufferNamespace));
+
+        // Edit every route in the buffer, after which one snapshot has a copy of the routes table (without the edit)
+        // that the other snapshot shares.
+        String routeUrl = "http://www.example.com/shared-copy";
+        ObjectNode jsonBody = mapper.createObjectNode();
+        jsonBody.put("route_url", routeUrl);
+        assertThat(patchTableRequest("route", freshFeedSource.id, null, jsonBody), equalTo(routeCount));
+        boolean firstHasCopy = queryForInt(getViewCountSql(firstSnapshot.namespace, "routes")) == 0;
+        Snapshot copyingSnapshot = firstHasCopy ? firstSnapshot : secondSnapshot;
+        Snapshot sharingSnapshot = firstHasCopy ? secondSnapshot : firstSnapshot;
+        assertThatSqlCountQueryYieldsExpectedCount(getViewCountSql(copyingSnapshot.namespace, "routes"), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getViewCountSql(sharingSnapshot.namespace, "routes"), 1);
+
+        copyingSnapshot.delete();
+
+        // The remaining snapshot now has its own copy of the routes table, still without the edit.
+        assertThatSqlCountQueryYieldsExpectedCount(
+            String.format("SELECT count(*) FROM information_schema.schemata WHERE schema_name = '%s'", copyingSnapshot.namespace),
+            0
+        );
+        assertThatSqlCountQueryYieldsExpectedCount(getViewCountSql(sharingSnapshot.namespace, "routes"), 0);
+        String routeCountSql = "SELECT count(*) FROM %s.routes";
+        String routeUrlCountSql = routeCountSql + " WHERE route_url = '" + routeUrl + "'";
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeCountSql, sharingSnapshot.namespace), routeCount);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeUrlCountSql, sharingSnapshot.namespace), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeUrlCountSql, bufferNamespace), routeCount);
+    }
+
+    /**
+     * Confirm that restoring a snapshot that (partly) shares the buffer's tables creates a full copy of the snapshot as
+     * the new buffer, and that editing the new buffer does not change the snapshot.
+     */
+    @Test
+    void canRestoreBufferFromSharedSnapshot() throws IOException, SQLException {
+        // Get a fresh feed source so that the editor namespace was updated after snapshot.
+        FeedSource freshFeedSource = Persistence.feedSources.getById(feedSourceCopyOnWrite.id);
+        String bufferNamespace = freshFeedSource.editorNamespace;
+        Snapshot snapshot = createSavePoint(freshFeedSource);
+        int stopCount = queryForInt(String.format("SELECT count(*) FROM %s.stops", snapshot.namespace));
+        int routeCount = queryForInt(String.format("SELECT count(*) FROM %s.routes", snapshot.namespace));
+
+        // Edit a stop in the buffer, so that the snapshot has its own copy of the stops table but still shares the
+        // routes table.
+        String stopUrl = "http://www.example.com/before-restore";
+        String stopUrlCountSql = "SELECT count(*) FROM %s.stops WHERE stop_url = '" + stopUrl + "'";
+        ObjectNode jsonBody = mapper.createObjectNode();
+        jsonBody.put("stop_url", stopUrl);
+        assertThat(patchTableRequest("stop", freshFeedSource.id, "stop_id=eq.EMBR", jsonBody), equalTo(1));
+        assertThatSqlCountQueryYieldsExpectedCount(getViewCountSql(snapshot.namespace, "stops"), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(getViewCountSql(snapshot.namespace, "routes"), 1);
+
+        // Restore the snapshot (as SnapshotController#restoreSnapshot does).
+        Snapshot restoredSnapshot = new Snapshot("Restore snapshot", freshFeedSource.id, snapshot.namespace);
+        new CreateSnapshotJob(Auth0UserProfile.createTestAdminUser(), restoredSnapshot, true, false, false).run();
+        String restoredNamespace = Persistence.feedSources.getById(freshFeedSource.id).editorNamespace;
+        assertEquals(restoredSnapshot.namespace, restoredNamespace);
+
+        // The new buffer is a full copy of the snapshot, without the edit made to the old buffer.
+        assertThatSqlCountQueryYieldsExpectedCount(
+            String.format(
+                "SELECT count(*) FROM information_schema.tables WHERE table_schema = '%s' AND table_type = 'VIEW'",
+                restoredNamespace
+            ),
+            0
+        );
+        assertThatSqlCountQueryYieldsExpectedCount(String.format("SELECT count(*) FROM %s.stops", restoredNamespace), stopCount);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format("SELECT count(*) FROM %s.routes", restoredNamespace), routeCount);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(stopUrlCountSql, restoredNamespace), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(stopUrlCountSql, bufferNamespace), 1);
+
+        // Editing the new buffer does not change the snapshot.
+        String routeUrl = "http://www.example.com/after-restore";
+        jsonBody = mapper.createObjectNode();
+        jsonBody.put("route_url", routeUrl);
+        assertThat(patchTableRequest("route", freshFeedSource.id, null, jsonBody), equalTo(routeCount));
+        String routeUrlCountSql = "SELECT count(*) FROM %s.routes WHERE route_url = '" + routeUrl + "'";
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeUrlCountSql, restoredNamespace), routeCount);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeUrlCountSql, snapshot.namespace), 0);
+        assertThatSqlCountQueryYieldsExpectedCount(String.format(routeUrlCountSql, bufferNamespace), 0);
+    }
+
+    /**
+     * Create a snapshot of the feed source's editor buffer that does not replace the buffer (and so shares the buffer's
+     * tables).
+     */
+    private static Snapshot createSavePoint(FeedSource feedSource) {
+        Snapshot snapshot = new Snapshot("Save point", feedSource.id, feedSource.editorNamespace);
+        new CreateSnapshotJob(Auth0UserProfile.createTestAdminUser(), snapshot, false, true, false).run();
+        return snapshot;
+    }
+
+    /**
+     * Perform a create, update, or delete request for the entity (with a null ID to create) and return the result.
+     */
+    private static JsonNode editorRequest(
+        Method method,
+        String entity,
+        Integer id,
+        String feedId,
+        JsonNode body
+    ) throws IOException {
+        String path = String.format("/api/editor/secure/%s", entity);
+        if (id != null) path += "/" + id;
+        path += "?feedId=" + feedId + "&sessionId=test";
+        RequestSpecification request = given().port(DataManager.PORT);
+        if (body != null) request.body(body);
+        Response response = request.request(method, path);
+        assertEquals(OK_200, response.getStatusCode());
+        return mapper.readTree(response.asString());
+    }
+
+    /**
+     * Get the record matching the field value as JSON (with a field for each column).
+     */
+    private static ObjectNode getRecordJson(String namespace, String tableName, String fieldName, String value)
+        throws SQLException, IOException {
+        String sql = String.format(
+            "SELECT row_to_json(t) FROM %s.%s t WHERE %s = '%s'",
+            namespace,
+            tableName,
+            fieldName,
+            value
+        );
+        try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+            ResultSet resultSet = connection.prepareStatement(sql).executeQuery();
+            assertThat(resultSet.next(), is(true));
+            return (ObjectNode) mapper.readTree(resultSet.getString(1));
+        }
+    }
+
+    /**
+     * Get the integer result (e.g., a count) of a SQL query.
+     */
+    private static int queryForInt(String sql) throws SQLException {
+        try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+            ResultSet resultSet = connection.prepareStatement(sql).executeQuery();
+            assertThat(resultSet.next(), is(true));
+            return resultSet.getInt(1);
+        }
+    }
+
     /**
      * Perform patch table request on the feed source ID with the requested query and patch JSON. A null query will
      * apply the patch JSON to the entire table.
@@ -247,11 +493,31 @@ public class EditorControllerTest extends UnitTest {
      * Build a sql statement to provide a count on the number of rows matching the stop id.
      */
     private static String getCountSql(String namespace, String tableName, String stopId) {
+        return getCountSql(namespace, tableName, "stop_id", stopId);
+    }
+
+    /**
+     * Build a sql statement to provide a count on the number of rows matching the field value.
+     */
+    private static String getCountSql(String namespace, String tableName, String fieldName, String value) {
         return String.format(
-            "SELECT count(*) FROM %s.%s WHERE stop_id = '%s'",
+            "SELECT count(*) FROM %s.%s WHERE %s = '%s'",
             namespace,
             tableName,
-            stopId
+            fieldName,
+            value
+        );
+    }
+
+    /**
+     * Build a sql statement to count whether the table in the namespace is a view (i.e., shares another namespace's
+     * table).
+     */
+    private static String getViewCountSql(String namespace, String tableName) {
+        return String.format(
+            "SELECT count(*) FROM information_schema.tables WHERE table_schema = '%s' AND table_name = '%s' AND table_type = 'VIEW'",
+            namespace,
+            tableName
         );
     }
 }
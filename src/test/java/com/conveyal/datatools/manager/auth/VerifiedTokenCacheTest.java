@@ -0,0 +1,43 @@
+package com.conveyal.datatools.manager.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test class for {@link VerifiedTokenCache}.
+ */
+public class VerifiedTokenCacheTest {
+    private static final Auth0UserProfile profile = Auth0UserProfile.createTestAdminUser();
+
+    /**
+     * Ensure that a verified token's profile is returned until the token expires and that expired tokens and tokens
+     * without an exp claim are not cached.
+     */
+    @Test
+    public void cachesProfilesUntilTokenExpires() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, 60);
+        long nowSeconds = System.currentTimeMillis() / 1000;
+
+        cache.put("valid", nowSeconds + 60, profile);
+        assertSame(profile, cache.get("valid"));
+        assertNull(cache.get("unknown"));
+
+        cache.put("expired", nowSeconds - 1, profile);
+        assertNull(cache.get("expired"));
+
+        cache.put("no-exp", null, profile);
+        assertNull(cache.get("no-exp"));
+    }
+
+    /**
+     * Ensure that nothing is cached when the cache is disabled with a maximum size of zero.
+     */
+    @Test
+    public void cachesNothingWithZeroMaximumSize() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0, 60);
+        cache.put("valid", System.currentTimeMillis() / 1000 + 60, profile);
+        assertNull(cache.get("valid"));
+    }
+}
@@ -0,0 +1,246 @@
+package com.conveyal.datatools.manager.controllers;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.models.FeedRetrievalMethod;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.JsonViews;
+import com.conveyal.datatools.manager.models.Model;
+import com.conveyal.datatools.manager.models.Note;
+import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.json.JsonManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.in;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for loading database dumps with {@link DumpController#load(InputStream)}.
+ */
+public class DumpControllerTest extends UnitTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonManager<DumpController.DatabaseState> databaseStateJson =
+        new JsonManager<>(DumpController.DatabaseState.class, JsonViews.DataDump.class);
+    private static final JsonManager<Note> noteJson = new JsonManager<>(Note.class, JsonViews.DataDump.class);
+
+    private final List<Project> projects = new ArrayList<>();
+    private final List<FeedSource> feedSources = new ArrayList<>();
+    private final List<Note> notes = new ArrayList<>();
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        removeAll();
+    }
+
+    /**
+     * Ensure that objects written by {@link DumpController#dump} are restored by loading the dump.
+     */
+    @Test
+    void canLoadDump() throws IOException {
+        Project project = createProject();
+        FeedSource feedSource = createFeedSource(project);
+        Note note = createNote();
+        Persistence.projects.create(project);
+        Persistence.feedSources.create(feedSource);
+        Persistence.notes.create(note);
+
+        // Dump the database, keeping only the records for the objects created by this test (the rest of the
+        // database is still present, so loading those records would fail on duplicate keys).
+        Set<String> ids = new HashSet<>(Arrays.asList(project.id, feedSource.id, note.id));
+        List<String> records = new ArrayList<>();
+        for (String line : dump().split("\n")) {
+            JsonNode record = mapper.readTree(line);
+            if (ids.contains(record.get("object").get("id").asText())) records.add(line);
+        }
+        assertEquals(ids.size(), records.size());
+
+        removeAll();
+        assertNull(Persistence.projects.getById(project.id));
+        assertTrue(DumpController.load(toInputStream(String.join("\n", records))));
+
+        assertProjectRestored(project);
+        assertFeedSourceRestored(feedSource);
+        assertNoteRestored(note);
+    }
+
+    /**
+     * Ensure that a dump in the legacy form of a single {@link DumpController.DatabaseState} object is restored, and
+     * that null collection fields in it are skipped.
+     */
+    @Test
+    void canLoadLegacyDatabaseState() throws IOException {
+        Project project = createProject();
+        FeedSource feedSource = createFeedSource(project);
+        Note note = createNote();
+        DumpController.DatabaseState databaseState = new DumpController.DatabaseState();
+        databaseState.projects = Collections.singletonList(project);
+        databaseState.feedSources = Collections.singletonList(feedSource);
+        databaseState.notes = Collections.singletonList(note);
+        String dump = databaseStateJson.write(databaseState);
+        assertTrue(dump.contains("\"deployments\":null"));
+
+        assertTrue(DumpController.load(toInputStream(dump)));
+
+        assertProjectRestored(project);
+        assertFeedSourceRestored(feedSource);
+        assertNoteRestored(note);
+    }
+
+    /**
+     * Ensure that all objects of a collection are restored when there are more than fit in one batch (so that a batch
+     * is inserted while the dump is still being read).
+     */
+    @Test
+    void canLoadMoreObjectsThanBatchSize() throws IOException {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < DumpController.LOAD_BATCH_SIZE + 1; i++) {
+            Note note = createNote();
+            dump.append(String.format("{\"collection\":\"notes\",\"object\":%s}\n", noteJson.write(note)));
+        }
+
+        assertTrue(DumpController.load(toInputStream(dump.toString())));
+
+        List<String> noteIds = notes.stream().map(note -> note.id).collect(Collectors.toList());
+        List<Note> restoredNotes = Persistence.notes.getByIds(noteIds);
+        assertEquals(notes.size(), restoredNotes.size());
+        for (Note restoredNote : restoredNotes) {
+            assertEquals("Dumped note", restoredNote.body);
+        }
+    }
+
+    private Project createProject() {
+        Project project = new Project();
+        project.name = String.format("Dumped project %s", new Date());
+        projects.add(project);
+        return project;
+    }
+
+    private FeedSource createFeedSource(Project project) {
+        FeedSource feedSource = new FeedSource("Dumped feed source", project.id, FeedRetrievalMethod.MANUALLY_UPLOADED);
+        feedSources.add(feedSource);
+        return feedSource;
+    }
+
+    private Note createNote() {
+        Note note = new Note();
+        note.body = "Dumped note";
+        note.type = Note.NoteType.FEED_SOURCE;
+        notes.add(note);
+        return note;
+    }
+
+    private static void assertProjectRestored(Project project) {
+        Project restoredProject = Persistence.projects.getById(project.id);
+        assertNotNull(restoredProject);
+        assertEquals(project.name, restoredProject.name);
+    }
+
+    private static void assertFeedSourceRestored(FeedSource feedSource) {
+        FeedSource restoredFeedSource = Persistence.feedSources.getById(feedSource.id);
+        assertNotNull(restoredFeedSource);
+        assertEquals(feedSource.name, restoredFeedSource.name);
+        assertEquals(feedSource.projectId, restoredFeedSource.projectId);
+        assertEquals(feedSource.retrievalMethod, restoredFeedSource.retrievalMethod);
+    }
+
+    private static void assertNoteRestored(Note note) {
+        Note restoredNote = Persistence.notes.getById(note.id);
+        assertNotNull(restoredNote);
+        assertEquals(note.body, restoredNote.body);
+        assertEquals(note.type, restoredNote.type);
+    }
+
+    private void removeAll() {
+        Persistence.projects.removeFiltered(in("_id", ids(projects)));
+        Persistence.feedSources.removeFiltered(in("_id", ids(feedSources)));
+        Persistence.notes.removeFiltered(in("_id", ids(notes)));
+    }
+
+    private static List<String> ids(List<? extends Model> models) {
+        return models.stream().map(model -> model.id).collect(Collectors.toList());
+    }
+
+    private static InputStream toInputStream(String dump) {
+        return new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the database dump through {@link DumpController#dump} and return the response body.
+     */
+    private static String dump() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HttpServletResponse rawResponse = createRawResponse(outputStream);
+        DumpController.dump(new Request() {}, new Response() {
+            @Override
+            public HttpServletResponse raw() {
+                return rawResponse;
+            }
+        });
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a servlet response that writes its body to the output stream (all other methods do nothing).
+     */
+    private static HttpServletResponse createRawResponse(OutputStream outputStream) {
+        ServletOutputStream servletOutputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                outputStream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                outputStream.write(b, off, len);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {}
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(
+            HttpServletResponse.class.getClassLoader(),
+            new Class<?>[] { HttpServletResponse.class },
+            (proxy, method, args) -> "getOutputStream".equals(method.getName()) ? servletOutputStream : null
+        );
+    }
+}
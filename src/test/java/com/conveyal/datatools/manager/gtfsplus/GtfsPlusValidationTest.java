@@ -99,6 +99,15 @@ public class GtfsPlusValidationTest extends UnitTest {
         ), equalTo(result));
     }
 
+    @ParameterizedTest
+    @MethodSource("createRouteSubcategoryTestCases")
+    void canCheckRouteSubcategoryWithCompiledSpec(String routeCategoryId, String routeSubcategoryId, boolean result) {
+        FieldValidator subcategoryValidator = new FieldValidator(
+            Objects.requireNonNull(GtfsPlusValidation.findNode(routeAttributesFieldsNode, "name", "subcategory"))
+        );
+        assertThat(subcategoryValidator.isValueValidWithParent(routeCategoryId, routeSubcategoryId), equalTo(result));
+    }
+
     private static Stream<Arguments> createRouteSubcategoryTestCases() {
         return Stream.of(
             // The values "0", "3" below are not valid subcategory options and should be rejected.
@@ -132,6 +141,10 @@ public class GtfsPlusValidationTest extends UnitTest {
                 )
             ),
             equalTo("Regional Peak"));
+        FieldValidator subcategoryValidator = new FieldValidator(
+            Objects.requireNonNull(GtfsPlusValidation.findNode(routeAttributesFieldsNode, "name", "subcategory"))
+        );
+        assertThat(subcategoryValidator.getOptionText("202"), equalTo("Regional Peak"));
     }
 
     @Test
@@ -0,0 +1,133 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.BulkValidationCheckpoint;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.utils.JobUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+
+import static com.conveyal.datatools.TestUtils.createFeedVersionFromGtfsZip;
+import static com.conveyal.datatools.manager.models.FeedRetrievalMethod.MANUALLY_UPLOADED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ValidateAllFeedsJob}.
+ */
+public class ValidateAllFeedsJobTest extends UnitTest {
+    private static final Auth0UserProfile user = Auth0UserProfile.createTestAdminUser();
+    private static Project project;
+    private static FeedSource feedSource;
+    private static FeedVersion firstVersion;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+
+        project = new Project();
+        project.name = String.format("Test %s", new Date());
+        Persistence.projects.create(project);
+
+        feedSource = new FeedSource("Validate all feed source", project.id, MANUALLY_UPLOADED);
+        Persistence.feedSources.create(feedSource);
+        FeedVersion oldVersion = createFeedVersionFromGtfsZip(feedSource, "bart_old.zip");
+        FeedVersion newVersion = createFeedVersionFromGtfsZip(feedSource, "bart_new.zip");
+        // Versions are validated in ID order.
+        firstVersion = oldVersion.id.compareTo(newVersion.id) < 0 ? oldVersion : newVersion;
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (project != null) {
+            project.delete();
+        }
+    }
+
+    /**
+     * Ensure that all versions of the feed source are validated and the checkpoint is removed once the job finishes.
+     */
+    @Test
+    void canValidateAllVersions() {
+        ValidateAllFeedsJob job = ValidateAllFeedsJob.create(user, false, true, feedSource.id);
+        job.run();
+        assertFalse(job.status.error);
+        assertEquals("Validated 2 feed versions (0 failed).", job.status.message);
+        assertNull(Persistence.bulkValidationCheckpoints.getById(job.getCheckpointId()));
+    }
+
+    /**
+     * Ensure that a job cancelled while it is still queued removes its checkpoint, so that it is not resumed when the
+     * server restarts.
+     */
+    @Test
+    void cancelledQueuedJobShouldNotResume() {
+        CountDownLatch release = new CountDownLatch(1);
+        ValidateAllFeedsJob job = ValidateAllFeedsJob.create(user, false, true, feedSource.id);
+        try {
+            // Occupy every heavy executor thread with higher priority jobs, so that the (bulk) job stays queued.
+            for (int i = 0; i < JobUtils.heavyExecutor.summarize().threads; i++) {
+                JobUtils.heavyExecutor.execute(new BlockingJob(release));
+            }
+            JobUtils.heavyExecutor.execute(job);
+            JobUtils.cancelJob(job);
+        } finally {
+            release.countDown();
+        }
+        assertTrue(job.status.error);
+        assertNull(Persistence.bulkValidationCheckpoints.getById(job.getCheckpointId()));
+        ValidateAllFeedsJob.resumeIncompleteJobs();
+        assertNull(Persistence.bulkValidationCheckpoints.getById(job.getCheckpointId()));
+    }
+
+    /**
+     * Ensure that a job resumed from a checkpoint only validates the versions after the last version processed.
+     */
+    @Test
+    void canResumeFromCheckpoint() {
+        BulkValidationCheckpoint checkpoint = new BulkValidationCheckpoint();
+        checkpoint.force = true;
+        checkpoint.feedSourceId = feedSource.id;
+        checkpoint.lastVersionId = firstVersion.id;
+        checkpoint.processedCount = 1;
+        Persistence.bulkValidationCheckpoints.create(checkpoint);
+
+        ValidateAllFeedsJob job = new ValidateAllFeedsJob(user, checkpoint);
+        job.run();
+        assertFalse(job.status.error);
+        assertEquals("Validated 2 feed versions (0 failed).", job.status.message);
+        assertNull(Persistence.bulkValidationCheckpoints.getById(checkpoint.id));
+    }
+
+    /**
+     * Interactive job that waits on a latch.
+     */
+    private static class BlockingJob extends MonitorableJob {
+        private final CountDownLatch latch;
+
+        BlockingJob(CountDownLatch latch) {
+            super(user, "Blocking job", JobType.SYSTEM_JOB);
+            this.priority = JobPriority.INTERACTIVE;
+            this.latch = latch;
+        }
+
+        @Override
+        public void jobLogic() throws InterruptedException {
+            latch.await();
+        }
+    }
+}
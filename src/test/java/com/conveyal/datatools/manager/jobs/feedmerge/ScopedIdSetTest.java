@@ -0,0 +1,50 @@
+package com.conveyal.datatools.manager.jobs.feedmerge;
+
+import com.conveyal.datatools.UnitTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link ScopedIdSet} and {@link ScopedIdMap} behave like sets and maps of table-scoped ID strings.
+ */
+public class ScopedIdSetTest extends UnitTest {
+    @Test
+    public void shouldMatchScopedIdsWithOrWithoutPrefix() {
+        IdDictionary ids = new IdDictionary();
+        ScopedIdSet skippedIds = new ScopedIdSet(ids);
+        // IDs may contain colons, but scopes do not.
+        assertTrue(skippedIds.add("stops:Feed1:", "a:b"));
+        assertTrue(skippedIds.add("unscoped_id"));
+        assertFalse(skippedIds.add("stops:Feed1:a:b"), "Same ID added as a single string should already exist.");
+        assertTrue(skippedIds.contains("stops:Feed1:a:b"));
+        assertTrue(skippedIds.contains("stops:Feed1:", "a:b"));
+        assertFalse(skippedIds.contains("stops:Feed2:", "a:b"));
+        assertFalse(skippedIds.contains("never_seen"));
+        assertEquals(new HashSet<>(Arrays.asList("stops:Feed1:a:b", "unscoped_id")), new HashSet<>(skippedIds));
+        assertTrue(skippedIds.remove("unscoped_id"));
+        assertEquals(1, skippedIds.size());
+    }
+
+    @Test
+    public void shouldRemapScopedIds() {
+        IdDictionary ids = new IdDictionary();
+        ScopedIdMap remappedIds = new ScopedIdMap(ids);
+        assertNull(remappedIds.put("routes:Feed2:", "1", "Feed2:1"));
+        assertEquals("Feed2:1", remappedIds.get("routes:Feed2:1"));
+        assertEquals("Feed2:1", remappedIds.put("routes:Feed2:1", "2"));
+        assertEquals("2", remappedIds.get("routes:Feed2:", "1"));
+        assertNull(remappedIds.get("routes:Feed1:", "1"));
+        assertEquals(1L, remappedIds.keySet().stream().filter(key -> key.startsWith("routes:")).count());
+        assertEquals("2", remappedIds.remove("routes:Feed2:", "1"));
+        assertTrue(remappedIds.isEmpty());
+        // IDs are interned once, however many sets and maps they appear in.
+        assertEquals(4, ids.size());
+    }
+}
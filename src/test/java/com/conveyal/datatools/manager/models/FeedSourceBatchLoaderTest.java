@@ -0,0 +1,226 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.gtfs.validator.ValidationResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link FeedSourceBatchLoader}.
+ */
+public class FeedSourceBatchLoaderTest extends UnitTest {
+    private static final List<Project> projects = new ArrayList<>();
+    private static final List<FeedSource> feedSources = new ArrayList<>();
+    private static final List<FeedVersion> feedVersions = new ArrayList<>();
+    private static final List<Deployment> deployments = new ArrayList<>();
+
+    private static Project projectWithLatestDeployment;
+    private static FeedSource feedSourceWithVersions;
+    private static FeedSource feedSourceWithOneVersion;
+    private static FeedSource feedSourceWithoutVersions;
+    private static FeedVersion latestVersion;
+    private static FeedVersion versionFromLatestDeployment;
+    private static FeedVersion onlyVersion;
+
+    private static Project projectWithPinnedDeployment;
+    private static FeedSource feedSourceInPinnedDeployment;
+    private static FeedSource feedSourceNotInPinnedDeployment;
+    private static FeedVersion versionFromPinnedDeployment;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+
+        // Project whose feed sources are deployed by its latest deployment.
+        projectWithLatestDeployment = createProject("Batch loader latest deployment");
+        feedSourceWithVersions = createFeedSource("Feed source with versions", projectWithLatestDeployment);
+        feedSourceWithOneVersion = createFeedSource("Feed source with one version", projectWithLatestDeployment);
+        feedSourceWithoutVersions = createFeedSource("Feed source without versions", projectWithLatestDeployment);
+        versionFromLatestDeployment = createFeedVersion(feedSourceWithVersions, 1, LocalDate.of(2021, Month.MARCH, 1));
+        createFeedVersion(feedSourceWithVersions, 2, LocalDate.of(2021, Month.APRIL, 1));
+        latestVersion = createFeedVersion(feedSourceWithVersions, 3, LocalDate.of(2021, Month.MAY, 1));
+        onlyVersion = createFeedVersion(feedSourceWithOneVersion, 1, LocalDate.of(2021, Month.JUNE, 1));
+        createDeployment(projectWithLatestDeployment, LocalDate.of(2020, Month.MARCH, 12), latestVersion);
+        createDeployment(
+            projectWithLatestDeployment,
+            LocalDate.of(2021, Month.MARCH, 12),
+            versionFromLatestDeployment,
+            onlyVersion
+        );
+
+        // Project whose pinned deployment takes precedence over a later deployment.
+        projectWithPinnedDeployment = createProject("Batch loader pinned deployment");
+        feedSourceInPinnedDeployment = createFeedSource("Feed source in pinned deployment", projectWithPinnedDeployment);
+        feedSourceNotInPinnedDeployment = createFeedSource(
+            "Feed source not in pinned deployment",
+            projectWithPinnedDeployment
+        );
+        versionFromPinnedDeployment = createFeedVersion(
+            feedSourceInPinnedDeployment,
+            1,
+            LocalDate.of(2022, Month.NOVEMBER, 2)
+        );
+        FeedVersion laterVersion = createFeedVersion(
+            feedSourceInPinnedDeployment,
+            2,
+            LocalDate.of(2022, Month.DECEMBER, 2)
+        );
+        FeedVersion versionNotInPinnedDeployment = createFeedVersion(
+            feedSourceNotInPinnedDeployment,
+            1,
+            LocalDate.of(2022, Month.DECEMBER, 2)
+        );
+        Deployment pinnedDeployment = createDeployment(
+            projectWithPinnedDeployment,
+            LocalDate.of(2022, Month.MARCH, 12),
+            versionFromPinnedDeployment
+        );
+        createDeployment(
+            projectWithPinnedDeployment,
+            LocalDate.of(2023, Month.MARCH, 12),
+            laterVersion,
+            versionNotInPinnedDeployment
+        );
+        projectWithPinnedDeployment.pinnedDeploymentId = pinnedDeployment.id;
+        Persistence.projects.replace(projectWithPinnedDeployment.id, projectWithPinnedDeployment);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        deployments.forEach(deployment -> Persistence.deployments.removeById(deployment.id));
+        feedVersions.forEach(feedVersion -> Persistence.feedVersions.removeById(feedVersion.id));
+        feedSources.forEach(feedSource -> Persistence.feedSources.removeById(feedSource.id));
+        projects.forEach(project -> Persistence.projects.removeById(project.id));
+    }
+
+    /**
+     * Ensure that the properties of batch loaded feed sources equal those returned by the per-source getters (which
+     * query MongoDB for each feed source).
+     */
+    @Test
+    void batchLoadedPropertiesShouldMatchPerSourceGetters() {
+        for (Project project : projects) {
+            Map<String, FeedSource> feedSourcesById = project.retrieveProjectFeedSources().stream()
+                .collect(Collectors.toMap(feedSource -> feedSource.id, Function.identity()));
+            Collection<FeedSource> batchLoadedFeedSources = project.retrieveProjectFeedSources();
+            FeedSourceBatchLoader.load(batchLoadedFeedSources);
+            assertEquals(feedSourcesById.size(), batchLoadedFeedSources.size());
+            for (FeedSource batchLoadedFeedSource : batchLoadedFeedSources) {
+                FeedSource feedSource = feedSourcesById.get(batchLoadedFeedSource.id);
+                assertEquals(feedSource.getVersionCount(), batchLoadedFeedSource.getVersionCount());
+                assertEquals(feedSource.latestVersionId(), batchLoadedFeedSource.latestVersionId());
+                assertEquals(feedSource.lastUpdated(), batchLoadedFeedSource.lastUpdated());
+                assertEquals(feedSource.getDeployedFeedVersionId(), batchLoadedFeedSource.getDeployedFeedVersionId());
+                assertEquals(
+                    feedSource.getDeployedFeedVersionStartDate(),
+                    batchLoadedFeedSource.getDeployedFeedVersionStartDate()
+                );
+                assertEquals(
+                    feedSource.getDeployedFeedVersionEndDate(),
+                    batchLoadedFeedSource.getDeployedFeedVersionEndDate()
+                );
+            }
+        }
+    }
+
+    /**
+     * Ensure that the batch loaded properties are the expected values (so that the comparison with the per-source
+     * getters is not trivially satisfied, e.g., by both returning null).
+     */
+    @Test
+    void batchLoadedPropertiesShouldHaveExpectedValues() {
+        Map<String, FeedSource> feedSourcesById = feedSources.stream()
+            .map(feedSource -> Persistence.feedSources.getById(feedSource.id))
+            .collect(Collectors.toMap(feedSource -> feedSource.id, Function.identity()));
+        FeedSourceBatchLoader loader = FeedSourceBatchLoader.load(feedSourcesById.values());
+        feedSourcesById.values().forEach(feedSource -> assertTrue(loader.hasLoaded(feedSource.id)));
+
+        FeedSource withVersions = feedSourcesById.get(feedSourceWithVersions.id);
+        assertEquals(3, withVersions.getVersionCount());
+        assertEquals(latestVersion.id, withVersions.latestVersionId());
+        // The latest deployment (rather than the superseded deployment with the latest version) is used.
+        assertEquals(versionFromLatestDeployment.id, withVersions.getDeployedFeedVersionId());
+        assertEquals(LocalDate.of(2021, Month.MARCH, 1), withVersions.getDeployedFeedVersionEndDate());
+
+        FeedSource withOneVersion = feedSourcesById.get(feedSourceWithOneVersion.id);
+        assertEquals(1, withOneVersion.getVersionCount());
+        assertEquals(onlyVersion.id, withOneVersion.latestVersionId());
+        assertEquals(onlyVersion.id, withOneVersion.getDeployedFeedVersionId());
+
+        FeedSource withoutVersions = feedSourcesById.get(feedSourceWithoutVersions.id);
+        assertEquals(0, withoutVersions.getVersionCount());
+        assertNull(withoutVersions.latestVersionId());
+        assertNull(withoutVersions.getDeployedFeedVersionId());
+
+        // The pinned deployment takes precedence, even for feed sources it does not include.
+        FeedSource inPinnedDeployment = feedSourcesById.get(feedSourceInPinnedDeployment.id);
+        assertEquals(2, inPinnedDeployment.getVersionCount());
+        assertEquals(versionFromPinnedDeployment.id, inPinnedDeployment.getDeployedFeedVersionId());
+        assertEquals(LocalDate.of(2022, Month.NOVEMBER, 2), inPinnedDeployment.getDeployedFeedVersionEndDate());
+        assertNull(feedSourcesById.get(feedSourceNotInPinnedDeployment.id).getDeployedFeedVersionId());
+    }
+
+    private static Project createProject(String name) {
+        Project project = new Project();
+        project.name = String.format("%s %s", name, new Date());
+        Persistence.projects.create(project);
+        projects.add(project);
+        return project;
+    }
+
+    private static FeedSource createFeedSource(String name, Project project) {
+        FeedSource feedSource = new FeedSource(name, project.id, FeedRetrievalMethod.MANUALLY_UPLOADED);
+        Persistence.feedSources.create(feedSource);
+        feedSources.add(feedSource);
+        return feedSource;
+    }
+
+    /**
+     * Create a feed version whose service starts a month before the end date.
+     */
+    private static FeedVersion createFeedVersion(FeedSource feedSource, int version, LocalDate endDate) {
+        FeedVersion feedVersion = new FeedVersion();
+        feedVersion.feedSourceId = feedSource.id;
+        feedVersion.version = version;
+        ValidationResult validationResult = new ValidationResult();
+        validationResult.firstCalendarDate = endDate.minusMonths(1);
+        validationResult.lastCalendarDate = endDate;
+        feedVersion.validationResult = validationResult;
+        Persistence.feedVersions.create(feedVersion);
+        feedVersions.add(feedVersion);
+        return feedVersion;
+    }
+
+    private static Deployment createDeployment(Project project, LocalDate lastUpdated, FeedVersion... feedVersions) {
+        Deployment deployment = new Deployment();
+        deployment.lastUpdated = Date.from(lastUpdated.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        deployment.feedVersionIds = Arrays.stream(feedVersions)
+            .map(feedVersion -> feedVersion.id)
+            .collect(Collectors.toList());
+        deployment.projectId = project.id;
+        Persistence.deployments.create(deployment);
+        deployments.add(deployment);
+        return deployment;
+    }
+}
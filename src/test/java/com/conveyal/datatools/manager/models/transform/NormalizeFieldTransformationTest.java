@@ -60,6 +60,24 @@ public class NormalizeFieldTransformationTest extends UnitTest {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("createCapitalizationCasesWithOverlappingExceptions")
+    public void testConvertToTitleCaseWithOverlappingExceptions(List<String> exceptions, String input, String expected) {
+        NormalizeFieldTransformation transform = createTransformation("table", "field", exceptions, null);
+        assertEquals(expected, transform.convertToTitleCase(input));
+    }
+
+    private static Stream<Arguments> createCapitalizationCasesWithOverlappingExceptions() {
+        return Stream.of(
+            // Exceptions apply in order, so the first of two exceptions with the same title case wins...
+            Arguments.of(Lists.newArrayList("de", "DE"), "PONCE DE LEON", "Ponce de Leon"),
+            // ...unless the first leaves the word unchanged.
+            Arguments.of(Lists.newArrayList("Leon", "LEON"), "PONCE DE LEON", "Ponce De LEON"),
+            // Exceptions that are not simple words are still applied.
+            Arguments.of(Lists.newArrayList("BART Station", "NB"), "DUBLIN BART STATION NB", "Dublin BART Station NB")
+        );
+    }
+
     @ParameterizedTest
     @MethodSource("createSubstitutionCases")
     public void testPerformSubstitutions(String input, String expected) {
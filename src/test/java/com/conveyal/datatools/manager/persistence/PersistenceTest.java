@@ -3,14 +3,26 @@ package com.conveyal.datatools.manager.persistence;
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.UnitTest;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
+import com.mongodb.client.model.Sorts;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.conveyal.datatools.TestUtils.createMockFeedVersion;
+import static com.mongodb.client.model.Filters.eq;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * Created by landon on 9/6/17.
@@ -78,6 +90,105 @@ public class PersistenceTest extends UnitTest {
             retrievedId,
             "Found Project ID should equal inserted ID.");
     }
+
+    @Test
+    public void canStreamFilteredWithProjection() {
+        String projectId = "streaming-test-project";
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            FeedSource streamedFeedSource = new FeedSource("streamed feed source " + i);
+            streamedFeedSource.projectId = projectId;
+            Persistence.feedSources.create(streamedFeedSource);
+            ids.add(streamedFeedSource.id);
+        }
+        try {
+            // Use a small batch size so that results span multiple cursor batches.
+            try (
+                Stream<FeedSource> feedSources =
+                    Persistence.feedSources.streamFiltered(eq("projectId", projectId), null, 2, "projectId")
+            ) {
+                List<FeedSource> results = feedSources.collect(Collectors.toList());
+                assertEquals(ids.size(), results.size(), "All matching feed sources should be streamed.");
+                for (FeedSource result : results) {
+                    assertEquals(projectId, result.projectId);
+                    assertNull(result.name, "Fields not included in the projection should not be populated.");
+                }
+            }
+            // Streams should support early termination.
+            try (Stream<FeedSource> feedSources = Persistence.feedSources.streamFiltered(eq("projectId", projectId), null, 2)) {
+                assertEquals(3, feedSources.limit(3).count());
+            }
+        } finally {
+            ids.forEach(Persistence.feedSources::removeById);
+        }
+    }
+
+    @Test
+    public void cachedObjectsShouldBeInvalidatedOnUpdate() {
+        Project cachedProject = new Project();
+        cachedProject.name = "cached project";
+        Persistence.projects.create(cachedProject);
+        try {
+            long hitsBefore = Persistence.projects.getCacheSummary().hitCount;
+            Project firstRead = Persistence.projects.getById(cachedProject.id);
+            Project secondRead = Persistence.projects.getById(cachedProject.id);
+            assertEquals(hitsBefore + 1, Persistence.projects.getCacheSummary().hitCount, "Second read should hit cache.");
+            assertNotSame(firstRead, secondRead, "Each read should return its own copy of the cached object.");
+            Persistence.projects.updateField(cachedProject.id, "name", "updated project");
+            assertEquals("updated project", Persistence.projects.getById(cachedProject.id).name);
+            Persistence.projects.removeById(cachedProject.id);
+            assertNull(Persistence.projects.getById(cachedProject.id), "Removed object should not be cached.");
+        } finally {
+            Persistence.projects.removeById(cachedProject.id);
+        }
+    }
+
+    @Test
+    public void cachedObjectsShouldBeLimitedToIncludedFields() {
+        Project cachedProject = new Project();
+        cachedProject.name = "limited fields project";
+        cachedProject.defaultTimeZone = "America/Los_Angeles";
+        Persistence.projects.create(cachedProject);
+        try {
+            // Read the full object so that it is cached.
+            Persistence.projects.getById(cachedProject.id);
+            Project limitedProject = Persistence.projects.getByIdLimitedFields(cachedProject.id, "name");
+            assertEquals(cachedProject.id, limitedProject.id);
+            assertEquals("limited fields project", limitedProject.name);
+            assertNull(limitedProject.defaultTimeZone, "Fields not included should not be populated.");
+        } finally {
+            Persistence.projects.removeById(cachedProject.id);
+        }
+    }
+
+    @Test
+    public void hotFeedVersionQueriesShouldUseIndexes() {
+        // The query planner only considers a collection scan if the collection has documents, so add some versions
+        // (spread across a few feed sources) for the queries to match.
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            FeedVersion version = createMockFeedVersion("index-test-feed-source-" + i % 4);
+            version.version = i / 4 + 1;
+            version.namespace = "index_test_namespace_" + i;
+            Persistence.feedVersions.create(version);
+            ids.add(version.id);
+        }
+        try {
+            assertFalse(
+                Persistence.feedVersions.usesCollectionScan(
+                    eq("feedSourceId", "index-test-feed-source-0"),
+                    Sorts.descending("version")
+                ),
+                "Latest feed version query should not scan the whole collection."
+            );
+            assertFalse(
+                Persistence.feedVersions.usesCollectionScan(eq("namespace", "index_test_namespace_0"), null),
+                "Published feed version query should not scan the whole collection."
+            );
+        } finally {
+            ids.forEach(Persistence.feedVersions::removeById);
+        }
+    }
 //
 //    @Test
 //    public void createDeployment() {
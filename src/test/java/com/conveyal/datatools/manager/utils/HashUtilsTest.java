@@ -0,0 +1,75 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.conveyal.datatools.manager.utils.connections.DuplicateCheckingInputStream;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for HashUtils.
+ */
+public class HashUtilsTest {
+
+    /**
+     * Ensure {@link HashUtils.SampledHash} computes the same hash as {@link HashUtils#hashFile} from a file read in
+     * chunks (including files that are hashed in full and files that are sampled).
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 8, 1009, 10000, 10001, 12345, 100000})
+    public void sampledHashMatchesFileHash(int length) throws IOException, NoSuchAlgorithmException {
+        byte[] bytes = createRandomBytes(length);
+        File file = writeTempFile(bytes);
+        HashUtils.SampledHash sampledHash = new HashUtils.SampledHash(length);
+        int position = 0;
+        while (!sampledHash.isComplete()) {
+            int chunkLength = Math.min(1000, length - position);
+            sampledHash.update(bytes, position, chunkLength);
+            position += chunkLength;
+        }
+        assertEquals(HashUtils.hashFile(file), sampledHash.getHash());
+    }
+
+    /**
+     * Ensure {@link DuplicateCheckingInputStream} stops a read of a file with the hash to match before the end of the
+     * file and reads a different file in full.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {5000, 100000})
+    public void duplicateCheckingInputStreamStopsDuplicates(int length) throws IOException {
+        byte[] bytes = createRandomBytes(length);
+        String hash = HashUtils.hashFile(writeTempFile(bytes));
+        assertThrows(
+            DuplicateCheckingInputStream.DuplicateFileException.class,
+            () -> ByteStreams.toByteArray(new DuplicateCheckingInputStream(new ByteArrayInputStream(bytes), length, hash))
+        );
+
+        byte[] changedBytes = bytes.clone();
+        changedBytes[0]++;
+        InputStream changedStream = new DuplicateCheckingInputStream(new ByteArrayInputStream(changedBytes), length, hash);
+        assertEquals(length, ByteStreams.toByteArray(changedStream).length);
+    }
+
+    private static byte[] createRandomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static File writeTempFile(byte[] bytes) throws IOException {
+        File file = File.createTempFile("hash-test", ".zip");
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+}
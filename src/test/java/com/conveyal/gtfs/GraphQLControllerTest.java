@@ -0,0 +1,112 @@
+package com.conveyal.gtfs;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.UnitTest;
+import com.conveyal.datatools.manager.DataManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.eclipse.jetty.http.HttpStatus.BAD_REQUEST_400;
+import static org.eclipse.jetty.http.HttpStatus.OK_200;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the query cache and persisted queries in {@link GraphQLController}.
+ */
+public class GraphQLControllerTest extends UnitTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        // start server if it isn't already running
+        DatatoolsTest.setUp();
+    }
+
+    /**
+     * Ensure that the document for a repeated query is only computed once.
+     */
+    @Test
+    public void canCacheParsedQueries() {
+        GraphQLQueryCache cache = new GraphQLQueryCache(10);
+        AtomicInteger computeCount = new AtomicInteger();
+        PreparsedDocumentEntry entry = new PreparsedDocumentEntry(Document.newDocument().build());
+        PreparsedDocumentEntry first = cache.get("{ __typename }", query -> {
+            computeCount.incrementAndGet();
+            return entry;
+        });
+        PreparsedDocumentEntry second = cache.get("{ __typename }", query -> {
+            computeCount.incrementAndGet();
+            return entry;
+        });
+        assertSame(entry, first);
+        assertSame(entry, second);
+        assertEquals(1, computeCount.get());
+    }
+
+    /**
+     * Ensure that a persisted query hash that the server does not know yet (sent without the query text) is answered
+     * with the error that asks the client to send the query text.
+     */
+    @Test
+    public void unknownPersistedQueryReturnsNotFound() throws IOException {
+        JsonNode result = postQuery(null, GraphQLQueryCache.hash(createQuery()), OK_200);
+        assertEquals("PERSISTED_QUERY_NOT_FOUND", result.get("errors").get(0).get("extensions").get("code").asText());
+    }
+
+    /**
+     * Ensure that a query is only persisted if its hash matches the query text and can then be run by its hash alone.
+     */
+    @Test
+    public void canPersistQueryWithMatchingHash() throws IOException {
+        String query = createQuery();
+        String hash = GraphQLQueryCache.hash(query);
+        // A hash that does not match the query text is rejected and not persisted.
+        postQuery(query, GraphQLQueryCache.hash(createQuery()), BAD_REQUEST_400);
+        postQuery(createQuery(), hash, BAD_REQUEST_400);
+        JsonNode notFound = postQuery(null, hash, OK_200);
+        assertEquals("PERSISTED_QUERY_NOT_FOUND", notFound.get("errors").get(0).get("extensions").get("code").asText());
+        // Once persisted with a matching hash, the query can be run by its hash alone.
+        postQuery(query, hash, OK_200);
+        JsonNode result = postQuery(null, hash, OK_200);
+        assertNull(result.get("errors"));
+        assertEquals("feedQuery", result.get("data").get("__typename").asText());
+    }
+
+    /**
+     * Create a query unique to the test run (the comment changes its hash), so that persisted queries from other tests
+     * do not interfere.
+     */
+    private static String createQuery() {
+        return String.format("{ __typename } # %s", UUID.randomUUID());
+    }
+
+    /**
+     * Send a GraphQL query (with or without its text) along with a persisted query hash and check the response status.
+     */
+    private static JsonNode postQuery(String query, String hash, int expectedStatus) throws IOException {
+        ObjectNode body = mapper.createObjectNode();
+        if (query != null) body.put("query", query);
+        body.putObject("extensions").putObject("persistedQuery")
+            .put("version", 1)
+            .put("sha256Hash", hash);
+        Response response = given()
+            .port(DataManager.PORT)
+            .body(body.toString())
+            .post("api/manager/secure/gtfs/graphql");
+        assertEquals(expectedStatus, response.getStatusCode());
+        return mapper.readTree(response.asString());
+    }
+}